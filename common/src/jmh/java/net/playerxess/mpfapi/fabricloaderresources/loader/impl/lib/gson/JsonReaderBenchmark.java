@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.playerxess.mpfapi.fabricloaderresources.loader.impl.lib.gson;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Streaming through synthetic {@code fabric.mod.json}-like documents with the vendored {@link JsonReader}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonReaderBenchmark {
+	/**
+	 * Number of entrypoints and dependencies in the document, to scale its size.
+	 */
+	@Param({"10", "100"})
+	public int entries;
+
+	private String json;
+
+	@Setup
+	public void setup() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("{\n\t\"schemaVersion\": 1,\n\t\"id\": \"example\",\n\t\"version\": \"1.0.0+build.1\",\n");
+		builder.append("\t\"name\": \"Example \\\"mod\\\"\",\n\t\"description\": \"A synthetic mod \\u00e9\\n\",\n");
+		builder.append("\t\"authors\": [\"a\", {\"name\": \"b\", \"contact\": {\"email\": \"b@example.com\"}}],\n");
+		builder.append("\t\"environment\": \"*\",\n\t\"entrypoints\": {\n\t\t\"main\": [");
+
+		for (int i = 0; i < entries; i++) {
+			if (i > 0) builder.append(", ");
+			builder.append("\"net.example.mod.Entrypoint").append(i).append("\"");
+		}
+
+		builder.append("]\n\t},\n\t\"depends\": {");
+
+		for (int i = 0; i < entries; i++) {
+			if (i > 0) builder.append(",");
+			builder.append("\n\t\t\"dependency-").append(i).append("\": \">=").append(i).append(".0.0 <").append(i + 1).append('"');
+		}
+
+		builder.append("\n\t},\n\t\"custom\": {\"numbers\": [1, -2.5, 3e5, true, false, null]}\n}\n");
+		json = builder.toString();
+	}
+
+	@Benchmark
+	public int read() throws IOException {
+		try (JsonReader reader = new JsonReader(new StringReader(json))) {
+			return readValue(reader);
+		}
+	}
+
+	@Benchmark
+	public JsonToken skip() throws IOException {
+		try (JsonReader reader = new JsonReader(new StringReader(json))) {
+			reader.skipValue();
+			return reader.peek();
+		}
+	}
+
+	private static int readValue(JsonReader reader) throws IOException {
+		switch (reader.peek()) {
+		case BEGIN_OBJECT: {
+			int ret = 0;
+			reader.beginObject();
+
+			while (reader.hasNext()) {
+				ret += reader.nextName().length();
+				ret += readValue(reader);
+			}
+
+			reader.endObject();
+			return ret;
+		}
+		case BEGIN_ARRAY: {
+			int ret = 0;
+			reader.beginArray();
+
+			while (reader.hasNext()) {
+				ret += readValue(reader);
+			}
+
+			reader.endArray();
+			return ret;
+		}
+		case STRING:
+			return reader.nextString().length();
+		case NUMBER:
+			return (int) reader.nextDouble();
+		case BOOLEAN:
+			return reader.nextBoolean() ? 1 : 0;
+		case NULL:
+			reader.nextNull();
+			return 0;
+		default:
+			throw new IllegalStateException("Unexpected token " + reader.peek());
+		}
+	}
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.version;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.playerxess.mpfapi.fabricloaderresources.loader.api.SemanticVersion;
+import net.playerxess.mpfapi.fabricloaderresources.loader.api.Version;
+import net.playerxess.mpfapi.fabricloaderresources.loader.api.VersionParsingException;
+import net.playerxess.mpfapi.fabricloaderresources.loader.api.metadata.version.VersionPredicate;
+
+/**
+ * Parsing semantic versions and version predicates, and testing versions against predicates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VersionBenchmark {
+	@Param({"1.20.1", "0.92.3+1.20.1", "1.0.0-beta.12+build.345"})
+	public String version;
+
+	@Param({">=1.0.0", "~1.20", ">=0.14.0 <0.17-", "1.20.x"})
+	public String predicate;
+
+	private SemanticVersion parsedVersion;
+	private Version otherVersion;
+	private VersionPredicate parsedPredicate;
+
+	@Setup
+	public void setup() throws VersionParsingException {
+		parsedVersion = parseVersion();
+		parsedPredicate = parsePredicate();
+		otherVersion = new SemanticVersionImpl("1.20.2-rc.1", false);
+	}
+
+	@Benchmark
+	public SemanticVersion parseVersion() throws VersionParsingException {
+		return new SemanticVersionImpl(version, false);
+	}
+
+	@Benchmark
+	public VersionPredicate parsePredicate() throws VersionParsingException {
+		return VersionPredicateParser.parse(predicate);
+	}
+
+	@Benchmark
+	public boolean testPredicate() {
+		return parsedPredicate.test(parsedVersion);
+	}
+
+	@Benchmark
+	public int compareVersions() {
+		return parsedVersion.compareTo(otherVersion);
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2021 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.playerxess.mpfapi.fabricloaderresources.mapping;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Generates synthetic, deterministic inputs for the mapping benchmarks, so they can run without any game files.
+ *
+ * <p>Classes are named {@code c<i>} in the {@code official} namespace, {@code net/minecraft/class_<i>} in
+ * {@code intermediary} and {@code net/example/Class<i>} in {@code named}. Each class has fields {@code f<j>}
+ * of type {@code I} and methods {@code m<j>} of type {@code (I)I}, mapped the same way.
+ */
+public final class SyntheticMappings {
+	public static final String[] NAMESPACES = { "official", "intermediary", "named" };
+
+	private SyntheticMappings() { }
+
+	/**
+	 * @return The mappings in the Tiny v2 format.
+	 */
+	public static String createTinyV2(int classes, int membersPerClass) {
+		StringBuilder sb = new StringBuilder(classes * membersPerClass * 80);
+		sb.append("tiny\t2\t0\t").append(String.join("\t", NAMESPACES)).append('\n');
+
+		for (int i = 0; i < classes; i++) {
+			sb.append("c\t").append(officialClass(i)).append("\tnet/minecraft/class_").append(i).append("\tnet/example/Class").append(i).append('\n');
+
+			for (int j = 0; j < membersPerClass; j++) {
+				int id = i * membersPerClass + j;
+				sb.append("\tf\tI\tf").append(j).append("\tfield_").append(id).append("\tfield").append(j).append('\n');
+				sb.append("\tm\t(I)I\tm").append(j).append("\tmethod_").append(id).append("\tmethod").append(j).append('\n');
+				sb.append("\t\tp\t1\t\t\targ").append(j).append('\n');
+			}
+		}
+
+		return sb.toString();
+	}
+
+	public static String officialClass(int index) {
+		return "c" + index;
+	}
+
+	/**
+	 * Write a jar with the classes described by the mappings, in the {@code official} namespace.
+	 * Every method reads a field of its class and calls a method of another random class, so that remapping has work to do.
+	 */
+	public static void writeJar(Path jar, int classes, int membersPerClass) throws IOException {
+		Random random = new Random(42);
+
+		try (OutputStream os = Files.newOutputStream(jar); JarOutputStream jos = new JarOutputStream(os)) {
+			for (int i = 0; i < classes; i++) {
+				String name = officialClass(i);
+				ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+				cw.visit(Opcodes.V17, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, name, null, "java/lang/Object", null);
+
+				for (int j = 0; j < membersPerClass; j++) {
+					cw.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "f" + j, "I", null, null).visitEnd();
+
+					MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "m" + j, "(I)I", null, null);
+					mv.visitCode();
+					mv.visitFieldInsn(Opcodes.GETSTATIC, name, "f" + j, "I");
+					mv.visitVarInsn(Opcodes.ILOAD, 0);
+					mv.visitInsn(Opcodes.IADD);
+					mv.visitMethodInsn(Opcodes.INVOKESTATIC, officialClass(random.nextInt(classes)), "m" + random.nextInt(membersPerClass), "(I)I", false);
+					mv.visitInsn(Opcodes.IRETURN);
+					mv.visitMaxs(0, 0);
+					mv.visitEnd();
+				}
+
+				cw.visitEnd();
+				jos.putNextEntry(new JarEntry(name + ".class"));
+				jos.write(cw.toByteArray());
+				jos.closeEntry();
+			}
+		}
+	}
+}
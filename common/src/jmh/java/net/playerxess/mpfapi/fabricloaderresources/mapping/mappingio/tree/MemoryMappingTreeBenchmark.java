@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2021 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.tree;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.playerxess.mpfapi.fabricloaderresources.mapping.SyntheticMappings;
+import net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.format.tiny.Tiny2FileReader;
+
+/**
+ * Reading Tiny v2 mappings into a {@link MemoryMappingTree}, and looking up classes and members in it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MemoryMappingTreeBenchmark {
+	private static final int MEMBERS_PER_CLASS = 10;
+
+	@Param({"1000", "10000"})
+	public int classes;
+
+	private String tinyV2;
+	private MemoryMappingTree tree;
+	private int intermediaryNs;
+	private String[] officialNames;
+	private String[] intermediaryNames;
+	private String[] officialMethodNames;
+	private String[] intermediaryFieldNames;
+	private int next;
+
+	@Setup
+	public void setup() throws IOException {
+		tinyV2 = SyntheticMappings.createTinyV2(classes, MEMBERS_PER_CLASS);
+		tree = read();
+		intermediaryNs = tree.getNamespaceId("intermediary");
+		officialNames = new String[classes];
+		intermediaryNames = new String[classes];
+		officialMethodNames = new String[classes];
+		intermediaryFieldNames = new String[classes];
+
+		for (int i = 0; i < classes; i++) {
+			officialNames[i] = SyntheticMappings.officialClass(i);
+			intermediaryNames[i] = "net/minecraft/class_" + i;
+			officialMethodNames[i] = "m" + (i % MEMBERS_PER_CLASS);
+			intermediaryFieldNames[i] = "field_" + (i * MEMBERS_PER_CLASS);
+		}
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public MemoryMappingTree readTinyV2() throws IOException {
+		return read();
+	}
+
+	@Benchmark
+	public MappingTree.ClassMapping getClassBySrcName() {
+		return tree.getClass(officialNames[nextIndex()]);
+	}
+
+	@Benchmark
+	public MappingTree.ClassMapping getClassByDstName() {
+		return tree.getClass(intermediaryNames[nextIndex()], intermediaryNs);
+	}
+
+	@Benchmark
+	public MappingTree.MethodMapping getMethodBySrcName() {
+		int index = nextIndex();
+		return tree.getClass(officialNames[index]).getMethod(officialMethodNames[index], "(I)I");
+	}
+
+	@Benchmark
+	public MappingTree.FieldMapping getFieldByDstName() {
+		int index = nextIndex();
+		return tree.getClass(intermediaryNames[index], intermediaryNs).getField(intermediaryFieldNames[index], "I", intermediaryNs);
+	}
+
+	private MemoryMappingTree read() throws IOException {
+		MemoryMappingTree ret = new MemoryMappingTree(true);
+		Tiny2FileReader.read(new StringReader(tinyV2), ret);
+		return ret;
+	}
+
+	private int nextIndex() {
+		int ret = next;
+		next = ret + 1 == classes ? 0 : ret + 1;
+		return ret;
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2016, 2018, Player, asie
+ * Copyright (c) 2016, 2023, FabricMC
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.playerxess.mpfapi.fabricloaderresources.mapping.tinyremapper;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.playerxess.mpfapi.fabricloaderresources.mapping.SyntheticMappings;
+import net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.format.tiny.Tiny2FileReader;
+import net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.tree.MemoryMappingTree;
+
+/**
+ * Remapping a synthetic jar from {@code official} to {@code intermediary} names, from reading the input to
+ * collecting the remapped class bytes in memory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TinyRemapperBenchmark {
+	private static final int MEMBERS_PER_CLASS = 10;
+
+	@Param({"100", "1000"})
+	public int classes;
+
+	@Param({"1", "4"})
+	public int threads;
+
+	private Path tempDir;
+	private Path jar;
+	private MemoryMappingTree mappings;
+
+	@Setup
+	public void setup() throws IOException {
+		tempDir = Files.createTempDirectory("tiny-remapper-benchmark");
+		jar = tempDir.resolve("input.jar");
+		SyntheticMappings.writeJar(jar, classes, MEMBERS_PER_CLASS);
+		mappings = new MemoryMappingTree();
+		Tiny2FileReader.read(new StringReader(SyntheticMappings.createTinyV2(classes, MEMBERS_PER_CLASS)), mappings);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(jar);
+		Files.deleteIfExists(tempDir);
+	}
+
+	@Benchmark
+	public long remap() {
+		TinyRemapper remapper = TinyRemapper.newRemapper()
+				.withMappings(TinyUtils.createMappingProvider(mappings, "official", "intermediary"))
+				.threads(threads)
+				.build();
+		AtomicLong size = new AtomicLong();
+
+		try {
+			remapper.readInputs(jar);
+			remapper.apply((name, bytes) -> size.addAndGet(bytes.length));
+		} finally {
+			remapper.finish();
+		}
+
+		return size.get();
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.playerxess.mpfapi.impl.event;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.playerxess.mpfapi.api.event.Event;
+import net.playerxess.mpfapi.api.event.EventFactory;
+
+/**
+ * Invoking array-backed events with the loop invoker and with the generated unrolled invoker.
+ *
+ * <p>The fork enables {@link UnrolledInvokerGenerator#ENABLE_PROPERTY}, {@link EventFactory#createUnrolled}
+ * falls back to the loop invoker without it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dfabric-api.event.unrolledInvokers=true")
+public class EventInvokerBenchmark {
+	@Param({"1", "4", "16", "64"})
+	public int listeners;
+
+	private Event<Tick> loopEvent;
+	private Event<Tick> unrolledEvent;
+	private int counter;
+
+	@Setup
+	public void setup() {
+		loopEvent = EventFactory.createArrayBacked(Tick.class, EventInvokerBenchmark::createInvoker);
+		unrolledEvent = EventFactory.createUnrolled(Tick.class, EventInvokerBenchmark::createInvoker);
+
+		for (int i = 0; i < listeners; i++) {
+			// Different listener classes, so that call sites in the loop invoker become megamorphic as they do in game.
+			Tick listener = switch (i % 4) {
+			case 0 -> value -> counter += value;
+			case 1 -> value -> counter ^= value;
+			case 2 -> value -> counter -= value;
+			default -> value -> counter |= value;
+			};
+
+			loopEvent.register(listener);
+			unrolledEvent.register(listener);
+		}
+	}
+
+	@Benchmark
+	public int loopInvoker() {
+		loopEvent.invoker().onTick(1);
+		return counter;
+	}
+
+	@Benchmark
+	public int unrolledInvoker() {
+		unrolledEvent.invoker().onTick(1);
+		return counter;
+	}
+
+	private static Tick createInvoker(Tick[] listeners) {
+		return value -> {
+			for (Tick listener : listeners) {
+				listener.onTick(value);
+			}
+		};
+	}
+
+	@FunctionalInterface
+	public interface Tick {
+		void onTick(int value);
+	}
+}
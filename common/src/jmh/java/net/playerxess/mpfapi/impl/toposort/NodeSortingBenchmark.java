@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.playerxess.mpfapi.impl.toposort;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares building a phase order one phase and one ordering at a time, as events do,
+ * with a full {@link NodeSorting} after each change versus a single sort once all orderings are known.
+ *
+ * <p>The graph is a random DAG where each phase is ordered after one to three other phases.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NodeSortingBenchmark {
+	private static final Comparator<Node> COMPARATOR = Comparator.comparingInt(node -> node.id);
+
+	@Param({"10", "100", "1000"})
+	public int phases;
+
+	/**
+	 * Orderings as {@code [first, second]} pairs of node indices, in insertion order.
+	 * Nodes are added by increasing index, right before the first ordering that uses them.
+	 */
+	private int[][] orderings;
+
+	@Setup
+	public void setup() {
+		NodeSorting.ENABLE_CYCLE_WARNING = false;
+		Random random = new Random(42);
+
+		// Hidden topological order of the node indices, so that orderings often disagree with the insertion order.
+		List<Integer> permutation = new ArrayList<>();
+
+		for (int i = 0; i < phases; i++) {
+			permutation.add(i);
+		}
+
+		Collections.shuffle(permutation, random);
+		List<int[]> list = new ArrayList<>();
+
+		for (int i = 1; i < phases; i++) {
+			int count = 1 + random.nextInt(3);
+
+			for (int j = 0; j < count; j++) {
+				list.add(new int[] { permutation.get(random.nextInt(i)), permutation.get(i) });
+			}
+		}
+
+		list.sort(Comparator.comparingInt(ordering -> Math.max(ordering[0], ordering[1])));
+		orderings = list.toArray(new int[0][]);
+	}
+
+	@Benchmark
+	public List<Node> fullSortAfterEachChange() {
+		Node[] nodes = createNodes();
+		List<Node> sorted = new ArrayList<>();
+		int added = 0;
+
+		for (int[] ordering : orderings) {
+			while (added <= Math.max(ordering[0], ordering[1])) {
+				sorted.add(nodes[added++]);
+				NodeSorting.sort(sorted, "benchmark", COMPARATOR);
+			}
+
+			SortableNode.link(nodes[ordering[0]], nodes[ordering[1]]);
+			NodeSorting.sort(sorted, "benchmark", COMPARATOR);
+		}
+
+		return sorted;
+	}
+
+	@Benchmark
+	public List<Node> singleFullSort() {
+		Node[] nodes = createNodes();
+		List<Node> sorted = new ArrayList<>(List.of(nodes));
+
+		for (int[] ordering : orderings) {
+			SortableNode.link(nodes[ordering[0]], nodes[ordering[1]]);
+		}
+
+		NodeSorting.sort(sorted, "benchmark", COMPARATOR);
+		return sorted;
+	}
+
+	private Node[] createNodes() {
+		Node[] nodes = new Node[phases];
+
+		for (int i = 0; i < phases; i++) {
+			// Reverse the ids so that the comparator disagrees with the insertion order.
+			nodes[i] = new Node(phases - i);
+		}
+
+		return nodes;
+	}
+
+	public static class Node extends SortableNode<Node> {
+		final int id;
+
+		Node(int id) {
+			this.id = id;
+		}
+
+		@Override
+		protected String getDescription() {
+			return Integer.toString(id);
+		}
+	}
+}
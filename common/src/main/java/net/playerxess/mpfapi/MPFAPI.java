@@ -1,9 +1,12 @@
 package net.playerxess.mpfapi;
 
+import net.playerxess.mpfapi.impl.event.EventProfilerCommand;
+
 public final class MPFAPI {
     public static final String MOD_ID = "mpfapi";
 
     public static void init() {
         // Write common init code here.
+        EventProfilerCommand.init();
     }
 }
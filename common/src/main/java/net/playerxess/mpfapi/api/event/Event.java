@@ -16,6 +16,8 @@
 
 package net.playerxess.mpfapi.api.event;
 
+import java.util.Collection;
+
 import org.jetbrains.annotations.ApiStatus;
 
 import net.minecraft.util.Identifier;
@@ -74,6 +76,76 @@ public abstract class Event<T> {
 		register(listener);
 	}
 
+	/**
+	 * Register a listener to the event, in the default phase, and return a handle that can be used to remove it.
+	 *
+	 * @param listener The desired listener.
+	 * @return The subscription of the listener, which unregisters it when closed.
+	 */
+	public Subscription subscribe(T listener) {
+		return subscribe(DEFAULT_PHASE, listener);
+	}
+
+	/**
+	 * Register a listener to the event for the specified phase, and return a handle that can be used to remove it.
+	 *
+	 * @param phase Identifier of the phase this listener should be registered for. It will be created if it didn't exist yet.
+	 * @param listener The desired listener.
+	 * @return The subscription of the listener, which unregisters it when closed.
+	 */
+	public abstract Subscription subscribe(Identifier phase, T listener);
+
+	/**
+	 * Register a listener to the event, in the default phase, only keeping a weak reference to it.
+	 * See {@link #subscribeWeak(Identifier, Object)} for the details of weak listeners.
+	 *
+	 * @param listener The desired listener.
+	 * @return The subscription of the listener, which unregisters it when closed.
+	 */
+	public Subscription subscribeWeak(T listener) {
+		return subscribeWeak(DEFAULT_PHASE, listener);
+	}
+
+	/**
+	 * Register a listener to the event for the specified phase, only keeping a weak reference to it.
+	 * The listener is removed automatically some time after it is garbage collected,
+	 * so the caller is responsible for keeping a strong reference to it for as long as it should be active.
+	 * Until it is removed, a collected listener behaves like an event without listeners.
+	 *
+	 * <p>Weak listeners are slower to invoke than regular listeners, and should be avoided on frequently invoked events.
+	 *
+	 * @param phase Identifier of the phase this listener should be registered for. It will be created if it didn't exist yet.
+	 * @param listener The desired listener.
+	 * @return The subscription of the listener, which unregisters it when closed.
+	 */
+	public abstract Subscription subscribeWeak(Identifier phase, T listener);
+
+	/**
+	 * Register multiple listeners to the event at once, in the default phase.
+	 * This is equivalent to registering them one by one in iteration order, but cheaper for events that
+	 * already have many listeners, since the invoker is only rebuilt once.
+	 *
+	 * @param listeners The desired listeners.
+	 */
+	public void registerAll(Collection<? extends T> listeners) {
+		registerAll(DEFAULT_PHASE, listeners);
+	}
+
+	/**
+	 * Register multiple listeners to the event at once, for the specified phase.
+	 * This is equivalent to registering them one by one in iteration order, but cheaper for events that
+	 * already have many listeners, since the invoker is only rebuilt once.
+	 *
+	 * @param phase Identifier of the phase these listeners should be registered for. It will be created if it didn't exist yet.
+	 * @param listeners The desired listeners.
+	 */
+	public void registerAll(Identifier phase, Collection<? extends T> listeners) {
+		// Overridden by the array-backed implementation to rebuild the invoker only once.
+		for (T listener : listeners) {
+			register(phase, listener);
+		}
+	}
+
 	/**
 	 * Request that listeners registered for one phase be executed before listeners registered for another phase.
 	 * Relying on the default phases supplied to {@link EventFactory#createWithPhases} should be preferred over manually
@@ -76,6 +76,24 @@ public final class EventFactory {
 		});
 	}
 
+	/**
+	 * Create an "array-backed" Event instance for a listener type with a single {@code void} method,
+	 * whose {@code invokerFactory} simply calls every listener in order.
+	 *
+	 * <p>When unrolled invokers are enabled with the {@code fabric-api.event.unrolledInvokers} system property,
+	 * the invoker of such an event is a generated class that calls each listener through a separate call site,
+	 * allowing the JIT to inline the listeners. This is only worth it for events that are invoked very often,
+	 * such as tick events. Otherwise, or if the invoker can't be generated, {@code invokerFactory} is used.
+	 *
+	 * @param type           The listener class type.
+	 * @param invokerFactory The invoker factory, combining multiple listeners into one instance.
+	 * @param <T>            The listener type.
+	 * @return The Event instance.
+	 */
+	public static <T> Event<T> createUnrolled(Class<T> type, Function<T[], T> invokerFactory) {
+		return EventFactoryImpl.createUnrolled(type, invokerFactory);
+	}
+
 	/**
 	 * Create an array-backed event with a list of default phases that get invoked in order.
 	 * Exposing the identifiers of the default phases as {@code public static final} constants is encouraged.
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.playerxess.mpfapi.api.event;
+
+import org.jetbrains.annotations.ApiStatus;
+
+/**
+ * A handle to a listener registered with {@link Event#subscribe}.
+ *
+ * <p>Closing the subscription removes the listener from the event. This makes it possible to scope a listener
+ * to the lifetime of a world or a session, with a try-with-resources block or by closing it explicitly when
+ * the world or session ends.
+ */
+@ApiStatus.NonExtendable
+public interface Subscription extends AutoCloseable {
+	/**
+	 * @return {@code true} if the listener is still registered.
+	 */
+	boolean isActive();
+
+	/**
+	 * Remove the listener from the event. Does nothing if it was already removed.
+	 */
+	@Override
+	void close();
+}
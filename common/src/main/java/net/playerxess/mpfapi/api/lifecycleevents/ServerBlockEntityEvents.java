@@ -32,7 +32,7 @@ public final class ServerBlockEntityEvents {
 	 * <p>When this is event is called, the block entity is already in the world.
 	 * However, its data might not be loaded yet, so don't rely on it.
 	 */
-	public static final Event<ServerBlockEntityEvents.Load> BLOCK_ENTITY_LOAD = EventFactory.createArrayBacked(ServerBlockEntityEvents.Load.class, callbacks -> (blockEntity, world) -> {
+	public static final Event<ServerBlockEntityEvents.Load> BLOCK_ENTITY_LOAD = EventFactory.createUnrolled(ServerBlockEntityEvents.Load.class, callbacks -> (blockEntity, world) -> {
 		for (Load callback : callbacks) {
 			callback.onLoad(blockEntity, world);
 		}
@@ -43,7 +43,7 @@ public final class ServerBlockEntityEvents {
 	 *
 	 * <p>When this event is called, the block entity is still present on the world.
 	 */
-	public static final Event<Unload> BLOCK_ENTITY_UNLOAD = EventFactory.createArrayBacked(ServerBlockEntityEvents.Unload.class, callbacks -> (blockEntity, world) -> {
+	public static final Event<Unload> BLOCK_ENTITY_UNLOAD = EventFactory.createUnrolled(ServerBlockEntityEvents.Unload.class, callbacks -> (blockEntity, world) -> {
 		for (Unload callback : callbacks) {
 			callback.onUnload(blockEntity, world);
 		}
@@ -31,7 +31,7 @@ public final class ServerChunkEvents {
 	 *
 	 * <p>When this event is called, the chunk is already in the world.
 	 */
-	public static final Event<ServerChunkEvents.Load> CHUNK_LOAD = EventFactory.createArrayBacked(ServerChunkEvents.Load.class, callbacks -> (serverWorld, chunk) -> {
+	public static final Event<ServerChunkEvents.Load> CHUNK_LOAD = EventFactory.createUnrolled(ServerChunkEvents.Load.class, callbacks -> (serverWorld, chunk) -> {
 		for (Load callback : callbacks) {
 			callback.onChunkLoad(serverWorld, chunk);
 		}
@@ -42,7 +42,7 @@ public final class ServerChunkEvents {
 	 *
 	 * <p>When this event is called, the chunk is still present in the world.
 	 */
-	public static final Event<ServerChunkEvents.Unload> CHUNK_UNLOAD = EventFactory.createArrayBacked(ServerChunkEvents.Unload.class, callbacks -> (serverWorld, chunk) -> {
+	public static final Event<ServerChunkEvents.Unload> CHUNK_UNLOAD = EventFactory.createUnrolled(ServerChunkEvents.Unload.class, callbacks -> (serverWorld, chunk) -> {
 		for (Unload callback : callbacks) {
 			callback.onChunkUnload(serverWorld, chunk);
 		}
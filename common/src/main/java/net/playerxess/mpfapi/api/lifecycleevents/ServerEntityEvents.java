@@ -34,7 +34,7 @@ public final class ServerEntityEvents {
 	 *
 	 * <p>When this event is called, the entity is already in the world.
 	 */
-	public static final Event<ServerEntityEvents.Load> ENTITY_LOAD = EventFactory.createArrayBacked(ServerEntityEvents.Load.class, callbacks -> (entity, world) -> {
+	public static final Event<ServerEntityEvents.Load> ENTITY_LOAD = EventFactory.createUnrolled(ServerEntityEvents.Load.class, callbacks -> (entity, world) -> {
 		for (Load callback : callbacks) {
 			callback.onLoad(entity, world);
 		}
@@ -45,7 +45,7 @@ public final class ServerEntityEvents {
 	 *
 	 * <p>This event is called before the entity is removed from the world.
 	 */
-	public static final Event<ServerEntityEvents.Unload> ENTITY_UNLOAD = EventFactory.createArrayBacked(ServerEntityEvents.Unload.class, callbacks -> (entity, world) -> {
+	public static final Event<ServerEntityEvents.Unload> ENTITY_UNLOAD = EventFactory.createUnrolled(ServerEntityEvents.Unload.class, callbacks -> (entity, world) -> {
 		for (Unload callback : callbacks) {
 			callback.onUnload(entity, world);
 		}
@@ -57,7 +57,7 @@ public final class ServerEntityEvents {
 	 * <p>This event is also called when the entity joins the world.
 	 * A change in equipment is determined by {@link ItemStack#areEqual(ItemStack, ItemStack)}.
 	 */
-	public static final Event<EquipmentChange> EQUIPMENT_CHANGE = EventFactory.createArrayBacked(ServerEntityEvents.EquipmentChange.class, callbacks -> (livingEntity, equipmentSlot, previous, next) -> {
+	public static final Event<EquipmentChange> EQUIPMENT_CHANGE = EventFactory.createUnrolled(ServerEntityEvents.EquipmentChange.class, callbacks -> (livingEntity, equipmentSlot, previous, next) -> {
 		for (EquipmentChange callback : callbacks) {
 			callback.onChange(livingEntity, equipmentSlot, previous, next);
 		}
@@ -29,7 +29,7 @@ public final class ServerTickEvents {
 	/**
 	 * Called at the start of the server tick.
 	 */
-	public static final Event<StartTick> START_SERVER_TICK = EventFactory.createArrayBacked(StartTick.class, callbacks -> server -> {
+	public static final Event<StartTick> START_SERVER_TICK = EventFactory.createUnrolled(StartTick.class, callbacks -> server -> {
 		for (StartTick event : callbacks) {
 			event.onStartTick(server);
 		}
@@ -38,7 +38,7 @@ public final class ServerTickEvents {
 	/**
 	 * Called at the end of the server tick.
 	 */
-	public static final Event<EndTick> END_SERVER_TICK = EventFactory.createArrayBacked(EndTick.class, callbacks -> server -> {
+	public static final Event<EndTick> END_SERVER_TICK = EventFactory.createUnrolled(EndTick.class, callbacks -> server -> {
 		for (EndTick event : callbacks) {
 			event.onEndTick(server);
 		}
@@ -47,7 +47,7 @@ public final class ServerTickEvents {
 	/**
 	 * Called at the start of a ServerWorld's tick.
 	 */
-	public static final Event<StartWorldTick> START_WORLD_TICK = EventFactory.createArrayBacked(StartWorldTick.class, callbacks -> world -> {
+	public static final Event<StartWorldTick> START_WORLD_TICK = EventFactory.createUnrolled(StartWorldTick.class, callbacks -> world -> {
 		for (StartWorldTick callback : callbacks) {
 			callback.onStartTick(world);
 		}
@@ -58,7 +58,7 @@ public final class ServerTickEvents {
 	 *
 	 * <p>End of world tick may be used to start async computations for the next tick.
 	 */
-	public static final Event<EndWorldTick> END_WORLD_TICK = EventFactory.createArrayBacked(EndWorldTick.class, callbacks -> world -> {
+	public static final Event<EndWorldTick> END_WORLD_TICK = EventFactory.createUnrolled(EndWorldTick.class, callbacks -> world -> {
 		for (EndWorldTick callback : callbacks) {
 			callback.onEndTick(world);
 		}
@@ -33,6 +33,8 @@ public final class AccessWidener implements AccessWidenerVisitor {
 	// Contains the class-names that are affected by loaded wideners.
 	// Names are period-separated binary names (i.e. a.b.C).
 	final Set<String> classes = new LinkedHashSet<>();
+	// Lookup form of the above, built on first use and discarded whenever another entry is visited.
+	private volatile CompiledAccessWidener compiled;
 
 	@Override
 	public void visitHeader(String namespace) {
@@ -62,6 +64,7 @@ public final class AccessWidener implements AccessWidenerVisitor {
 	}
 
 	private void addTargets(String clazz) {
+		compiled = null;
 		clazz = clazz.replace('/', '.');
 		classes.add(clazz);
 
@@ -117,10 +120,29 @@ public final class AccessWidener implements AccessWidenerVisitor {
 		return methodAccess.getOrDefault(entryTriple, MethodAccess.DEFAULT);
 	}
 
+	CompiledAccessWidener getCompiled() {
+		CompiledAccessWidener ret = compiled;
+
+		if (ret == null) {
+			compiled = ret = new CompiledAccessWidener(this);
+		}
+
+		return ret;
+	}
+
 	public Set<String> getTargets() {
 		return classes;
 	}
 
+	/**
+	 * Equivalent to {@code getTargets().contains(className)}, but rejects most non-targeted classes without a set lookup.
+	 *
+	 * @param className the class name, period-separated (i.e. a.b.C)
+	 */
+	public boolean isTarget(String className) {
+		return getCompiled().isTarget(className);
+	}
+
 	public String getNamespace() {
 		return namespace;
 	}
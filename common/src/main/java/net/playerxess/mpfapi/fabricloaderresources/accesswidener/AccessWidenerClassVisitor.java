@@ -26,13 +26,14 @@ import org.objectweb.asm.Opcodes;
  * Applies rules from an {@link AccessWidener} by transforming Java classes using an ASM {@link ClassVisitor}.
  */
 public final class AccessWidenerClassVisitor extends ClassVisitor {
-	private final AccessWidener accessWidener;
+	private final CompiledAccessWidener accessWidener;
 	private String className;
 	private int classAccess;
+	private CompiledAccessWidener.ClassTable classTable;
 
 	AccessWidenerClassVisitor(int api, ClassVisitor classVisitor, AccessWidener accessWidener) {
 		super(api, classVisitor);
-		this.accessWidener = accessWidener;
+		this.accessWidener = accessWidener.getCompiled();
 	}
 
 	public static ClassVisitor createClassVisitor(int api, ClassVisitor visitor, AccessWidener accessWidener) {
@@ -43,10 +44,11 @@ public final class AccessWidenerClassVisitor extends ClassVisitor {
 	public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
 		className = name;
 		classAccess = access;
+		classTable = accessWidener.getClassTable(name);
 
 		super.visit(
 				version,
-				accessWidener.getClassAccess(name).apply(access, name, classAccess),
+				classTable.access.apply(access, name, classAccess),
 				name,
 				signature,
 				superName,
@@ -56,7 +58,7 @@ public final class AccessWidenerClassVisitor extends ClassVisitor {
 
 	@Override
 	public void visitPermittedSubclass(String permittedSubclass) {
-		AccessWidener.Access access = accessWidener.getClassAccess(className);
+		AccessWidener.Access access = classTable.access;
 
 		if (access == AccessWidener.ClassAccess.EXTENDABLE || access == AccessWidener.ClassAccess.ACCESSIBLE_EXTENDABLE) {
 			return;
@@ -71,14 +73,14 @@ public final class AccessWidenerClassVisitor extends ClassVisitor {
 				name,
 				outerName,
 				innerName,
-				accessWidener.getClassAccess(name).apply(access, name, classAccess)
+				accessWidener.getClassTable(name).access.apply(access, name, classAccess)
 		);
 	}
 
 	@Override
 	public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
 		return super.visitField(
-				accessWidener.getFieldAccess(new EntryTriple(className, name, descriptor)).apply(access, name, classAccess),
+				classTable.getFieldAccess(name, descriptor).apply(access, name, classAccess),
 				name,
 				descriptor,
 				signature,
@@ -89,7 +91,7 @@ public final class AccessWidenerClassVisitor extends ClassVisitor {
 	@Override
 	public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
 		return new AccessWidenerMethodVisitor(super.visitMethod(
-				accessWidener.getMethodAccess(new EntryTriple(className, name, descriptor)).apply(access, name, classAccess),
+				classTable.getMethodAccess(name, descriptor).apply(access, name, classAccess),
 				name,
 				descriptor,
 				signature,
@@ -127,7 +129,7 @@ public final class AccessWidenerClassVisitor extends ClassVisitor {
 		}
 
 		private boolean isTargetMethod(String owner, String name, String descriptor) {
-			return owner.equals(className) && !name.equals("<init>") && accessWidener.getMethodAccess(new EntryTriple(owner, name, descriptor)) != AccessWidener.MethodAccess.DEFAULT;
+			return owner.equals(className) && !name.equals("<init>") && classTable.getMethodAccess(name, descriptor) != AccessWidener.MethodAccess.DEFAULT;
 		}
 	}
 }
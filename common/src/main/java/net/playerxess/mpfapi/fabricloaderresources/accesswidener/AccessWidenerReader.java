@@ -21,24 +21,19 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
-import java.util.regex.Pattern;
 
 public final class AccessWidenerReader {
 	public static final Charset ENCODING = StandardCharsets.UTF_8;
 
-	// Also includes some weirdness such as vertical tabs
-	private static final Pattern V1_DELIMITER = Pattern.compile("\\s+");
-	// Only spaces or tabs
-	private static final Pattern V2_DELIMITER = Pattern.compile("[ \\t]+");
 	// Prefix used on access types to denote the entry should be inherited by mods depending on this mod
 	private static final String TRANSITIVE_PREFIX = "transitive-";
 
 	// Access widener format versions
-	private static final int V1 = 1;
-	private static final int V2 = 2;
+	static final int V1 = 1;
+	static final int V2 = 2;
 
 	private final AccessWidenerVisitor visitor;
 
@@ -87,8 +82,7 @@ public final class AccessWidenerReader {
 		visitor.visitHeader(header.namespace);
 
 		String line;
-
-		Pattern delimiter = version < V2 ? V1_DELIMITER : V2_DELIMITER;
+		List<String> tokens = new ArrayList<>(5);
 
 		while ((line = reader.readLine()) != null) {
 			lineNumber++;
@@ -103,8 +97,8 @@ public final class AccessWidenerReader {
 				throw error("Leading whitespace is not allowed");
 			}
 
-			// Note that this trims trailing spaces. See the docs of split for details.
-			List<String> tokens = Arrays.asList(delimiter.split(line));
+			// Note that this trims trailing spaces.
+			tokenize(line, version, tokens);
 
 			String accessType = tokens.get(0);
 
@@ -140,6 +134,40 @@ public final class AccessWidenerReader {
 		}
 	}
 
+	/**
+	 * Split a line at runs of delimiters, dropping empty tokens, without the regex machinery of {@link String#split}.
+	 */
+	static void tokenize(String line, int version, List<String> out) {
+		out.clear();
+		int len = line.length();
+		int start = -1;
+
+		for (int i = 0; i < len; i++) {
+			if (isDelimiter(line.charAt(i), version)) {
+				if (start >= 0) {
+					out.add(line.substring(start, i));
+					start = -1;
+				}
+			} else if (start < 0) {
+				start = i;
+			}
+		}
+
+		if (start >= 0) {
+			out.add(line.substring(start));
+		}
+	}
+
+	private static boolean isDelimiter(char c, int version) {
+		if (version < V2) {
+			// Also includes some weirdness such as vertical tabs, matches the regex \s
+			return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+		} else {
+			// Only spaces or tabs
+			return c == ' ' || c == '\t';
+		}
+	}
+
 	public static Header readHeader(byte[] content) {
 		String strContent = new String(content, ENCODING);
 
@@ -238,7 +266,7 @@ public final class AccessWidenerReader {
 			line = line.substring(0, commentPos);
 
 			// In V1, trimming led to leading whitespace being tolerated
-			// The tailing whitespace is already stripped by the split below
+			// The tailing whitespace is already stripped by the tokenizer
 			if (version <= V1) {
 				line = line.trim();
 			}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.playerxess.mpfapi.fabricloaderresources.accesswidener;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable lookup form of an {@link AccessWidener}, built once all wideners have been read.
+ *
+ * <p>Entries are grouped into a table per owner class, so the class visitor resolves the owner once per class and then
+ * looks up each member by name and descriptor without allocating a key. Targeted class names are additionally summarized
+ * in a bloom filter to reject the vast majority of classes without a hash set lookup.
+ */
+final class CompiledAccessWidener {
+	private static final ClassTable EMPTY_TABLE = new ClassTable(AccessWidener.ClassAccess.DEFAULT);
+	private static final int BLOOM_BITS_PER_ENTRY = 16;
+	private static final int BLOOM_PROBES = 3;
+
+	private final Map<String, ClassTable> tables;
+	private final Set<String> targets;
+	private final long[] bloom;
+	private final int bloomMask;
+
+	CompiledAccessWidener(AccessWidener accessWidener) {
+		Map<String, ClassTable> tables = new HashMap<>();
+
+		for (Map.Entry<String, AccessWidener.Access> entry : accessWidener.classAccess.entrySet()) {
+			tables.put(entry.getKey(), new ClassTable(entry.getValue()));
+		}
+
+		for (Map.Entry<EntryTriple, AccessWidener.Access> entry : accessWidener.methodAccess.entrySet()) {
+			EntryTriple triple = entry.getKey();
+			getOrCreateTable(tables, triple.getOwner()).methods.put(triple.getName(), triple.getDesc(), entry.getValue());
+		}
+
+		for (Map.Entry<EntryTriple, AccessWidener.Access> entry : accessWidener.fieldAccess.entrySet()) {
+			EntryTriple triple = entry.getKey();
+			getOrCreateTable(tables, triple.getOwner()).fields.put(triple.getName(), triple.getDesc(), entry.getValue());
+		}
+
+		this.tables = tables;
+		this.targets = Collections.unmodifiableSet(accessWidener.classes);
+
+		int bits = Integer.highestOneBit(Math.max(64, accessWidener.classes.size() * BLOOM_BITS_PER_ENTRY - 1) << 1);
+		this.bloom = new long[bits >>> 6];
+		this.bloomMask = bits - 1;
+
+		for (String target : accessWidener.classes) {
+			int hash = target.hashCode();
+			int step = mix(hash);
+
+			for (int i = 0; i < BLOOM_PROBES; i++) {
+				int bit = (hash + i * step) & bloomMask;
+				bloom[bit >>> 6] |= 1L << bit;
+			}
+		}
+	}
+
+	private static ClassTable getOrCreateTable(Map<String, ClassTable> tables, String owner) {
+		return tables.computeIfAbsent(owner, ignore -> new ClassTable(AccessWidener.ClassAccess.DEFAULT));
+	}
+
+	private static int mix(int hash) {
+		hash *= 0x9E3779B9;
+		return (hash ^ hash >>> 16) | 1; // odd to visit distinct bits
+	}
+
+	/**
+	 * @param className the class name, period-separated (i.e. a.b.C)
+	 */
+	boolean isTarget(String className) {
+		int hash = className.hashCode();
+		int step = mix(hash);
+
+		for (int i = 0; i < BLOOM_PROBES; i++) {
+			int bit = (hash + i * step) & bloomMask;
+			if ((bloom[bit >>> 6] & 1L << bit) == 0) return false;
+		}
+
+		return targets.contains(className);
+	}
+
+	/**
+	 * @param className the class name as class-file internal binary name (i.e. a/b/C)
+	 */
+	ClassTable getClassTable(String className) {
+		return tables.getOrDefault(className, EMPTY_TABLE);
+	}
+
+	static final class ClassTable {
+		final AccessWidener.Access access;
+		final MemberTable methods = new MemberTable(AccessWidener.MethodAccess.DEFAULT);
+		final MemberTable fields = new MemberTable(AccessWidener.FieldAccess.DEFAULT);
+
+		ClassTable(AccessWidener.Access access) {
+			this.access = access;
+		}
+
+		AccessWidener.Access getMethodAccess(String name, String descriptor) {
+			return methods.get(name, descriptor);
+		}
+
+		AccessWidener.Access getFieldAccess(String name, String descriptor) {
+			return fields.get(name, descriptor);
+		}
+	}
+
+	/**
+	 * Member accesses by name, with the usually single descriptor per name stored in a small array.
+	 */
+	static final class MemberTable {
+		private final AccessWidener.Access defaultAccess;
+		private final Map<String, Object[]> entries = new HashMap<>(); // name -> [desc0, access0, desc1, access1, ..]
+
+		MemberTable(AccessWidener.Access defaultAccess) {
+			this.defaultAccess = defaultAccess;
+		}
+
+		void put(String name, String descriptor, AccessWidener.Access access) {
+			Object[] prev = entries.get(name);
+			Object[] next;
+
+			if (prev == null) {
+				next = new Object[] { descriptor, access };
+			} else {
+				next = new Object[prev.length + 2];
+				System.arraycopy(prev, 0, next, 0, prev.length);
+				next[prev.length] = descriptor;
+				next[prev.length + 1] = access;
+			}
+
+			entries.put(name, next);
+		}
+
+		AccessWidener.Access get(String name, String descriptor) {
+			if (entries.isEmpty()) return defaultAccess;
+
+			Object[] candidates = entries.get(name);
+			if (candidates == null) return defaultAccess;
+
+			for (int i = 0; i < candidates.length; i += 2) {
+				if (candidates[i].equals(descriptor)) return (AccessWidener.Access) candidates[i + 1];
+			}
+
+			return defaultAccess;
+		}
+	}
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.playerxess.mpfapi.fabricloaderresources.accesswidener;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.UnaryOperator;
+
+/**
+ * Reads many access widener files concurrently and merges them into a single visitor.
+ *
+ * <p>Each source is read and parsed on the executor into a partial result, optionally passing through a decorating
+ * visitor such as an {@link AccessWidenerRemapper} in the worker. The partial results are then replayed into the
+ * target visitor on the calling thread, in the order of the sources, so the outcome is the same as reading the
+ * sources one after another with {@link AccessWidenerReader}.
+ */
+public final class ParallelAccessWidenerReader {
+	private final String currentNamespace;
+	private final UnaryOperator<AccessWidenerVisitor> decorator;
+
+	/**
+	 * @param currentNamespace the namespace the sources have to be in, or null to accept any namespace.
+	 */
+	public ParallelAccessWidenerReader(String currentNamespace) {
+		this(currentNamespace, null);
+	}
+
+	/**
+	 * @param currentNamespace the namespace the sources have to be in, or null to accept any namespace.
+	 * @param decorator        wraps the visitor receiving the partial result of a source, e.g. to remap it, or null.
+	 *                         Applied on the worker threads, so it has to be thread-safe.
+	 */
+	public ParallelAccessWidenerReader(String currentNamespace, UnaryOperator<AccessWidenerVisitor> decorator) {
+		this.currentNamespace = currentNamespace;
+		this.decorator = decorator;
+	}
+
+	public void read(List<? extends Source> sources, AccessWidenerVisitor visitor) {
+		read(sources, visitor, ForkJoinPool.commonPool());
+	}
+
+	public void read(List<? extends Source> sources, AccessWidenerVisitor visitor, Executor executor) {
+		List<CompletableFuture<PartialResult>> futures = new ArrayList<>(sources.size());
+
+		for (Source source : sources) {
+			futures.add(CompletableFuture.supplyAsync(() -> readPartial(source), executor));
+		}
+
+		for (int i = 0; i < futures.size(); i++) {
+			PartialResult result;
+
+			try {
+				result = futures.get(i).join();
+			} catch (CompletionException e) {
+				Throwable cause = e.getCause();
+				throw cause instanceof RuntimeException ? (RuntimeException) cause : e;
+			}
+
+			try {
+				result.replay(visitor);
+			} catch (RuntimeException e) {
+				throw new RuntimeException("Failed to read " + sources.get(i).getName(), e);
+			}
+		}
+	}
+
+	private PartialResult readPartial(Source source) {
+		try {
+			PartialResult result = new PartialResult();
+			AccessWidenerVisitor visitor = decorator != null ? decorator.apply(result) : result;
+			new AccessWidenerReader(visitor).read(source.read(), currentNamespace);
+
+			return result;
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to read " + source.getName(), e);
+		}
+	}
+
+	/**
+	 * An access widener file to read.
+	 */
+	public interface Source {
+		/**
+		 * @return a description of the source for error messages
+		 */
+		String getName();
+
+		/**
+		 * @return the content of the access widener file, called on a worker thread
+		 */
+		byte[] read() throws IOException;
+	}
+
+	/**
+	 * The events visited while reading a single source, stored as flat records of
+	 * kind, owner or class name, name, descriptor, access and transitive flag.
+	 */
+	private static final class PartialResult implements AccessWidenerVisitor {
+		private static final int RECORD_SIZE = 6;
+
+		private String namespace;
+		private final List<Object> records = new ArrayList<>();
+
+		@Override
+		public void visitHeader(String namespace) {
+			this.namespace = namespace;
+		}
+
+		@Override
+		public void visitClass(String name, AccessWidenerReader.AccessType access, boolean transitive) {
+			add(Kind.CLASS, name, null, null, access, transitive);
+		}
+
+		@Override
+		public void visitMethod(String owner, String name, String descriptor, AccessWidenerReader.AccessType access, boolean transitive) {
+			add(Kind.METHOD, owner, name, descriptor, access, transitive);
+		}
+
+		@Override
+		public void visitField(String owner, String name, String descriptor, AccessWidenerReader.AccessType access, boolean transitive) {
+			add(Kind.FIELD, owner, name, descriptor, access, transitive);
+		}
+
+		private void add(Kind kind, String owner, String name, String descriptor, AccessWidenerReader.AccessType access, boolean transitive) {
+			records.add(kind);
+			records.add(owner);
+			records.add(name);
+			records.add(descriptor);
+			records.add(access);
+			records.add(transitive);
+		}
+
+		void replay(AccessWidenerVisitor visitor) {
+			visitor.visitHeader(namespace);
+
+			for (int i = 0; i < records.size(); i += RECORD_SIZE) {
+				Kind kind = (Kind) records.get(i);
+				String owner = (String) records.get(i + 1);
+				String name = (String) records.get(i + 2);
+				String descriptor = (String) records.get(i + 3);
+				AccessWidenerReader.AccessType access = (AccessWidenerReader.AccessType) records.get(i + 4);
+				boolean transitive = (Boolean) records.get(i + 5);
+
+				switch (kind) {
+				case CLASS:
+					visitor.visitClass(owner, access, transitive);
+					break;
+				case METHOD:
+					visitor.visitMethod(owner, name, descriptor, access, transitive);
+					break;
+				case FIELD:
+					visitor.visitField(owner, name, descriptor, access, transitive);
+					break;
+				}
+			}
+		}
+
+		private enum Kind {
+			CLASS,
+			METHOD,
+			FIELD
+		}
+	}
+}
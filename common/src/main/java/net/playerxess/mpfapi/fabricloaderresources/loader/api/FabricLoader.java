@@ -108,6 +108,11 @@ public interface FabricLoader {
 	 *
 	 * <p>Exceptions thrown by <code>invoker</code> will be collected and thrown after all entrypoints have been invoked.
 	 *
+	 * <p>Mods may opt the entrypoints of a key into parallel initialization with the {@code fabric-loader:parallel-entrypoints}
+	 * custom value, mapping the key to the ids of the mods whose entrypoints have to complete first. Such entrypoints are
+	 * instantiated and invoked on worker threads, so <code>invoker</code> must be thread-safe if any mod opted in.
+	 * The entrypoints of the other mods are invoked on the calling thread in their regular order.
+	 *
 	 * @param key     the key in entrypoint declaration in {@code fabric.mod.json}
 	 * @param type    the type of entrypoints
 	 * @param invoker applied to each entrypoint to invoke the desired action
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.playerxess.mpfapi.fabricloaderresources.loader.impl;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import net.playerxess.mpfapi.fabricloaderresources.loader.api.MappingResolver;
+import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.log.Log;
+import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.log.LogCategory;
+import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.log.LogLevel;
+
+/**
+ * Memoizes the results of another resolver per namespace pair.
+ *
+ * <p>Names are cached in the dot form used by the API, so repeated queries are a single hash lookup without any
+ * conversion. Each cache stops growing at {@link #MAX_CACHE_SIZE} entries to keep arbitrary probing by mods from
+ * retaining memory, later queries are still answered by the delegate. Queries for namespaces the delegate doesn't
+ * know are passed through without creating caches for them.
+ */
+final class CachingMappingResolver implements MappingResolver {
+	private static final int MAX_CACHE_SIZE = 1 << 16;
+
+	private final MappingResolver delegate;
+	private final String targetNamespace;
+	/** source namespace -> caches for mapping to the target namespace. */
+	private final ConcurrentMap<String, Caches> mapCaches = new ConcurrentHashMap<>();
+	/** destination namespace -> caches for unmapping from the target namespace. */
+	private final ConcurrentMap<String, Caches> unmapCaches = new ConcurrentHashMap<>();
+	private final Metrics classMetrics = new Metrics();
+	private final Metrics fieldMetrics = new Metrics();
+	private final Metrics methodMetrics = new Metrics();
+
+	CachingMappingResolver(MappingResolver delegate) {
+		this.delegate = delegate;
+		this.targetNamespace = delegate.getCurrentRuntimeNamespace();
+
+		if (Log.shouldLog(LogLevel.DEBUG, LogCategory.MAPPINGS)) {
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> Log.debug(LogCategory.MAPPINGS, "Mapping resolver cache: %s", this), "Mapping resolver statistics"));
+		}
+	}
+
+	@Override
+	public Collection<String> getNamespaces() {
+		return delegate.getNamespaces();
+	}
+
+	@Override
+	public String getCurrentRuntimeNamespace() {
+		return targetNamespace;
+	}
+
+	@Override
+	public String mapClassName(String namespace, String className) {
+		Caches caches = getCaches(mapCaches, namespace);
+		if (caches == null) return delegate.mapClassName(namespace, className);
+
+		ConcurrentMap<String, String> cache = caches.classes;
+		String ret = cache.get(className);
+
+		if (ret != null) {
+			classMetrics.hits.increment();
+		} else {
+			classMetrics.misses.increment();
+			ret = delegate.mapClassName(namespace, className);
+			put(cache, className, ret);
+		}
+
+		return ret;
+	}
+
+	@Override
+	public String unmapClassName(String targetNamespace, String className) {
+		Caches caches = getCaches(unmapCaches, targetNamespace);
+		if (caches == null) return delegate.unmapClassName(targetNamespace, className);
+
+		ConcurrentMap<String, String> cache = caches.classes;
+		String ret = cache.get(className);
+
+		if (ret != null) {
+			classMetrics.hits.increment();
+		} else {
+			classMetrics.misses.increment();
+			ret = delegate.unmapClassName(targetNamespace, className);
+			put(cache, className, ret);
+		}
+
+		return ret;
+	}
+
+	@Override
+	public String mapFieldName(String namespace, String owner, String name, String descriptor) {
+		Caches caches = getCaches(mapCaches, namespace);
+		if (caches == null) return delegate.mapFieldName(namespace, owner, name, descriptor);
+
+		ConcurrentMap<MemberKey, String> cache = caches.fields;
+		MemberKey key = new MemberKey(owner, name, descriptor);
+		String ret = cache.get(key);
+
+		if (ret != null) {
+			fieldMetrics.hits.increment();
+		} else {
+			fieldMetrics.misses.increment();
+			ret = delegate.mapFieldName(namespace, owner, name, descriptor);
+			put(cache, key, ret);
+		}
+
+		return ret;
+	}
+
+	@Override
+	public String mapMethodName(String namespace, String owner, String name, String descriptor) {
+		Caches caches = getCaches(mapCaches, namespace);
+		if (caches == null) return delegate.mapMethodName(namespace, owner, name, descriptor);
+
+		ConcurrentMap<MemberKey, String> cache = caches.methods;
+		MemberKey key = new MemberKey(owner, name, descriptor);
+		String ret = cache.get(key);
+
+		if (ret != null) {
+			methodMetrics.hits.increment();
+		} else {
+			methodMetrics.misses.increment();
+			ret = delegate.mapMethodName(namespace, owner, name, descriptor);
+			put(cache, key, ret);
+		}
+
+		return ret;
+	}
+
+	/**
+	 * @return The caches for the namespace, or {@code null} if the delegate doesn't know it.
+	 */
+	private Caches getCaches(ConcurrentMap<String, Caches> caches, String namespace) {
+		Caches ret = caches.get(namespace);
+		if (ret != null) return ret;
+		if (!delegate.getNamespaces().contains(namespace)) return null;
+
+		return caches.computeIfAbsent(namespace, ignore -> new Caches());
+	}
+
+	private static <K> void put(ConcurrentMap<K, String> cache, K key, String value) {
+		if (cache.size() < MAX_CACHE_SIZE) cache.putIfAbsent(key, value);
+	}
+
+	/**
+	 * @return The fraction of all lookups answered from the caches, 0 if there were none yet.
+	 */
+	double getHitRate() {
+		long hits = classMetrics.hits.sum() + fieldMetrics.hits.sum() + methodMetrics.hits.sum();
+		long total = hits + classMetrics.misses.sum() + fieldMetrics.misses.sum() + methodMetrics.misses.sum();
+
+		return total > 0 ? (double) hits / total : 0;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("classes %s, fields %s, methods %s, overall %.1f%% hits",
+				classMetrics, fieldMetrics, methodMetrics, getHitRate() * 100);
+	}
+
+	private static final class Caches {
+		final ConcurrentMap<String, String> classes = new ConcurrentHashMap<>();
+		final ConcurrentMap<MemberKey, String> fields = new ConcurrentHashMap<>();
+		final ConcurrentMap<MemberKey, String> methods = new ConcurrentHashMap<>();
+	}
+
+	private static final class MemberKey {
+		MemberKey(String owner, String name, String desc) {
+			this.owner = owner;
+			this.name = name;
+			this.desc = desc;
+			this.hash = (owner.hashCode() * 31 + name.hashCode()) * 31 + Objects.hashCode(desc);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) return true;
+			if (!(obj instanceof MemberKey)) return false;
+
+			MemberKey o = (MemberKey) obj;
+
+			return hash == o.hash && owner.equals(o.owner) && name.equals(o.name) && Objects.equals(desc, o.desc);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		private final String owner;
+		private final String name;
+		private final String desc;
+		private final int hash;
+	}
+
+	private static final class Metrics {
+		final LongAdder hits = new LongAdder();
+		final LongAdder misses = new LongAdder();
+
+		@Override
+		public String toString() {
+			long hits = this.hits.sum();
+			long total = hits + misses.sum();
+
+			return String.format("%d/%d", hits, total);
+		}
+	}
+}
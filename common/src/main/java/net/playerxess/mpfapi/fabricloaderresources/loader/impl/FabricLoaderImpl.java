@@ -16,7 +16,6 @@
 
 package net.playerxess.mpfapi.fabricloaderresources.loader.impl;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -39,7 +38,7 @@ import org.jetbrains.annotations.VisibleForTesting;
 import org.objectweb.asm.Opcodes;
 
 import net.playerxess.mpfapi.fabricloaderresources.accesswidener.AccessWidener;
-import net.playerxess.mpfapi.fabricloaderresources.accesswidener.AccessWidenerReader;
+import net.playerxess.mpfapi.fabricloaderresources.accesswidener.ParallelAccessWidenerReader;
 import net.playerxess.mpfapi.fabricloaderresources.api.EnvType;
 import net.playerxess.mpfapi.fabricloaderresources.loader.api.LanguageAdapter;
 import net.playerxess.mpfapi.fabricloaderresources.loader.api.MappingResolver;
@@ -55,6 +54,7 @@ import net.playerxess.mpfapi.fabricloaderresources.loader.impl.discovery.ModReso
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.discovery.ModResolver;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.discovery.RuntimeModRemapper;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.entrypoint.EntrypointStorage;
+import net.playerxess.mpfapi.fabricloaderresources.loader.impl.entrypoint.EntrypointWaves;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.game.GameProvider;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.launch.FabricLauncherBase;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.launch.knot.Knot;
@@ -65,6 +65,7 @@ import net.playerxess.mpfapi.fabricloaderresources.loader.impl.metadata.VersionO
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.DefaultLanguageAdapter;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.ExceptionUtil;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.LoaderUtil;
+import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.StartupTrace;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.SystemProperties;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.log.Log;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.log.LogCategory;
@@ -215,7 +216,9 @@ public final class FabricLoaderImpl extends FabricLoader {
 		discoverer.addCandidateFinder(new ArgumentModCandidateFinder(remapRegularMods));
 
 		Map<String, Set<ModCandidateImpl>> envDisabledMods = new HashMap<>();
-		modCandidates = discoverer.discoverMods(this, envDisabledMods);
+		try (StartupTrace.Span span = StartupTrace.begin(StartupTrace.DISCOVERY, "discover mods")) {
+			modCandidates = discoverer.discoverMods(this, envDisabledMods);
+		}
 
 		// dump version and dependency overrides info
 
@@ -229,7 +232,9 @@ public final class FabricLoaderImpl extends FabricLoader {
 
 		// resolve mods
 
-		modCandidates = ModResolver.resolve(modCandidates, getEnvironmentType(), envDisabledMods);
+		try (StartupTrace.Span span = StartupTrace.begin(StartupTrace.RESOLUTION, "resolve mods")) {
+			modCandidates = ModResolver.resolve(modCandidates, getEnvironmentType(), envDisabledMods);
+		}
 
 		dumpModList(modCandidates);
 		dumpNonFabricMods(discoverer.getNonFabricMods());
@@ -243,7 +248,9 @@ public final class FabricLoaderImpl extends FabricLoader {
 			if (System.getProperty(SystemProperties.REMAP_CLASSPATH_FILE) == null) {
 				Log.warn(LogCategory.MOD_REMAP, "Runtime mod remapping disabled due to no fabric.remapClasspathFile being specified. You may need to update loom.");
 			} else {
-				RuntimeModRemapper.remap(modCandidates, cacheDir.resolve(TMP_DIR_NAME), outputdir);
+				try (StartupTrace.Span span = StartupTrace.begin(StartupTrace.REMAP, "remap mods")) {
+					RuntimeModRemapper.remap(modCandidates, cacheDir.resolve(TMP_DIR_NAME), outputdir);
+				}
 			}
 		}
 
@@ -386,18 +393,33 @@ public final class FabricLoaderImpl extends FabricLoader {
 
 	@Override
 	public <T> void invokeEntrypoints(String key, Class<T> type, Consumer<? super T> invoker) {
+		try {
+			invokeEntrypoints0(key, type, invoker);
+		} finally {
+			// the environment specific initializers are the last ones invoked during startup
+			if (key.equals("client") || key.equals("server")) StartupTrace.finish();
+		}
+	}
+
+	private <T> void invokeEntrypoints0(String key, Class<T> type, Consumer<? super T> invoker) {
 		if (!hasEntrypoints(key)) {
 			Log.debug(LogCategory.ENTRYPOINT, "No subscribers for entrypoint '%s'", key);
 			return;
 		}
 
 		RuntimeException exception = null;
-		Collection<EntrypointContainer<T>> entrypoints = FabricLoaderImpl.INSTANCE.getEntrypointContainers(key, type);
+		List<EntrypointContainer<T>> entrypoints = FabricLoaderImpl.INSTANCE.getEntrypointContainers(key, type);
+
+		if (System.getProperty(SystemProperties.DEBUG_DISABLE_PARALLEL_ENTRYPOINTS) == null
+				&& EntrypointWaves.hasParallelEntrypoints(key, entrypoints)) {
+			new EntrypointWaves<>(key, entrypoints, invoker, FabricLauncherBase.getLauncher().getTargetClassLoader()).run();
+			return;
+		}
 
 		Log.debug(LogCategory.ENTRYPOINT, "Iterating over entrypoint '%s'", key);
 
 		for (EntrypointContainer<T> container : entrypoints) {
-			try {
+			try (StartupTrace.Span span = StartupTrace.begin(StartupTrace.ENTRYPOINT, key, container.getProvider().getMetadata().getId())) {
 				invoker.accept(container.getEntrypoint());
 			} catch (Throwable t) {
 				exception = ExceptionUtil.gatherExceptions(t,
@@ -418,10 +440,10 @@ public final class FabricLoaderImpl extends FabricLoader {
 		if (mappingResolver == null) {
 			final String targetNamespace = FabricLauncherBase.getLauncher().getTargetNamespace();
 
-			mappingResolver = new LazyMappingResolver(() -> new MappingResolverImpl(
+			mappingResolver = new LazyMappingResolver(() -> new CachingMappingResolver(new MappingResolverImpl(
 				FabricLauncherBase.getLauncher().getMappingConfiguration().getMappings(),
 				targetNamespace
-			), targetNamespace);
+			)), targetNamespace);
 		}
 
 		return mappingResolver;
@@ -515,7 +537,7 @@ public final class FabricLoaderImpl extends FabricLoader {
 	}
 
 	public void loadAccessWideners() {
-		AccessWidenerReader accessWidenerReader = new AccessWidenerReader(accessWidener);
+		List<ParallelAccessWidenerReader.Source> sources = new ArrayList<>();
 
 		for (net.playerxess.mpfapi.fabricloaderresources.loader.api.ModContainer modContainer : getAllMods()) {
 			LoaderModMetadata modMetadata = (LoaderModMetadata) modContainer.getMetadata();
@@ -525,12 +547,20 @@ public final class FabricLoaderImpl extends FabricLoader {
 			Path path = modContainer.findPath(accessWidener).orElse(null);
 			if (path == null) throw new RuntimeException(String.format("Missing accessWidener file %s from mod %s", accessWidener, modContainer.getMetadata().getId()));
 
-			try (BufferedReader reader = Files.newBufferedReader(path)) {
-				accessWidenerReader.read(reader, FabricLauncherBase.getLauncher().getTargetNamespace());
-			} catch (Exception e) {
-				throw new RuntimeException("Failed to read accessWidener file from mod " + modMetadata.getId(), e);
-			}
+			sources.add(new ParallelAccessWidenerReader.Source() {
+				@Override
+				public String getName() {
+					return "accessWidener file from mod " + modMetadata.getId();
+				}
+
+				@Override
+				public byte[] read() throws IOException {
+					return Files.readAllBytes(path);
+				}
+			});
 		}
+
+		new ParallelAccessWidenerReader(FabricLauncherBase.getLauncher().getTargetNamespace()).read(sources, this.accessWidener);
 	}
 
 	public void prepareModInit(Path newRunDir, Object gameInstance) {
@@ -21,24 +21,27 @@ import java.util.Collections;
 import java.util.HashSet;
 
 import net.playerxess.mpfapi.fabricloaderresources.loader.api.MappingResolver;
-import net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.tree.MappingTree;
+import net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.tree.MappingTreeView;
 
 class MappingResolverImpl implements MappingResolver {
-	private final MappingTree mappings;
+	private final MappingTreeView mappings;
 	private final String targetNamespace;
 	private final int targetNamespaceId;
+	private final Collection<String> namespaces;
 
-	MappingResolverImpl(MappingTree mappings, String targetNamespace) {
+	MappingResolverImpl(MappingTreeView mappings, String targetNamespace) {
 		this.mappings = mappings;
 		this.targetNamespace = targetNamespace;
 		this.targetNamespaceId = mappings.getNamespaceId(targetNamespace);
+
+		HashSet<String> namespaces = new HashSet<>(mappings.getDstNamespaces());
+		namespaces.add(mappings.getSrcNamespace());
+		this.namespaces = Collections.unmodifiableSet(namespaces);
 	}
 
 	@Override
 	public Collection<String> getNamespaces() {
-		HashSet<String> namespaces = new HashSet<>(mappings.getDstNamespaces());
-		namespaces.add(mappings.getSrcNamespace());
-		return Collections.unmodifiableSet(namespaces);
+		return namespaces;
 	}
 
 	@Override
@@ -70,7 +73,7 @@ class MappingResolverImpl implements MappingResolver {
 			throw new IllegalArgumentException("Class names must be provided in dot format: " + owner);
 		}
 
-		MappingTree.FieldMapping field = mappings.getField(replaceDotsWithSlashes(owner), name, descriptor, mappings.getNamespaceId(namespace));
+		MappingTreeView.FieldMappingView field = mappings.getField(replaceDotsWithSlashes(owner), name, descriptor, mappings.getNamespaceId(namespace));
 		return field == null ? name : field.getName(targetNamespaceId);
 	}
 
@@ -80,7 +83,7 @@ class MappingResolverImpl implements MappingResolver {
 			throw new IllegalArgumentException("Class names must be provided in dot format: " + owner);
 		}
 
-		MappingTree.MethodMapping method = mappings.getMethod(replaceDotsWithSlashes(owner), name, descriptor, mappings.getNamespaceId(namespace));
+		MappingTreeView.MethodMappingView method = mappings.getMethod(replaceDotsWithSlashes(owner), name, descriptor, mappings.getNamespaceId(namespace));
 		return method == null ? name : method.getName(targetNamespaceId);
 	}
 
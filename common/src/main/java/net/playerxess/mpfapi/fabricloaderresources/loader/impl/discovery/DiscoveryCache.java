@@ -0,0 +1,281 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.playerxess.mpfapi.fabricloaderresources.loader.impl.discovery;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.log.Log;
+import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.log.LogCategory;
+
+/**
+ * Persistent cache of the mod discovery results for mod jars, so that unchanged jars don't need to be opened again.
+ *
+ * <p>For each jar, keyed by its path, size and modification time, the cache stores the raw {@code fabric.mod.json}
+ * and the hashes of the nested jars it contains. Nested jars are stored by hash (see {@link ModCandidateImpl#hash}),
+ * the same way {@link ModDiscoverer} deduplicates them. The metadata is parsed again on every launch,
+ * which is cheap compared to opening the jars, and keeps version/dependency overrides and parse warnings working.
+ *
+ * <p>Only jars scanned during the current launch are written back, so removed mods are dropped from the cache.
+ */
+final class DiscoveryCache {
+	private static final int MAGIC = 0x46444348; // FDCH
+	private static final int VERSION = 1;
+
+	private final Path file;
+	private final Map<String, RootEntry> roots;
+	private final Map<Long, Node> nested;
+	private final Map<String, RootEntry> newRoots = new HashMap<>();
+	private final Map<Long, Node> newNested = new HashMap<>();
+	private boolean dirty;
+
+	private DiscoveryCache(Path file, Map<String, RootEntry> roots, Map<Long, Node> nested) {
+		this.file = file;
+		this.roots = roots;
+		this.nested = nested;
+	}
+
+	/**
+	 * Cached scan result of a jar.
+	 */
+	static final class Node {
+		final String localPath;
+		final long hash;
+		/**
+		 * Raw {@code fabric.mod.json}, or {@code null} if the jar doesn't have one.
+		 */
+		final byte[] metadata;
+		/**
+		 * Hashes of the nested jars.
+		 */
+		final long[] nestedHashes;
+
+		Node(String localPath, long hash, byte[] metadata, long[] nestedHashes) {
+			this.localPath = localPath;
+			this.hash = hash;
+			this.metadata = metadata;
+			this.nestedHashes = nestedHashes;
+		}
+	}
+
+	private static final class RootEntry {
+		final long size;
+		final long lastModified;
+		final Node node;
+
+		RootEntry(long size, long lastModified, Node node) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.node = node;
+		}
+	}
+
+	static DiscoveryCache load(Path file) {
+		Map<String, RootEntry> roots = new HashMap<>();
+		Map<Long, Node> nested = new HashMap<>();
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) throw new IOException("invalid header");
+
+			int nestedCount = in.readInt();
+
+			for (int i = 0; i < nestedCount; i++) {
+				Node node = readNode(in);
+				nested.put(node.hash, node);
+			}
+
+			int rootCount = in.readInt();
+
+			for (int i = 0; i < rootCount; i++) {
+				String path = in.readUTF();
+				long size = in.readLong();
+				long lastModified = in.readLong();
+				roots.put(path, new RootEntry(size, lastModified, readNode(in)));
+			}
+		} catch (NoSuchFileException e) {
+			// no cache yet
+		} catch (IOException e) {
+			Log.debug(LogCategory.DISCOVERY, "Ignoring invalid mod discovery cache %s: %s", file, e);
+			roots.clear();
+			nested.clear();
+		}
+
+		// Drop entries that reference missing nested jars, so that lookups never need to fall back to the jar.
+		for (Iterator<RootEntry> it = roots.values().iterator(); it.hasNext(); ) {
+			if (!isComplete(it.next().node, nested)) it.remove();
+		}
+
+		return new DiscoveryCache(file, roots, nested);
+	}
+
+	private static boolean isComplete(Node root, Map<Long, Node> nested) {
+		Set<Long> visited = new HashSet<>();
+		Queue<Node> queue = new ArrayDeque<>();
+		queue.add(root);
+		Node node;
+
+		while ((node = queue.poll()) != null) {
+			for (long hash : node.nestedHashes) {
+				if (!visited.add(hash)) continue;
+
+				Node child = nested.get(hash);
+				if (child == null) return false;
+
+				queue.add(child);
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Get the cached scan result of a jar if it didn't change, and keep it for the next launch.
+	 *
+	 * @param attributes the current attributes of the jar
+	 * @return the scan result, or {@code null} if the jar isn't cached or changed
+	 */
+	synchronized Node getRoot(Path path, BasicFileAttributes attributes) {
+		String key = path.toString();
+		RootEntry entry = roots.get(key);
+
+		if (entry == null
+				|| entry.size != attributes.size()
+				|| entry.lastModified != attributes.lastModifiedTime().toMillis()) {
+			return null;
+		}
+
+		newRoots.put(key, entry);
+		retainNested(entry.node);
+
+		return entry.node;
+	}
+
+	synchronized Node getNested(long hash) {
+		return nested.get(hash);
+	}
+
+	private void retainNested(Node node) {
+		for (long hash : node.nestedHashes) {
+			Node child = nested.get(hash);
+
+			if (child != null && newNested.putIfAbsent(hash, child) == null) {
+				retainNested(child);
+			}
+		}
+	}
+
+	synchronized void putRoot(Path path, BasicFileAttributes attributes, Node node) {
+		newRoots.put(path.toString(), new RootEntry(attributes.size(), attributes.lastModifiedTime().toMillis(), node));
+		dirty = true;
+	}
+
+	synchronized void putNested(Node node) {
+		newNested.put(node.hash, node);
+		dirty = true;
+	}
+
+	/**
+	 * Write the entries used or added during this launch, if they differ from the loaded ones.
+	 */
+	synchronized void save() {
+		if (!dirty && newRoots.size() == roots.size() && newNested.size() == nested.size()) return;
+
+		try {
+			Files.createDirectories(file.getParent());
+			Path tmp = Files.createTempFile(file.getParent(), "discoveryCache", ".tmp");
+
+			try {
+				try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+					out.writeInt(MAGIC);
+					out.writeInt(VERSION);
+					out.writeInt(newNested.size());
+
+					for (Node node : newNested.values()) {
+						writeNode(out, node);
+					}
+
+					out.writeInt(newRoots.size());
+
+					for (Map.Entry<String, RootEntry> entry : newRoots.entrySet()) {
+						out.writeUTF(entry.getKey());
+						out.writeLong(entry.getValue().size);
+						out.writeLong(entry.getValue().lastModified);
+						writeNode(out, entry.getValue().node);
+					}
+				}
+
+				Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(tmp);
+			}
+		} catch (IOException e) {
+			Log.warn(LogCategory.DISCOVERY, "Failed to write mod discovery cache " + file, e);
+		}
+	}
+
+	private static Node readNode(DataInputStream in) throws IOException {
+		String localPath = in.readBoolean() ? in.readUTF() : null;
+		long hash = in.readLong();
+		byte[] metadata = null;
+
+		if (in.readBoolean()) {
+			metadata = new byte[in.readInt()];
+			in.readFully(metadata);
+		}
+
+		long[] nestedHashes = new long[in.readInt()];
+
+		for (int i = 0; i < nestedHashes.length; i++) {
+			nestedHashes[i] = in.readLong();
+		}
+
+		return new Node(localPath, hash, metadata, nestedHashes);
+	}
+
+	private static void writeNode(DataOutputStream out, Node node) throws IOException {
+		out.writeBoolean(node.localPath != null);
+		if (node.localPath != null) out.writeUTF(node.localPath);
+		out.writeLong(node.hash);
+		out.writeBoolean(node.metadata != null);
+
+		if (node.metadata != null) {
+			out.writeInt(node.metadata.length);
+			out.write(node.metadata);
+		}
+
+		out.writeInt(node.nestedHashes.length);
+
+		for (long hash : node.nestedHashes) {
+			out.writeLong(hash);
+		}
+	}
+}
@@ -16,13 +16,15 @@
 
 package net.playerxess.mpfapi.fabricloaderresources.loader.impl.discovery;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.ref.SoftReference;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -30,8 +32,6 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
-import java.util.zip.ZipInputStream;
 
 import net.playerxess.mpfapi.fabricloaderresources.loader.api.Version;
 import net.playerxess.mpfapi.fabricloaderresources.loader.api.metadata.ModDependency;
@@ -61,6 +61,7 @@ public final class ModCandidateImpl implements DomainObject.Mod {
 	private final Collection<ModCandidateImpl> parentMods;
 	private int minNestLevel;
 	private SoftReference<ByteBuffer> dataRef;
+	private SoftReference<NestedJarFile> jarRef;
 
 	static ModCandidateImpl createBuiltin(BuiltinMod mod, VersionOverrides versionOverrides, DependencyOverrides depOverrides) {
 		LoaderModMetadata metadata = new BuiltinMetadataWrapper(mod.metadata);
@@ -121,6 +122,13 @@ public final class ModCandidateImpl implements DomainObject.Mod {
 		clearCachedData();
 	}
 
+	/**
+	 * @return the CRC32 and size of a nested jar as produced by {@link #hash(ZipEntry)}, or -1 for mods with an origin path
+	 */
+	long getHash() {
+		return hash;
+	}
+
 	public String getLocalPath() {
 		if (localPath != null) {
 			return localPath;
@@ -214,6 +222,7 @@ public final class ModCandidateImpl implements DomainObject.Mod {
 
 	void clearCachedData() {
 		this.dataRef = null;
+		this.jarRef = null;
 	}
 
 	public Path copyToDir(Path outputDir, boolean temp) throws IOException {
@@ -277,7 +286,7 @@ public final class ModCandidateImpl implements DomainObject.Mod {
 			ByteBuffer data = dataRef.get();
 
 			if (data != null) {
-				Files.copy(new ByteArrayInputStream(data.array(), data.arrayOffset() + data.position(), data.arrayOffset() + data.limit()), out, StandardCopyOption.REPLACE_EXISTING);
+				writeData(data, out);
 				return;
 			}
 		}
@@ -285,40 +294,38 @@ public final class ModCandidateImpl implements DomainObject.Mod {
 		if (paths != null) {
 			if (paths.size() != 1) throw new UnsupportedOperationException("multiple paths for "+this);
 
-			Files.copy(paths.get(0), out);
+			Files.copy(paths.get(0), out, StandardCopyOption.REPLACE_EXISTING);
 
 			return;
 		}
 
 		ModCandidateImpl parent = getBestSourcingParent();
+		NestedJarFile jar = parent.getJar();
+		NestedJarFile.Entry entry = getEntry(jar, parent);
 
-		if (parent.paths != null) {
-			if (parent.paths.size() != 1) throw new UnsupportedOperationException("multiple parent paths for "+this);
-
-			try (ZipFile zf = new ZipFile(parent.paths.get(0).toFile())) {
-				ZipEntry entry = zf.getEntry(localPath);
-				if (entry == null) throw new IOException(String.format("can't find nested mod %s in its parent mod %s", this, parent));
-
-				Files.copy(zf.getInputStream(entry), out);
-			}
+		if (entry.isStored()) {
+			// written straight from the parent's buffer, which is usually a mapping of the parent jar
+			writeData(jar.getData(entry), out);
 		} else {
-			ByteBuffer data = parent.getData();
+			try (InputStream is = jar.getInputStream(entry)) {
+				Files.copy(is, out, StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+	}
 
-			try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(data.array(), data.arrayOffset() + data.position(), data.arrayOffset() + data.limit()))) {
-				ZipEntry entry = null;
+	private static void writeData(ByteBuffer data, Path out) throws IOException {
+		data = data.duplicate();
 
-				while ((entry = zis.getNextEntry()) != null) {
-					if (entry.getName().equals(localPath)) {
-						Files.copy(zis, out);
-						return;
-					}
-				}
+		try (FileChannel channel = FileChannel.open(out, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (data.hasRemaining()) {
+				channel.write(data);
 			}
-
-			throw new IOException(String.format("can't find nested mod %s in its parent mod %s", this, parent));
 		}
 	}
 
+	/**
+	 * Get this mod's jar data, stored nested jars are returned as a slice of their parent's data without copying.
+	 */
 	private ByteBuffer getData() throws IOException {
 		SoftReference<ByteBuffer> dataRef = this.dataRef;
 
@@ -335,36 +342,45 @@ public final class ModCandidateImpl implements DomainObject.Mod {
 			ret = ByteBuffer.wrap(Files.readAllBytes(paths.get(0)));
 		} else {
 			ModCandidateImpl parent = getBestSourcingParent();
+			NestedJarFile jar = parent.getJar();
 
-			if (parent.paths != null) {
-				if (parent.paths.size() != 1) throw new UnsupportedOperationException("multiple parent paths for "+this);
+			ret = jar.getData(getEntry(jar, parent));
+		}
 
-				try (ZipFile zf = new ZipFile(parent.paths.get(0).toFile())) {
-					ZipEntry entry = zf.getEntry(localPath);
-					if (entry == null) throw new IOException(String.format("can't find nested mod %s in its parent mod %s", this, parent));
+		this.dataRef = new SoftReference<>(ret);
 
-					ret = ModDiscoverer.readMod(zf.getInputStream(entry));
-				}
-			} else {
-				ByteBuffer data = parent.getData();
-				ret = null;
+		return ret;
+	}
 
-				try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(data.array(), data.arrayOffset() + data.position(), data.arrayOffset() + data.limit()))) {
-					ZipEntry entry = null;
+	/**
+	 * Get a view of this mod's jar to read nested jars from, mapping the jar file if there is one.
+	 */
+	private NestedJarFile getJar() throws IOException {
+		SoftReference<NestedJarFile> jarRef = this.jarRef;
 
-					while ((entry = zis.getNextEntry()) != null) {
-						if (entry.getName().equals(localPath)) {
-							ret = ModDiscoverer.readMod(zis);
-							break;
-						}
-					}
-				}
+		if (jarRef != null) {
+			NestedJarFile ret = jarRef.get();
+			if (ret != null) return ret;
+		}
 
-				if (ret == null) throw new IOException(String.format("can't find nested mod %s in its parent mods %s", this, parent));
-			}
+		NestedJarFile ret;
+
+		if (paths != null) {
+			if (paths.size() != 1) throw new UnsupportedOperationException("multiple paths for "+this);
+
+			ret = NestedJarFile.open(paths.get(0));
+		} else {
+			ret = NestedJarFile.open(getData());
 		}
 
-		this.dataRef = new SoftReference<>(ret);
+		this.jarRef = new SoftReference<>(ret);
+
+		return ret;
+	}
+
+	private NestedJarFile.Entry getEntry(NestedJarFile jar, ModCandidateImpl parent) throws IOException {
+		NestedJarFile.Entry ret = jar.getEntry(localPath);
+		if (ret == null) throw new IOException(String.format("can't find nested mod %s in its parent mod %s", this, parent));
 
 		return ret;
 	}
@@ -378,6 +394,7 @@ public final class ModCandidateImpl implements DomainObject.Mod {
 			if (parent.minNestLevel >= minNestLevel) continue;
 
 			if (parent.paths != null && parent.paths.size() == 1
+					|| parent.jarRef != null && parent.jarRef.get() != null
 					|| parent.dataRef != null && parent.dataRef.get() != null) {
 				return parent;
 			}
@@ -16,12 +16,14 @@
 
 package net.playerxess.mpfapi.fabricloaderresources.loader.impl.discovery;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -31,6 +33,7 @@ import java.util.HashSet;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
@@ -63,6 +66,7 @@ import net.playerxess.mpfapi.fabricloaderresources.loader.impl.metadata.ParseMet
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.metadata.VersionOverrides;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.ExceptionUtil;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.LoaderUtil;
+import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.StartupTrace;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.SystemProperties;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.log.Log;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.log.LogCategory;
@@ -75,6 +79,8 @@ public final class ModDiscoverer {
 	private final Map<Long, ModScanTask> jijDedupMap = new ConcurrentHashMap<>(); // avoids reading the same jar twice
 	private final List<NestedModInitData> nestedModInitDatas = Collections.synchronizedList(new ArrayList<>()); // breaks potential cycles from deduplication
 	private final List<Path> nonFabricMods = Collections.synchronizedList(new ArrayList<>());
+	private final List<ModScanTask> scannedRootJars = Collections.synchronizedList(new ArrayList<>()); // root jars missing from the cache
+	private DiscoveryCache cache; // null if disabled
 
 	public ModDiscoverer(VersionOverrides versionOverrides, DependencyOverrides depOverrides) {
 		this.versionOverrides = versionOverrides;
@@ -87,6 +93,11 @@ public final class ModDiscoverer {
 
 	public List<ModCandidateImpl> discoverMods(FabricLoaderImpl loader, Map<String, Set<ModCandidateImpl>> envDisabledModsOut) throws ModResolutionException {
 		long startTime = System.nanoTime();
+
+		if (System.getProperty(SystemProperties.DEBUG_DISABLE_DISCOVERY_CACHE) == null) {
+			cache = DiscoveryCache.load(loader.getGameDir().resolve(FabricLoaderImpl.CACHE_DIR_NAME).resolve("discoveryCache-" + envType.name().toLowerCase(Locale.ENGLISH) + ".bin"));
+		}
+
 		ForkJoinPool pool = new ForkJoinPool();
 		Set<Path> processedPaths = new HashSet<>(); // suppresses duplicate paths
 		List<Future<ModCandidateImpl>> futures = new ArrayList<>();
@@ -182,6 +193,10 @@ public final class ModDiscoverer {
 			throw exception;
 		}
 
+		if (cache != null) {
+			updateCache();
+		}
+
 		// get optional set of disabled mod ids
 		Set<String> disabledModIds = findDisabledModIds();
 
@@ -217,6 +232,18 @@ public final class ModDiscoverer {
 		return new ArrayList<>(ret);
 	}
 
+	private void updateCache() {
+		for (ModScanTask task : scannedRootJars) {
+			cache.putRoot(task.paths.get(0), task.attributes, task.toCacheNode());
+		}
+
+		for (ModScanTask task : jijDedupMap.values()) {
+			if (task.cachedNode == null) cache.putNested(task.toCacheNode());
+		}
+
+		cache.save();
+	}
+
 	public List<Path> getNonFabricMods() {
 		return Collections.unmodifiableList(nonFabricMods);
 	}
@@ -254,24 +281,42 @@ public final class ModDiscoverer {
 		private final long hash;
 		private final boolean requiresRemap;
 		private final List<String> parentPaths;
+		private final DiscoveryCache.Node cachedNode; // non-null for nested jars restored from the cache
+		// scan results for the cache
+		private BasicFileAttributes attributes;
+		private byte[] metadataBytes;
+		private List<ModScanTask> nestedTasks = Collections.emptyList();
 
 		ModScanTask(List<Path> paths, boolean requiresRemap) {
-			this(paths, null, null, -1, requiresRemap, Collections.emptyList());
+			this(paths, null, null, -1, requiresRemap, Collections.emptyList(), null);
+		}
+
+		private ModScanTask(DiscoveryCache.Node cachedNode, boolean requiresRemap, List<String> parentPaths) {
+			this(null, cachedNode.localPath, null, cachedNode.hash, requiresRemap, parentPaths, cachedNode);
 		}
 
 		private ModScanTask(List<Path> paths, String localPath, RewindableInputStream is, long hash,
-				boolean requiresRemap, List<String> parentPaths) {
+				boolean requiresRemap, List<String> parentPaths, DiscoveryCache.Node cachedNode) {
 			this.paths = paths;
 			this.localPath = localPath != null ? localPath : paths.get(0).toString();
 			this.is = is;
 			this.hash = hash;
 			this.requiresRemap = requiresRemap;
 			this.parentPaths = parentPaths;
+			this.cachedNode = cachedNode;
 		}
 
 		@Override
 		protected ModCandidateImpl compute() {
-			if (is != null) { // nested jar
+			if (cachedNode != null) { // nested jar from the cache
+				try {
+					return computeCached(cachedNode);
+				} catch (ParseMetadataException e) { // already contains all context
+					throw ExceptionUtil.wrap(e);
+				} catch (Throwable t) {
+					throw new RuntimeException(String.format("Error analyzing cached nested jar %s from %s: %s", localPath, parentPaths, t), t);
+				}
+			} else if (is != null) { // nested jar
 				try {
 					return computeJarStream();
 				} catch (ParseMetadataException e) { // already contains all context
@@ -318,6 +363,14 @@ public final class ModDiscoverer {
 		}
 
 		private ModCandidateImpl computeJarFile(Path path) throws IOException, ParseMetadataException {
+			if (cache != null && paths.size() == 1) {
+				attributes = Files.readAttributes(path, BasicFileAttributes.class);
+				DiscoveryCache.Node node = cache.getRoot(path, attributes);
+				if (node != null) return computeCached(node);
+
+				scannedRootJars.add(this);
+			}
+
 			try (ZipFile zf = new ZipFile(path.toFile())) {
 				ZipEntry entry = zf.getEntry("fabric.mod.json");
 
@@ -326,12 +379,12 @@ public final class ModDiscoverer {
 					return null;
 				}
 
-				LoaderModMetadata metadata;
-
 				try (InputStream is = zf.getInputStream(entry)) {
-					metadata = parseMetadata(is, localPath);
+					metadataBytes = is.readAllBytes();
 				}
 
+				LoaderModMetadata metadata = parseMetadata(new ByteArrayInputStream(metadataBytes), localPath);
+
 				if (!metadata.loadsInEnvironment(envType)) {
 					return ModCandidateImpl.createPlain(paths, metadata, requiresRemap, Collections.emptyList());
 				}
@@ -363,6 +416,15 @@ public final class ModDiscoverer {
 
 						@Override
 						public RewindableInputStream getInputStream() throws IOException {
+							if (currentEntry.getMethod() == ZipEntry.STORED) {
+								// stored nested jars stay a slice of the mapped jar instead of being read into memory,
+								// the mapping keeps the jar open, so jars are only mapped if they have one
+								if (jar == null) jar = NestedJarFile.open(path);
+
+								NestedJarFile.Entry entry = jar.getEntry(currentEntry.getName());
+								if (entry != null) return new RewindableInputStream(jar.getData(entry));
+							}
+
 							try (InputStream is = zf.getInputStream(currentEntry)) {
 								return new RewindableInputStream(is);
 							}
@@ -370,6 +432,7 @@ public final class ModDiscoverer {
 
 						private final Iterator<NestedJarEntry> jarIt = nestedJarPaths.iterator();
 						private ZipEntry currentEntry;
+						private NestedJarFile jar;
 					});
 
 					if (!nestedJarPaths.isEmpty() && FabricLoaderImpl.INSTANCE.isDevelopmentEnvironment()) {
@@ -377,6 +440,7 @@ public final class ModDiscoverer {
 					}
 				}
 
+				nestedTasks = nestedModTasks;
 				List<ModCandidateImpl> nestedMods;
 
 				if (nestedModTasks.isEmpty()) {
@@ -397,7 +461,8 @@ public final class ModDiscoverer {
 			try (ZipInputStream zis = new ZipInputStream(is)) {
 				while ((entry = zis.getNextEntry()) != null) {
 					if (entry.getName().equals("fabric.mod.json")) {
-						metadata = parseMetadata(zis, localPath);
+						metadataBytes = zis.readAllBytes();
+						metadata = parseMetadata(new ByteArrayInputStream(metadataBytes), localPath);
 						break;
 					}
 				}
@@ -455,6 +520,7 @@ public final class ModDiscoverer {
 				}
 			}
 
+			nestedTasks = nestedModTasks;
 			List<ModCandidateImpl> nestedMods;
 
 			if (nestedModTasks.isEmpty()) {
@@ -470,11 +536,76 @@ public final class ModDiscoverer {
 			return ret;
 		}
 
-		private List<ModScanTask> computeNestedMods(ZipEntrySource entrySource) throws IOException {
+		/**
+		 * Restore the candidate from the cache instead of reading the jar, its nested jars are restored the same way.
+		 */
+		private ModCandidateImpl computeCached(DiscoveryCache.Node node) throws ParseMetadataException {
+			metadataBytes = node.metadata;
+
+			if (metadataBytes == null) {
+				if (paths != null) nonFabricMods.add(paths.get(0));
+				return null;
+			}
+
+			LoaderModMetadata metadata = parseMetadata(new ByteArrayInputStream(metadataBytes), localPath);
+			List<ModCandidateImpl> nestedMods;
+
+			if (!metadata.loadsInEnvironment(envType) || node.nestedHashes.length == 0) {
+				nestedMods = Collections.emptyList();
+			} else {
+				nestedTasks = computeCachedNestedMods(node.nestedHashes);
+				nestedMods = new ArrayList<>();
+				nestedModInitDatas.add(new NestedModInitData(nestedTasks, nestedMods));
+			}
+
+			if (paths != null) {
+				return ModCandidateImpl.createPlain(paths, metadata, requiresRemap, nestedMods);
+			} else {
+				// the jar data is read lazily from the parent if it's needed
+				return ModCandidateImpl.createNested(localPath, hash, metadata, requiresRemap, nestedMods);
+			}
+		}
+
+		private List<ModScanTask> computeCachedNestedMods(long[] hashes) {
+			List<String> parentPaths = getNestedParentPaths();
+			List<ModScanTask> tasks = new ArrayList<>(hashes.length);
+			ModScanTask localTask = null;
+
+			for (long hash : hashes) {
+				ModScanTask task = jijDedupMap.get(hash);
+
+				if (task == null) {
+					task = new ModScanTask(cache.getNested(hash), requiresRemap, parentPaths);
+					ModScanTask prev = jijDedupMap.putIfAbsent(hash, task);
+
+					if (prev != null) {
+						task = prev;
+					} else if (localTask == null) { // don't fork first task, leave it for this thread
+						localTask = task;
+					} else {
+						task.fork();
+					}
+				}
+
+				tasks.add(task);
+			}
+
+			if (localTask != null) localTask.invoke();
+
+			return tasks;
+		}
+
+		private List<String> getNestedParentPaths() {
 			List<String> parentPaths = new ArrayList<>(this.parentPaths.size() + 1);
 			parentPaths.addAll(this.parentPaths);
 			parentPaths.add(localPath);
 
+			return parentPaths;
+		}
+
+		private List<ModScanTask> computeNestedMods(ZipEntrySource entrySource) throws IOException {
+			List<String> parentPaths = getNestedParentPaths();
+
 			List<ModScanTask> tasks = new ArrayList<>(5);
 			ModScanTask localTask = null;
 			ZipEntry entry;
@@ -484,7 +615,7 @@ public final class ModDiscoverer {
 				ModScanTask task = jijDedupMap.get(hash);
 
 				if (task == null) {
-					task = new ModScanTask(null, entry.getName(), entrySource.getInputStream(), hash, requiresRemap, parentPaths);
+					task = new ModScanTask(null, entry.getName(), entrySource.getInputStream(), hash, requiresRemap, parentPaths, null);
 					ModScanTask prev = jijDedupMap.putIfAbsent(hash, task);
 
 					if (prev != null) {
@@ -506,8 +637,23 @@ public final class ModDiscoverer {
 			return tasks;
 		}
 
+		DiscoveryCache.Node toCacheNode() {
+			long[] nestedHashes = new long[nestedTasks.size()];
+
+			for (int i = 0; i < nestedHashes.length; i++) {
+				nestedHashes[i] = nestedTasks.get(i).hash;
+			}
+
+			return new DiscoveryCache.Node(paths == null ? localPath : null, hash, metadataBytes, nestedHashes);
+		}
+
 		private LoaderModMetadata parseMetadata(InputStream is, String localPath) throws ParseMetadataException {
-			return ModMetadataParser.parseMetadata(is, localPath, parentPaths, versionOverrides, depOverrides, FabricLoaderImpl.INSTANCE.isDevelopmentEnvironment());
+			try (StartupTrace.Span span = StartupTrace.begin(StartupTrace.METADATA, "parse metadata")) {
+				LoaderModMetadata metadata = ModMetadataParser.parseMetadata(is, localPath, parentPaths, versionOverrides, depOverrides, FabricLoaderImpl.INSTANCE.isDevelopmentEnvironment());
+				span.setMod(metadata.getId());
+
+				return metadata;
+			}
 		}
 	}
 
@@ -525,9 +671,13 @@ public final class ModDiscoverer {
 		private int pos;
 
 		RewindableInputStream(InputStream parent) throws IOException { // no parent.close()
-			buffer = readMod(parent);
+			this(readMod(parent));
+		}
+
+		RewindableInputStream(ByteBuffer buffer) {
+			assert buffer.position() == 0;
 
-			assert buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0;
+			this.buffer = buffer;
 		}
 
 		public ByteBuffer getBuffer() {
@@ -555,7 +705,7 @@ public final class ModDiscoverer {
 				return -1;
 			} else {
 				len = Math.min(len, rem);
-				System.arraycopy(buffer.array(), pos, b, off, len);
+				buffer.get(pos, b, off, len);
 				pos += len;
 
 				return len;
@@ -23,6 +23,7 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
@@ -34,8 +35,10 @@ import org.sat4j.specs.TimeoutException;
 import net.playerxess.mpfapi.fabricloaderresources.api.EnvType;
 import net.playerxess.mpfapi.fabricloaderresources.loader.api.metadata.ModDependency;
 import net.playerxess.mpfapi.fabricloaderresources.loader.api.metadata.ModDependency.Kind;
+import net.playerxess.mpfapi.fabricloaderresources.loader.impl.FabricLoaderImpl;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.discovery.ModSolver.InactiveReason;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.metadata.ModDependencyImpl;
+import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.SystemProperties;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.log.Log;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.log.LogCategory;
 
@@ -112,15 +115,22 @@ public class ModResolver {
 			preselectMod(mod, allModsSorted, modsById, selectedMods, uniqueSelectedMods);
 		}
 
-		// solve
+		// reuse the previous solution if it still applies, solve otherwise
 
+		SolutionCache solutionCache = loadSolutionCache(envType);
 		ModSolver.Result result;
 
-		try {
-			result = ModSolver.solve(allModsSorted, modsById,
-					selectedMods, uniqueSelectedMods);
-		} catch (ContradictionException | TimeoutException e) {
-			throw new ModResolutionException("Solving failed", e);
+		if (solutionCache != null && solutionCache.select(allModsSorted, modsById, selectedMods, uniqueSelectedMods)) {
+			result = ModSolver.Result.createSuccess();
+		} else {
+			try {
+				result = ModSolver.solve(allModsSorted, modsById,
+						selectedMods, uniqueSelectedMods);
+			} catch (ContradictionException | TimeoutException e) {
+				throw new ModResolutionException("Solving failed", e);
+			}
+
+			if (result.success && solutionCache != null) solutionCache.save(uniqueSelectedMods);
 		}
 
 		if (!result.success) {
@@ -196,6 +206,12 @@ public class ModResolver {
 		return uniqueSelectedMods;
 	}
 
+	private static SolutionCache loadSolutionCache(EnvType envType) {
+		if (System.getProperty(SystemProperties.DEBUG_DISABLE_RESOLUTION_CACHE) != null) return null;
+
+		return SolutionCache.load(FabricLoaderImpl.INSTANCE.getGameDir().resolve(FabricLoaderImpl.CACHE_DIR_NAME).resolve("resolutionCache-" + envType.name().toLowerCase(Locale.ENGLISH) + ".bin"));
+	}
+
 	static void preselectMod(ModCandidateImpl mod, List<ModCandidateImpl> allModsSorted, Map<String, List<ModCandidateImpl>> modsById,
 			Map<String, ModCandidateImpl> selectedMods, List<ModCandidateImpl> uniqueSelectedMods) throws ModResolutionException {
 		selectMod(mod, selectedMods, uniqueSelectedMods);
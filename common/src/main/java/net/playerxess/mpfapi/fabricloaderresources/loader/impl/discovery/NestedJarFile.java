@@ -0,0 +1,375 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.playerxess.mpfapi.fabricloaderresources.loader.impl.discovery;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Read-only view of a jar backed by a {@link ByteBuffer}, used to read the entries of jars and nested jars in place.
+ * Nested jars that have to exist as files, such as the ones on the class path, are still extracted.
+ *
+ * <p>The buffer is either a memory-mapped jar file or the data of a nested jar, so jars nested at any depth can be
+ * accessed the same way. Stored entries are served as slices of the buffer without copying, while deflated entries
+ * are only inflated when they are requested, one entry at a time. Knot uses it to read class files from jar code sources.
+ */
+public final class NestedJarFile {
+	private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+	private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+	private static final int END_SIGNATURE = 0x06054b50;
+	private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+	private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+	private static final int LOCAL_HEADER_SIZE = 30;
+	private static final int CENTRAL_HEADER_SIZE = 46;
+	private static final int END_SIZE = 22;
+	private static final int ZIP64_END_SIZE = 56;
+	private static final int ZIP64_LOCATOR_SIZE = 20;
+	private static final int ZIP64_EXTRA_ID = 0x0001;
+	private static final int MAX_COMMENT_SIZE = 0xffff;
+
+	private final ByteBuffer data;
+	private final Map<String, Entry> entries;
+
+	/**
+	 * Map a jar file.
+	 */
+	public static NestedJarFile open(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) throw new ZipException("jar too large to map: "+path);
+
+			// the mapping stays valid after the channel is closed
+			return new NestedJarFile(channel.map(MapMode.READ_ONLY, 0, size));
+		}
+	}
+
+	/**
+	 * Wrap the data of a jar, the buffer's content must not be modified afterwards.
+	 */
+	public static NestedJarFile open(ByteBuffer data) throws ZipException {
+		return new NestedJarFile(data.slice());
+	}
+
+	private NestedJarFile(ByteBuffer data) throws ZipException {
+		this.data = data.order(ByteOrder.LITTLE_ENDIAN);
+		this.entries = readCentralDirectory();
+	}
+
+	public Entry getEntry(String name) {
+		return entries.get(name);
+	}
+
+	/**
+	 * Get the uncompressed data of an entry, a slice of this jar's buffer for stored entries.
+	 */
+	public ByteBuffer getData(Entry entry) throws IOException {
+		ByteBuffer compressed = getRawData(entry);
+
+		if (entry.method == ZipEntry.STORED) {
+			if (entry.compressedSize != entry.size) throw new ZipException("invalid stored entry size: "+entry.name);
+
+			return compressed;
+		}
+
+		if (entry.size > Integer.MAX_VALUE - 8) throw new ZipException("entry too large: "+entry.name);
+
+		byte[] ret = new byte[(int) entry.size];
+		Inflater inflater = new Inflater(true);
+
+		try {
+			inflater.setInput(compressed);
+			int offset = 0;
+
+			while (!inflater.finished()) {
+				if (offset == ret.length) {
+					// the entry may have a trailing empty block that still needs to be consumed
+					if (inflater.inflate(new byte[1]) != 0) throw new ZipException("entry larger than declared: "+entry.name);
+					if (inflater.finished()) break;
+				} else {
+					offset += inflater.inflate(ret, offset, ret.length - offset);
+				}
+
+				if (!inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+					throw new ZipException("truncated entry: "+entry.name);
+				}
+			}
+
+			if (offset != ret.length) throw new ZipException("entry smaller than declared: "+entry.name);
+		} catch (DataFormatException e) {
+			throw new ZipException(String.format("invalid compressed data in entry %s: %s", entry.name, e.getMessage()));
+		} finally {
+			inflater.end();
+		}
+
+		return ByteBuffer.wrap(ret);
+	}
+
+	/**
+	 * Open a stream of the uncompressed data of an entry, deflated entries are inflated as the stream is read.
+	 */
+	public InputStream getInputStream(Entry entry) throws IOException {
+		ByteBuffer compressed = getRawData(entry);
+
+		if (entry.method == ZipEntry.STORED) {
+			return new ByteBufferInputStream(compressed);
+		} else {
+			return new InflatingInputStream(entry.name, compressed);
+		}
+	}
+
+	private ByteBuffer getRawData(Entry entry) throws ZipException {
+		if (entry.method != ZipEntry.STORED && entry.method != ZipEntry.DEFLATED) {
+			throw new ZipException(String.format("unsupported compression method %d for entry %s", entry.method, entry.name));
+		}
+
+		long headerOffset = entry.localHeaderOffset;
+		checkRange(headerOffset, LOCAL_HEADER_SIZE);
+		int pos = (int) headerOffset;
+
+		if (data.getInt(pos) != LOCAL_HEADER_SIGNATURE) throw new ZipException("invalid local header for entry "+entry.name);
+
+		long dataOffset = headerOffset + LOCAL_HEADER_SIZE + getU16(pos + 26) + getU16(pos + 28);
+		checkRange(dataOffset, entry.compressedSize);
+
+		return data.slice((int) dataOffset, (int) entry.compressedSize);
+	}
+
+	private Map<String, Entry> readCentralDirectory() throws ZipException {
+		int end = findEnd();
+		long count = getU16(end + 10);
+		long directorySize = getU32(end + 12);
+		long directoryOffset = getU32(end + 16);
+		long directoryEnd = end;
+
+		if (count == 0xffff || directorySize == 0xffffffffL || directoryOffset == 0xffffffffL) {
+			int locator = end - ZIP64_LOCATOR_SIZE;
+
+			if (locator >= 0 && data.getInt(locator) == ZIP64_LOCATOR_SIGNATURE) {
+				// the locator's offset doesn't account for data prepended to the jar, the record is right before it
+				directoryEnd = locator - ZIP64_END_SIZE;
+				checkRange(directoryEnd, ZIP64_END_SIZE);
+				int zip64End = (int) directoryEnd;
+
+				if (data.getInt(zip64End) != ZIP64_END_SIGNATURE) throw new ZipException("invalid zip64 end record");
+
+				count = data.getLong(zip64End + 32);
+				directorySize = data.getLong(zip64End + 40);
+				directoryOffset = data.getLong(zip64End + 48);
+			}
+		}
+
+		// offset of the zip data within the buffer, non-zero if data was prepended to the jar
+		long base = directoryEnd - directorySize - directoryOffset;
+		if (base < 0 || count < 0 || count > directorySize / CENTRAL_HEADER_SIZE) throw new ZipException("invalid end record");
+
+		Map<String, Entry> ret = new HashMap<>((int) (count / 0.75f) + 1);
+		int pos = (int) (base + directoryOffset);
+
+		for (long i = 0; i < count; i++) {
+			checkRange(pos, CENTRAL_HEADER_SIZE);
+			if (data.getInt(pos) != CENTRAL_HEADER_SIGNATURE) throw new ZipException("invalid central directory header");
+
+			int method = getU16(pos + 10);
+			long compressedSize = getU32(pos + 20);
+			long size = getU32(pos + 24);
+			int nameLength = getU16(pos + 28);
+			int extraLength = getU16(pos + 30);
+			int commentLength = getU16(pos + 32);
+			long localHeaderOffset = getU32(pos + 42);
+			checkRange(pos + CENTRAL_HEADER_SIZE, nameLength + extraLength + commentLength);
+
+			byte[] nameBytes = new byte[nameLength];
+			data.get(pos + CENTRAL_HEADER_SIZE, nameBytes);
+			String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+			if (size == 0xffffffffL || compressedSize == 0xffffffffL || localHeaderOffset == 0xffffffffL) {
+				// the actual values are stored in the zip64 extra field, only for the fields that overflowed
+				int extra = pos + CENTRAL_HEADER_SIZE + nameLength;
+				int extraEnd = extra + extraLength;
+
+				while (extra + 4 <= extraEnd) {
+					int id = getU16(extra);
+					int length = getU16(extra + 2);
+					int field = extra + 4;
+					extra = field + length;
+
+					if (id != ZIP64_EXTRA_ID) continue;
+
+					if (size == 0xffffffffL && field + 8 <= extra) {
+						size = data.getLong(field);
+						field += 8;
+					}
+
+					if (compressedSize == 0xffffffffL && field + 8 <= extra) {
+						compressedSize = data.getLong(field);
+						field += 8;
+					}
+
+					if (localHeaderOffset == 0xffffffffL && field + 8 <= extra) {
+						localHeaderOffset = data.getLong(field);
+					}
+
+					break;
+				}
+			}
+
+			if (size < 0 || compressedSize < 0 || localHeaderOffset < 0) throw new ZipException("invalid sizes for entry "+name);
+
+			ret.putIfAbsent(name, new Entry(name, method, compressedSize, size, base + localHeaderOffset));
+			pos += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+		}
+
+		return ret;
+	}
+
+	private int findEnd() throws ZipException {
+		int limit = data.limit();
+		int min = Math.max(0, limit - END_SIZE - MAX_COMMENT_SIZE);
+
+		for (int pos = limit - END_SIZE; pos >= min; pos--) {
+			if (data.getInt(pos) == END_SIGNATURE && pos + END_SIZE + getU16(pos + 20) <= limit) {
+				return pos;
+			}
+		}
+
+		throw new ZipException("missing end of central directory record");
+	}
+
+	private void checkRange(long offset, long length) throws ZipException {
+		if (offset < 0 || length < 0 || offset + length > data.limit()) throw new ZipException("invalid offset or length");
+	}
+
+	private int getU16(int pos) {
+		return data.getShort(pos) & 0xffff;
+	}
+
+	private long getU32(int pos) {
+		return data.getInt(pos) & 0xffffffffL;
+	}
+
+	public static final class Entry {
+		final String name;
+		final int method;
+		final long compressedSize;
+		final long size;
+		final long localHeaderOffset;
+
+		Entry(String name, int method, long compressedSize, long size, long localHeaderOffset) {
+			this.name = name;
+			this.method = method;
+			this.compressedSize = compressedSize;
+			this.size = size;
+			this.localHeaderOffset = localHeaderOffset;
+		}
+
+		public boolean isStored() {
+			return method == ZipEntry.STORED;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	private static final class ByteBufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) return 0;
+			if (!buffer.hasRemaining()) return -1;
+
+			len = Math.min(len, buffer.remaining());
+			buffer.get(b, off, len);
+
+			return len;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+
+	private static final class InflatingInputStream extends InputStream {
+		private final String name;
+		private final Inflater inflater = new Inflater(true);
+		private boolean closed;
+
+		InflatingInputStream(String name, ByteBuffer compressed) {
+			this.name = name;
+			inflater.setInput(compressed);
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+
+			return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (closed) throw new IOException("stream closed");
+			if (len == 0) return 0;
+
+			try {
+				int ret;
+
+				while ((ret = inflater.inflate(b, off, len)) == 0) {
+					if (inflater.finished()) return -1;
+					if (inflater.needsInput() || inflater.needsDictionary()) throw new ZipException("truncated entry: "+name);
+				}
+
+				return ret;
+			} catch (DataFormatException e) {
+				throw new ZipException(String.format("invalid compressed data in entry %s: %s", name, e.getMessage()));
+			}
+		}
+
+		@Override
+		public void close() {
+			if (!closed) {
+				closed = true;
+				inflater.end();
+			}
+		}
+	}
+}
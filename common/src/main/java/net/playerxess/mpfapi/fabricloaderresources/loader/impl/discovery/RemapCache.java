@@ -0,0 +1,323 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.playerxess.mpfapi.fabricloaderresources.loader.impl.discovery;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32C;
+
+import net.playerxess.mpfapi.fabricloaderresources.loader.api.metadata.ModDependency;
+import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.log.Log;
+import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.log.LogCategory;
+
+/**
+ * Persistent index of the jars produced by {@link RuntimeModRemapper}, so that only new or changed mods are remapped.
+ *
+ * <p>Each remapped mod gets a key from the hash of its input jar, the keys of the remapped mods it depends on, and an
+ * environment key covering the mappings, the remap class path and the target namespace. The output jar name includes
+ * the key, so jars of different environments or mod versions don't replace each other. A cached output is reused if
+ * its key and size match. The merged access widener of all remapped mods affects the remapper's analysis, so its hash
+ * is recorded as well and a mismatch invalidates all outputs. The recorded keys double as a fingerprint of the remapped
+ * mod set, which has to match before the outputs can be reused without reading the access wideners.
+ */
+final class RemapCache {
+	private static final int MAGIC = 0x46524d43; // FRMC
+	private static final int VERSION = 1;
+
+	private final Path file;
+	private final long envKey;
+	private final long cachedAccessWidenerHash;
+	private final Map<Long, Entry> cachedEntries;
+	private final Map<String, ModCandidateImpl> modsById = new HashMap<>();
+	private final Map<ModCandidateImpl, Long> keys = new IdentityHashMap<>();
+
+	private RemapCache(Path file, long envKey, Collection<ModCandidateImpl> mods, long cachedAccessWidenerHash, Map<Long, Entry> cachedEntries) {
+		this.file = file;
+		this.envKey = envKey;
+
+		for (ModCandidateImpl mod : mods) {
+			modsById.put(mod.getId(), mod);
+		}
+
+		this.cachedAccessWidenerHash = cachedAccessWidenerHash;
+		this.cachedEntries = cachedEntries;
+	}
+
+	/**
+	 * @param mods all mods being remapped
+	 */
+	static RemapCache load(Path file, long envKey, Collection<ModCandidateImpl> mods) {
+		long accessWidenerHash = 0;
+		Map<Long, Entry> entries = new HashMap<>();
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) throw new IOException("invalid header");
+
+			accessWidenerHash = in.readLong();
+			int count = in.readInt();
+
+			for (int i = 0; i < count; i++) {
+				long key = in.readLong();
+				entries.put(key, new Entry(in.readUTF(), in.readLong()));
+			}
+		} catch (NoSuchFileException e) {
+			// no cache yet
+		} catch (IOException e) {
+			Log.debug(LogCategory.MOD_REMAP, "Ignoring invalid remap cache %s: %s", file, e);
+			entries.clear();
+		}
+
+		return new RemapCache(file, envKey, mods, accessWidenerHash, entries);
+	}
+
+	/**
+	 * Fingerprint the inputs shared by all remapped mods.
+	 */
+	static long computeEnvKey(long mappingsHash, List<Path> remapClasspath, String targetNamespace) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		sb.append(VERSION).append('\0');
+		sb.append(mappingsHash).append('\0');
+		sb.append(targetNamespace).append('\0');
+
+		for (Path path : remapClasspath) {
+			sb.append(path).append('\0');
+
+			if (Files.exists(path)) {
+				BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+				sb.append(attrs.size()).append(' ').append(attrs.lastModifiedTime().toMillis());
+			}
+
+			sb.append('\0');
+		}
+
+		return hash(sb.toString());
+	}
+
+	/**
+	 * Get the output path for a mod, which depends on its key.
+	 */
+	Path getOutputPath(ModCandidateImpl mod, Path outputDir) throws IOException {
+		String name = mod.getDefaultFileName();
+		name = name.substring(0, name.length() - ".jar".length());
+
+		return outputDir.resolve(String.format("%s-%016x.jar", name, getKey(mod)));
+	}
+
+	/**
+	 * Check whether the cached output of a mod from a previous launch can be reused.
+	 */
+	boolean isValid(ModCandidateImpl mod, Path outputPath) throws IOException {
+		Entry entry = cachedEntries.get(getKey(mod));
+
+		return entry != null
+				&& entry.fileName.equals(outputPath.getFileName().toString())
+				&& Files.isRegularFile(outputPath)
+				&& Files.size(outputPath) == entry.size;
+	}
+
+	/**
+	 * Check whether the mods being remapped are exactly the ones recorded by the previous launch.
+	 *
+	 * <p>Only then the merged access widener is known to be unchanged, removing a mod or no longer remapping it changes
+	 * it while the keys of the remaining mods stay the same.
+	 */
+	boolean isModSetValid(Collection<ModCandidateImpl> mods) throws IOException {
+		if (mods.size() != cachedEntries.size()) return false;
+
+		for (ModCandidateImpl mod : mods) {
+			if (!cachedEntries.containsKey(getKey(mod))) return false;
+		}
+
+		return true;
+	}
+
+	boolean isAccessWidenerHashValid(long accessWidenerHash) {
+		return accessWidenerHash == cachedAccessWidenerHash;
+	}
+
+	/**
+	 * Record the outputs of the current launch, deleting outputs of previous launches that are no longer used.
+	 */
+	void save(Map<ModCandidateImpl, Path> outputs, long accessWidenerHash, Path outputDir) {
+		Map<Long, Entry> entries = new HashMap<>(outputs.size());
+		Set<String> used = new HashSet<>();
+
+		try {
+			for (Map.Entry<ModCandidateImpl, Path> e : outputs.entrySet()) {
+				String fileName = e.getValue().getFileName().toString();
+				entries.put(getKey(e.getKey()), new Entry(fileName, Files.size(e.getValue())));
+				used.add(fileName);
+			}
+
+			if (accessWidenerHash == cachedAccessWidenerHash && entries.equals(cachedEntries)) return;
+
+			for (Entry entry : cachedEntries.values()) {
+				if (!used.contains(entry.fileName)) {
+					Files.deleteIfExists(outputDir.resolve(entry.fileName));
+				}
+			}
+
+			Files.createDirectories(file.getParent());
+			Path tmp = Files.createTempFile(file.getParent(), "remapCache", ".tmp");
+
+			try {
+				try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+					out.writeInt(MAGIC);
+					out.writeInt(VERSION);
+					out.writeLong(accessWidenerHash);
+					out.writeInt(entries.size());
+
+					for (Map.Entry<Long, Entry> e : entries.entrySet()) {
+						out.writeLong(e.getKey());
+						out.writeUTF(e.getValue().fileName);
+						out.writeLong(e.getValue().size);
+					}
+				}
+
+				Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(tmp);
+			}
+		} catch (IOException e) {
+			Log.warn(LogCategory.MOD_REMAP, "Failed to write remap cache " + file, e);
+		}
+	}
+
+	/**
+	 * Compute the combined hash of the access wideners of all remapped mods, independent of the mod order.
+	 */
+	static long hashAccessWideners(Collection<ModCandidateImpl> mods, Map<ModCandidateImpl, byte[]> accessWideners) {
+		long ret = 0;
+
+		for (ModCandidateImpl mod : mods) {
+			byte[] accessWidener = accessWideners.get(mod);
+			if (accessWidener == null) continue;
+
+			CRC32C crc = new CRC32C();
+			crc.update(accessWidener);
+			ret += mix(hash(mod.getId()) ^ crc.getValue() << 32 ^ accessWidener.length);
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Fingerprint a mod's input jar and the remapped mods it depends on, whose classes may affect its output.
+	 */
+	private long getKey(ModCandidateImpl mod) throws IOException {
+		Long ret = keys.get(mod);
+		if (ret != null) return ret;
+
+		keys.put(mod, 0L); // cycle guard, mods in a dependency cycle see 0 as the key of the mod being computed
+		List<Long> depKeys = new ArrayList<>();
+
+		for (ModDependency dep : mod.getDependencies()) {
+			if (!dep.getKind().isPositive()) continue;
+
+			ModCandidateImpl other = modsById.get(dep.getModId());
+			if (other != null && other != mod) depKeys.add(getKey(other));
+		}
+
+		Collections.sort(depKeys);
+		ret = hash(envKey + "\0" + mod.getId() + "\0" + hashInput(mod) + "\0" + depKeys);
+		keys.put(mod, ret);
+
+		return ret;
+	}
+
+	private static long hashInput(ModCandidateImpl mod) throws IOException {
+		if (!mod.hasPath()) return mod.getHash(); // nested jar, already hashed from its zip entry
+
+		Path path = mod.getPaths().get(0);
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			CRC32C crc = new CRC32C();
+
+			for (long pos = 0; pos < size; pos += Integer.MAX_VALUE) {
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(Integer.MAX_VALUE, size - pos));
+				crc.update(buffer);
+			}
+
+			return crc.getValue() << 32 ^ size;
+		}
+	}
+
+	private static long hash(String s) {
+		long ret = 0xcbf29ce484222325L; // 64 bit FNV-1a
+
+		for (byte b : s.getBytes(StandardCharsets.UTF_8)) {
+			ret ^= b & 0xff;
+			ret *= 0x100000001b3L;
+		}
+
+		return ret;
+	}
+
+	private static long mix(long hash) {
+		hash ^= (hash >>> 33);
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= (hash >>> 33);
+
+		return hash;
+	}
+
+	private static final class Entry {
+		final String fileName;
+		final long size;
+
+		Entry(String fileName, long size) {
+			this.fileName = fileName;
+			this.size = size;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Entry)) return false;
+
+			Entry o = (Entry) obj;
+
+			return fileName.equals(o.fileName) && size == o.size;
+		}
+
+		@Override
+		public int hashCode() {
+			return fileName.hashCode() * 31 + Long.hashCode(size);
+		}
+	}
+}
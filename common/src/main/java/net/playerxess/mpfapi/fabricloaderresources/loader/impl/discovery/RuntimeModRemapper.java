@@ -31,6 +31,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.jar.Attributes;
@@ -50,6 +51,7 @@ import net.playerxess.mpfapi.fabricloaderresources.loader.impl.launch.FabricLaun
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.launch.FabricLauncherBase;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.FileSystemUtil;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.ManifestUtil;
+import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.StartupTrace;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.SystemProperties;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.log.Log;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.log.LogCategory;
@@ -78,14 +80,51 @@ public final class RuntimeModRemapper {
 		if (modsToRemap.isEmpty()) return;
 
 		Map<ModCandidateImpl, RemapInfo> infoMap = new HashMap<>();
+		// mods actually passed through the remapper, the others reuse their output from a previous launch
+		Set<ModCandidateImpl> modsToApply = new HashSet<>(modsToRemap);
+		RemapCache cache = null;
 
 		TinyRemapper remapper = null;
 
 		try {
 			FabricLauncher launcher = FabricLauncherBase.getLauncher();
+			List<Path> remapClasspath;
+
+			try {
+				remapClasspath = getRemapClasspath();
+			} catch (IOException e) {
+				throw new RuntimeException("Failed to populate remap classpath", e);
+			}
+
+			if (System.getProperty(SystemProperties.DEBUG_DISABLE_REMAP_CACHE) == null) {
+				long envKey = RemapCache.computeEnvKey(launcher.getMappingConfiguration().getMappingsHash(), remapClasspath, launcher.getTargetNamespace());
+				cache = RemapCache.load(outputDir.getParent().resolve("remapCache-" + launcher.getEnvironmentType().name().toLowerCase(Locale.ENGLISH) + ".bin"), envKey, modsToRemap);
+				Map<ModCandidateImpl, Path> cachedOutputs = new HashMap<>();
+
+				for (ModCandidateImpl mod : modsToRemap) {
+					Path outputPath = cache.getOutputPath(mod, outputDir);
+
+					if (cache.isValid(mod, outputPath)) {
+						modsToApply.remove(mod);
+						cachedOutputs.put(mod, outputPath);
+					}
+				}
+
+				// a changed mod set may change the merged access widener, which is checked once the access wideners are read
+				if (modsToApply.isEmpty() && cache.isModSetValid(modsToRemap)) {
+					Log.debug(LogCategory.MOD_REMAP, "Reusing %d remapped mods from the remap cache", modsToRemap.size());
+
+					for (ModCandidateImpl mod : modsToRemap) {
+						mod.setPaths(Collections.singletonList(cachedOutputs.get(mod)));
+					}
+
+					return;
+				}
+			}
 
 			AccessWidener mergedAccessWidener = new AccessWidener();
 			mergedAccessWidener.visitHeader(SOURCE_NAMESPACE);
+			Map<ModCandidateImpl, byte[]> accessWideners = new HashMap<>();
 
 			for (ModCandidateImpl mod : modsToRemap) {
 				RemapInfo info = new RemapInfo();
@@ -101,8 +140,7 @@ public final class RuntimeModRemapper {
 					info.inputIsTemp = true;
 				}
 
-				info.outputPath = outputDir.resolve(mod.getDefaultFileName());
-				Files.deleteIfExists(info.outputPath);
+				info.outputPath = cache != null ? cache.getOutputPath(mod, outputDir) : outputDir.resolve(mod.getDefaultFileName());
 
 				String accessWidener = mod.getMetadata().getAccessWidener();
 
@@ -116,10 +154,24 @@ public final class RuntimeModRemapper {
 						throw new RuntimeException("Error reading access widener for mod '" +mod.getId()+ "'!", t);
 					}
 
+					accessWideners.put(mod, info.accessWidener);
 					new AccessWidenerReader(mergedAccessWidener).read(info.accessWidener);
 				}
 			}
 
+			long accessWidenerHash = RemapCache.hashAccessWideners(modsToRemap, accessWideners);
+
+			if (cache != null && !cache.isAccessWidenerHashValid(accessWidenerHash)) {
+				// the merged access widener affects the analysis of all mods
+				modsToApply.addAll(modsToRemap);
+			}
+
+			Log.debug(LogCategory.MOD_REMAP, "Remapping %d of %d mods", modsToApply.size(), modsToRemap.size());
+
+			for (ModCandidateImpl mod : modsToApply) {
+				Files.deleteIfExists(infoMap.get(mod).outputPath);
+			}
+
 			remapper = TinyRemapper.newRemapper()
 					.withMappings(TinyUtils.createMappingProvider(launcher.getMappingConfiguration().getMappings(), SOURCE_NAMESPACE, launcher.getTargetNamespace()))
 					.renameInvalidLocals(false)
@@ -128,15 +180,17 @@ public final class RuntimeModRemapper {
 					AccessWidenerClassVisitor.createClassVisitor(FabricLoaderImpl.ASM_VERSION, next, mergedAccessWidener))
 					.build();
 
-			try {
-				remapper.readClassPathAsync(getRemapClasspath().toArray(new Path[0]));
-			} catch (IOException e) {
-				throw new RuntimeException("Failed to populate remap classpath", e);
-			}
+			remapper.readClassPathAsync(remapClasspath.toArray(new Path[0]));
 
 			for (ModCandidateImpl mod : modsToRemap) {
 				RemapInfo info = infoMap.get(mod);
 
+				if (!modsToApply.contains(mod)) {
+					// unchanged mods only contribute their classes to the hierarchy of the remapped ones
+					remapper.readClassPathAsync(info.inputPath);
+					continue;
+				}
+
 				InputTag tag = remapper.createInputTag();
 				info.tag = tag;
 
@@ -149,6 +203,8 @@ public final class RuntimeModRemapper {
 
 			//Done in a 2nd loop as we need to make sure all the inputs are present before remapping
 			for (ModCandidateImpl mod : modsToRemap) {
+				if (!modsToApply.contains(mod)) continue;
+
 				RemapInfo info = infoMap.get(mod);
 				OutputConsumerPath outputConsumer = new OutputConsumerPath.Builder(info.outputPath).build();
 
@@ -163,43 +219,57 @@ public final class RuntimeModRemapper {
 
 				info.outputConsumerPath = outputConsumer;
 
-				remapper.apply(outputConsumer, info.tag);
+				try (StartupTrace.Span span = StartupTrace.begin(StartupTrace.REMAP, "apply", mod.getId())) {
+					remapper.apply(outputConsumer, info.tag);
+				}
 			}
 
 			//Done in a 3rd loop as this can happen when the remapper is doing its thing.
 			for (ModCandidateImpl mod : modsToRemap) {
 				RemapInfo info = infoMap.get(mod);
 
-				if (info.accessWidener != null) {
-					info.accessWidener = remapAccessWidener(info.accessWidener, remapper.getRemapper(), launcher.getTargetNamespace());
+				if (info.accessWidener != null && modsToApply.contains(mod)) {
+					try (StartupTrace.Span span = StartupTrace.begin(StartupTrace.REMAP, "remap access widener", mod.getId())) {
+						info.accessWidener = remapAccessWidener(info.accessWidener, remapper.getRemapper(), launcher.getTargetNamespace());
+					}
 				}
 			}
 
 			remapper.finish();
+			Map<ModCandidateImpl, Path> outputs = new HashMap<>();
 
 			for (ModCandidateImpl mod : modsToRemap) {
 				RemapInfo info = infoMap.get(mod);
 
-				info.outputConsumerPath.close();
+				if (modsToApply.contains(mod)) {
+					info.outputConsumerPath.close();
 
-				if (info.accessWidenerPath != null) {
-					try (FileSystemUtil.FileSystemDelegate jarFs = FileSystemUtil.getJarFileSystem(info.outputPath, false)) {
-						FileSystem fs = jarFs.get();
+					if (info.accessWidenerPath != null) {
+						try (FileSystemUtil.FileSystemDelegate jarFs = FileSystemUtil.getJarFileSystem(info.outputPath, false)) {
+							FileSystem fs = jarFs.get();
 
-						Files.delete(fs.getPath(info.accessWidenerPath));
-						Files.write(fs.getPath(info.accessWidenerPath), info.accessWidener);
+							Files.delete(fs.getPath(info.accessWidenerPath));
+							Files.write(fs.getPath(info.accessWidenerPath), info.accessWidener);
+						}
 					}
 				}
 
 				mod.setPaths(Collections.singletonList(info.outputPath));
+				outputs.put(mod, info.outputPath);
+			}
+
+			if (cache != null) {
+				cache.save(outputs, accessWidenerHash, outputDir);
 			}
 		} catch (Throwable t) {
 			if (remapper != null) {
 				remapper.finish();
 			}
 
-			for (RemapInfo info : infoMap.values()) {
-				if (info.outputPath == null) {
+			for (Map.Entry<ModCandidateImpl, RemapInfo> entry : infoMap.entrySet()) {
+				RemapInfo info = entry.getValue();
+
+				if (info.outputPath == null || !modsToApply.contains(entry.getKey())) {
 					continue;
 				}
 
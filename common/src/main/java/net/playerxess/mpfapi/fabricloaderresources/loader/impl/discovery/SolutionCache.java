@@ -0,0 +1,413 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.playerxess.mpfapi.fabricloaderresources.loader.impl.discovery;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.playerxess.mpfapi.fabricloaderresources.loader.api.metadata.ModDependency;
+import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.log.Log;
+import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.log.LogCategory;
+
+/**
+ * Persistent cache of the last successful mod resolution, so that the SAT solver only needs to run when the mod set changes.
+ *
+ * <p>Each candidate is identified by a fingerprint of everything {@link ModSolver} derives its constraints from: id, version,
+ * provides, dependencies, origin and nesting. If the candidates are the same as in the cached launch, the solver would produce
+ * the same selection, which is reused after checking it against the hard constraints in linear time. If candidates were only
+ * added and they can't change the outcome for the other mods (new root mods without nested jars, alternatives or mods
+ * waiting for them), the cached selection is extended by them and checked the same way. Anything else falls back to the solver.
+ */
+final class SolutionCache {
+	private static final int MAGIC = 0x46534c43; // FSLC
+	private static final int VERSION = 1;
+
+	private final Path file;
+	private final long[] cachedPreselected;
+	private final long[] cachedCandidates;
+	private final long[] cachedSelection;
+	private final Map<ModCandidateImpl, Long> keys = new IdentityHashMap<>();
+	// state of the current launch, for save
+	private long[] preselected;
+	private long[] candidates;
+
+	private SolutionCache(Path file, long[] cachedPreselected, long[] cachedCandidates, long[] cachedSelection) {
+		this.file = file;
+		this.cachedPreselected = cachedPreselected;
+		this.cachedCandidates = cachedCandidates;
+		this.cachedSelection = cachedSelection;
+	}
+
+	static SolutionCache load(Path file) {
+		long[] preselected = null;
+		long[] candidates = null;
+		long[] selection = null;
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) throw new IOException("invalid header");
+
+			preselected = readKeys(in);
+			candidates = readKeys(in);
+			selection = readKeys(in);
+		} catch (NoSuchFileException e) {
+			// no cache yet
+		} catch (IOException e) {
+			Log.debug(LogCategory.RESOLUTION, "Ignoring invalid mod resolution cache %s: %s", file, e);
+			preselected = candidates = selection = null;
+		}
+
+		return new SolutionCache(file, preselected, candidates, selection);
+	}
+
+	/**
+	 * Select the cached solution if it still applies to the candidates.
+	 *
+	 * @param allModsSorted candidates in priority order, excluding preselected mods
+	 * @param selectedMods preselected mods by id, updated with the selection on success
+	 * @param uniqueSelectedMods preselected mods, updated with the selection on success
+	 * @return whether the cached solution was selected, otherwise the solver has to run
+	 */
+	boolean select(List<ModCandidateImpl> allModsSorted, Map<String, List<ModCandidateImpl>> modsById,
+			Map<String, ModCandidateImpl> selectedMods, List<ModCandidateImpl> uniqueSelectedMods) throws ModResolutionException {
+		preselected = getKeys(uniqueSelectedMods);
+		candidates = getKeys(allModsSorted);
+
+		if (cachedCandidates == null || !Arrays.equals(preselected, cachedPreselected)) return false;
+
+		Map<Long, ModCandidateImpl> modsByKey = new HashMap<>(allModsSorted.size());
+
+		for (ModCandidateImpl mod : allModsSorted) {
+			if (modsByKey.put(keys.get(mod), mod) != null) return false; // indistinguishable candidates
+		}
+
+		List<ModCandidateImpl> selection = new ArrayList<>(cachedSelection.length);
+
+		for (long key : cachedSelection) {
+			ModCandidateImpl mod = modsByKey.get(key);
+			if (mod == null) return false; // selected mod was removed or changed
+			selection.add(mod);
+		}
+
+		if (!Arrays.equals(candidates, cachedCandidates)) {
+			List<ModCandidateImpl> added = getAddedMods(allModsSorted);
+			if (added == null || !canSelectAdded(added, allModsSorted, modsById, selectedMods)) return false;
+
+			selection.addAll(added);
+		}
+
+		if (!isValid(selection, allModsSorted, modsById, selectedMods, uniqueSelectedMods)) return false;
+
+		for (ModCandidateImpl mod : selection) {
+			ModResolver.selectMod(mod, selectedMods, uniqueSelectedMods);
+		}
+
+		Log.debug(LogCategory.RESOLUTION, "Reusing cached mod resolution for %d candidates", allModsSorted.size());
+
+		return true;
+	}
+
+	/**
+	 * Get the candidates that weren't present in the cached launch.
+	 *
+	 * @return the added candidates, or {@code null} if any cached candidate is gone
+	 */
+	private List<ModCandidateImpl> getAddedMods(List<ModCandidateImpl> allModsSorted) {
+		Set<Long> cached = new HashSet<>(cachedCandidates.length);
+
+		for (long key : cachedCandidates) {
+			cached.add(key);
+		}
+
+		List<ModCandidateImpl> ret = new ArrayList<>();
+		int retained = 0;
+
+		for (ModCandidateImpl mod : allModsSorted) {
+			if (cached.contains(keys.get(mod))) {
+				retained++;
+			} else {
+				ret.add(mod);
+			}
+		}
+
+		return retained == cached.size() ? ret : null;
+	}
+
+	/**
+	 * Check whether the solver would select the added candidates without changing the selection of the other candidates.
+	 */
+	private static boolean canSelectAdded(List<ModCandidateImpl> added, List<ModCandidateImpl> allModsSorted, Map<String, List<ModCandidateImpl>> modsById,
+			Map<String, ModCandidateImpl> selectedMods) {
+		Set<String> addedIds = new HashSet<>();
+
+		for (ModCandidateImpl mod : added) {
+			// nested jars and alternative versions require weighing against the other candidates
+			if (!mod.isRoot() || mod.getLoadCondition() != ModLoadCondition.ALWAYS || !mod.getNestedMods().isEmpty()) return false;
+
+			addedIds.add(mod.getId());
+			addedIds.addAll(mod.getProvides());
+		}
+
+		for (String id : addedIds) {
+			List<ModCandidateImpl> variants = modsById.get(id);
+
+			if (selectedMods.containsKey(id)
+					|| variants != null && (variants.size() > 1 || !added.contains(variants.get(0)))) {
+				return false;
+			}
+		}
+
+		for (ModCandidateImpl mod : allModsSorted) {
+			for (ModDependency dep : mod.getDependencies()) {
+				String depId = dep.getModId();
+
+				if (addedIds.contains(depId)) {
+					// other candidates may become selectable or unselectable through the added mods
+					if (!added.contains(mod)) return false;
+				} else if (added.contains(mod) && dep.getKind().isSoft() && modsById.containsKey(depId)) {
+					// the added mod may pull in an optional candidate
+					return false;
+				}
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Check the selection against the hard constraints of {@link ModSolver}.
+	 */
+	private static boolean isValid(List<ModCandidateImpl> selection, List<ModCandidateImpl> allModsSorted, Map<String, List<ModCandidateImpl>> modsById,
+			Map<String, ModCandidateImpl> preselectedMods, List<ModCandidateImpl> uniquePreselectedMods) {
+		Map<String, ModCandidateImpl> selected = new HashMap<>(preselectedMods);
+		Set<ModCandidateImpl> selectedSet = Collections.newSetFromMap(new IdentityHashMap<>());
+
+		for (ModCandidateImpl mod : selection) {
+			if (!selectedSet.add(mod) || selected.putIfAbsent(mod.getId(), mod) != null) return false;
+
+			for (String provided : mod.getProvides()) {
+				if (selected.putIfAbsent(provided, mod) != null) return false;
+			}
+		}
+
+		for (ModCandidateImpl mod : allModsSorted) {
+			// root mods have to be loaded, one of the variants if there are multiple
+			if (mod.isRoot() && mod.getLoadCondition() == ModLoadCondition.ALWAYS) {
+				ModCandidateImpl variant = selected.get(mod.getId());
+				if (variant == null || !variant.getId().equals(mod.getId())) return false;
+			}
+		}
+
+		for (ModCandidateImpl mod : selection) {
+			if (!mod.isRoot() && Collections.disjoint(mod.getParentMods(), selectedSet)) {
+				boolean anyParentPreselected = false;
+
+				for (ModCandidateImpl parent : mod.getParentMods()) {
+					if (preselectedMods.get(parent.getId()) == parent) anyParentPreselected = true;
+				}
+
+				if (!anyParentPreselected) return false;
+			}
+
+			for (ModDependency dep : mod.getDependencies()) {
+				if (!isSatisfied(dep, selected)) return false;
+			}
+		}
+
+		for (ModCandidateImpl mod : uniquePreselectedMods) {
+			for (ModDependency dep : mod.getDependencies()) {
+				// the solver only enforces deps of preselected mods if there is a suitable candidate
+				if (!isSatisfied(dep, selected) && hasMatchingCandidate(dep, modsById)) return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static boolean isSatisfied(ModDependency dep, Map<String, ModCandidateImpl> selected) {
+		ModCandidateImpl mod = selected.get(dep.getModId());
+
+		switch (dep.getKind()) {
+		case DEPENDS:
+			return mod != null && dep.matches(mod.getVersion());
+		case BREAKS:
+			return mod == null || !dep.matches(mod.getVersion());
+		default:
+			return true;
+		}
+	}
+
+	private static boolean hasMatchingCandidate(ModDependency dep, Map<String, List<ModCandidateImpl>> modsById) {
+		List<ModCandidateImpl> mods = modsById.get(dep.getModId());
+		if (mods == null) return false;
+
+		for (ModCandidateImpl mod : mods) {
+			if (dep.matches(mod.getVersion())) return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Store the selection made by the solver, if it differs from the cached one.
+	 */
+	void save(List<ModCandidateImpl> uniqueSelectedMods) {
+		if (candidates == null) throw new IllegalStateException("select wasn't called");
+
+		Set<Long> preselectedSet = new HashSet<>();
+
+		for (long key : preselected) {
+			preselectedSet.add(key);
+		}
+
+		List<Long> selectionList = new ArrayList<>(uniqueSelectedMods.size());
+
+		for (ModCandidateImpl mod : uniqueSelectedMods) {
+			long key = getKey(mod);
+			if (!preselectedSet.contains(key)) selectionList.add(key);
+		}
+
+		long[] selection = new long[selectionList.size()];
+
+		for (int i = 0; i < selection.length; i++) {
+			selection[i] = selectionList.get(i);
+		}
+
+		if (Arrays.equals(preselected, cachedPreselected)
+				&& Arrays.equals(candidates, cachedCandidates)
+				&& Arrays.equals(selection, cachedSelection)) {
+			return;
+		}
+
+		try {
+			Files.createDirectories(file.getParent());
+			Path tmp = Files.createTempFile(file.getParent(), "resolutionCache", ".tmp");
+
+			try {
+				try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+					out.writeInt(MAGIC);
+					out.writeInt(VERSION);
+					writeKeys(out, preselected);
+					writeKeys(out, candidates);
+					writeKeys(out, selection);
+				}
+
+				Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(tmp);
+			}
+		} catch (IOException e) {
+			Log.warn(LogCategory.RESOLUTION, "Failed to write mod resolution cache " + file, e);
+		}
+	}
+
+	private long[] getKeys(List<ModCandidateImpl> mods) {
+		long[] ret = new long[mods.size()];
+
+		for (int i = 0; i < ret.length; i++) {
+			ret[i] = getKey(mods.get(i));
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Fingerprint the properties of a candidate that affect the solver's constraints.
+	 */
+	private long getKey(ModCandidateImpl mod) {
+		Long ret = keys.get(mod);
+		if (ret != null) return ret;
+
+		StringBuilder sb = new StringBuilder();
+		sb.append(mod.getId()).append('\0');
+		sb.append(mod.getVersion().getFriendlyString()).append('\0');
+		sb.append(mod.isBuiltin()).append(mod.isRoot()).append('\0');
+
+		List<String> provides = new ArrayList<>(mod.getProvides());
+		Collections.sort(provides);
+		sb.append(provides).append('\0');
+
+		for (ModDependency dep : mod.getDependencies()) {
+			sb.append(dep.getKind().getKey()).append(' ').append(dep.getModId()).append(' ').append(dep.getVersionRequirements()).append('\0');
+		}
+
+		if (mod.getOriginPaths() != null) {
+			sb.append(mod.getOriginPaths());
+		} else {
+			sb.append(mod.getLocalPath());
+			long[] parentKeys = new long[mod.getParentMods().size()];
+			int i = 0;
+
+			for (ModCandidateImpl parent : mod.getParentMods()) {
+				parentKeys[i++] = getKey(parent);
+			}
+
+			Arrays.sort(parentKeys);
+			sb.append(Arrays.toString(parentKeys));
+		}
+
+		ret = hash(sb.toString());
+		keys.put(mod, ret);
+
+		return ret;
+	}
+
+	private static long hash(String s) {
+		long ret = 0xcbf29ce484222325L; // 64 bit FNV-1a
+
+		for (byte b : s.getBytes(StandardCharsets.UTF_8)) {
+			ret ^= b & 0xff;
+			ret *= 0x100000001b3L;
+		}
+
+		return ret;
+	}
+
+	private static long[] readKeys(DataInputStream in) throws IOException {
+		long[] ret = new long[in.readInt()];
+
+		for (int i = 0; i < ret.length; i++) {
+			ret[i] = in.readLong();
+		}
+
+		return ret;
+	}
+
+	private static void writeKeys(DataOutputStream out, long[] keys) throws IOException {
+		out.writeInt(keys.length);
+
+		for (long key : keys) {
+			out.writeLong(key);
+		}
+	}
+}
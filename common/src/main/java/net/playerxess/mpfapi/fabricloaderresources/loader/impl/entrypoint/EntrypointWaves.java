@@ -0,0 +1,326 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.playerxess.mpfapi.fabricloaderresources.loader.impl.entrypoint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import net.playerxess.mpfapi.fabricloaderresources.loader.api.entrypoint.EntrypointContainer;
+import net.playerxess.mpfapi.fabricloaderresources.loader.api.metadata.CustomValue;
+import net.playerxess.mpfapi.fabricloaderresources.loader.api.metadata.CustomValue.CvType;
+import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.ExceptionUtil;
+import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.StartupTrace;
+import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.log.Log;
+import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.log.LogCategory;
+
+/**
+ * Runs the entrypoints of a key in waves, running the entrypoints of a wave concurrently.
+ *
+ * <p>Mods opt into parallel initialization per entrypoint key with a custom value listing the mods whose
+ * entrypoints of the same key have to complete first:
+ * <pre>
+ * "custom": {
+ *   "fabric-loader:parallel-entrypoints": {
+ *     "main": ["fabric-api-base", "othermod"]
+ *   }
+ * }
+ * </pre>
+ *
+ * <p>Each entrypoint is assigned the wave after the latest wave of the entrypoints it has to wait for, and every wave
+ * completes before the next one starts. Entrypoints of mods that didn't opt in keep their regular semantics: they run
+ * on the calling thread, in their regular order, only after all the entrypoints before them completed and alone in
+ * their wave. Opted in entrypoints run on worker threads once the wave containing the last of the entrypoints of the
+ * listed mods, the earlier entrypoints of their own mod and the last regular entrypoint before them completed, so they
+ * may also wait for unrelated entrypoints of that wave. Entrypoints are instantiated by the thread running them.
+ */
+public final class EntrypointWaves<T> {
+	static final String METADATA_KEY = "fabric-loader:parallel-entrypoints";
+	private static final int MAX_THREADS = 8;
+
+	private final String key;
+	private final List<EntrypointContainer<T>> entrypoints;
+	private final Consumer<? super T> invoker;
+	private final ClassLoader contextClassLoader;
+
+	public EntrypointWaves(String key, List<EntrypointContainer<T>> entrypoints, Consumer<? super T> invoker, ClassLoader contextClassLoader) {
+		this.key = key;
+		this.entrypoints = entrypoints;
+		this.invoker = invoker;
+		this.contextClassLoader = contextClassLoader;
+	}
+
+	public void run() {
+		int count = entrypoints.size();
+		boolean[] parallel = new boolean[count];
+		int[] waves = computeWaves(parallel);
+		int waveCount = 0;
+		int parallelCount = 0;
+
+		for (int i = 0; i < count; i++) {
+			waveCount = Math.max(waveCount, waves[i] + 1);
+			if (parallel[i]) parallelCount++;
+		}
+
+		Log.debug(LogCategory.ENTRYPOINT, "Running entrypoint '%s' in %d waves, %d of %d entrypoints in parallel", key, waveCount, parallelCount, count);
+
+		long[] times = new long[count];
+		RuntimeException exception = null;
+		ExecutorService executor = parallelCount > 0 ? createExecutor(Math.min(parallelCount, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors()))) : null;
+
+		try {
+			for (int wave = 0; wave < waveCount; wave++) {
+				long start = System.nanoTime();
+				List<Future<Throwable>> futures = new ArrayList<>();
+				List<Integer> futureIndices = new ArrayList<>();
+
+				// Serial entrypoints are alone in their wave unless an ordering cycle was broken, run them before
+				// starting any parallel ones so they never overlap.
+				for (int i = 0; i < count; i++) {
+					if (waves[i] == wave && !parallel[i]) {
+						exception = gather(exception, i, invoke(i, times));
+					}
+				}
+
+				for (int i = 0; i < count; i++) {
+					if (waves[i] != wave || !parallel[i]) continue;
+
+					final int index = i;
+					futures.add(executor.submit(() -> invoke(index, times)));
+					futureIndices.add(i);
+				}
+
+				for (int i = 0; i < futures.size(); i++) {
+					Throwable t;
+
+					try {
+						t = futures.get(i).get();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						t = e;
+					} catch (ExecutionException e) {
+						t = e.getCause();
+					}
+
+					exception = gather(exception, futureIndices.get(i), t);
+				}
+
+				Log.debug(LogCategory.ENTRYPOINT, "Entrypoint '%s' wave %d completed in %.1f ms", key, wave, (System.nanoTime() - start) * 1e-6);
+			}
+		} finally {
+			if (executor != null) executor.shutdown();
+		}
+
+		logTimes(times);
+
+		if (exception != null) {
+			throw exception;
+		}
+	}
+
+	/**
+	 * Compute the wave of each entrypoint, which is one more than the latest wave of the entrypoints it has to wait for.
+	 */
+	private int[] computeWaves(boolean[] parallel) {
+		int count = entrypoints.size();
+		Map<String, List<Integer>> modEntrypoints = new HashMap<>();
+		List<List<String>> after = new ArrayList<>(count);
+
+		for (int i = 0; i < count; i++) {
+			EntrypointContainer<T> container = entrypoints.get(i);
+			modEntrypoints.computeIfAbsent(container.getProvider().getMetadata().getId(), ignore -> new ArrayList<>()).add(i);
+			List<String> deps = getDeclaredDependencies(container);
+			parallel[i] = deps != null;
+			after.add(deps);
+		}
+
+		int[] waves = new int[count];
+		boolean[] visiting = new boolean[count];
+		Arrays.fill(waves, -1);
+
+		for (int i = 0; i < count; i++) {
+			computeWave(i, parallel, after, modEntrypoints, waves, visiting);
+		}
+
+		return waves;
+	}
+
+	private int computeWave(int index, boolean[] parallel, List<List<String>> after, Map<String, List<Integer>> modEntrypoints, int[] waves, boolean[] visiting) {
+		if (waves[index] >= 0) return waves[index];
+
+		visiting[index] = true;
+		int wave = 0;
+
+		if (!parallel[index]) {
+			// regular entrypoints wait for everything before them, except opted in entrypoints ordered after them
+			for (int prev = 0; prev < index; prev++) {
+				if (visiting[prev]) {
+					Log.warn(LogCategory.ENTRYPOINT, "Entrypoint '%s' of mod %s would have to run before the earlier one of mod %s, which would create a cycle, ignoring the ordering",
+							key, entrypoints.get(index).getProvider().getMetadata().getId(), entrypoints.get(prev).getProvider().getMetadata().getId());
+					continue;
+				}
+
+				wave = Math.max(wave, computeWave(prev, parallel, after, modEntrypoints, waves, visiting) + 1);
+			}
+		} else {
+			String modId = entrypoints.get(index).getProvider().getMetadata().getId();
+
+			// wait for the last regular entrypoint before this one, so regular entrypoints never run alongside others
+			for (int prev = index - 1; prev >= 0; prev--) {
+				if (parallel[prev]) continue;
+
+				if (visiting[prev]) {
+					Log.warn(LogCategory.ENTRYPOINT, "Entrypoint '%s' of mod %s would have to run before the earlier one of mod %s, which would create a cycle, ignoring the ordering",
+							key, modId, entrypoints.get(prev).getProvider().getMetadata().getId());
+				} else {
+					wave = Math.max(wave, computeWave(prev, parallel, after, modEntrypoints, waves, visiting) + 1);
+				}
+
+				break;
+			}
+
+			for (int prev : modEntrypoints.get(modId)) {
+				if (prev >= index) break;
+				if (visiting[prev]) continue;
+				wave = Math.max(wave, computeWave(prev, parallel, after, modEntrypoints, waves, visiting) + 1);
+			}
+
+			for (String dep : after.get(index)) {
+				List<Integer> depEntrypoints = modEntrypoints.get(dep);
+				if (depEntrypoints == null || dep.equals(modId)) continue;
+
+				for (int other : depEntrypoints) {
+					if (visiting[other]) {
+						Log.warn(LogCategory.ENTRYPOINT, "Mod %s orders its entrypoint '%s' after %s, which would create a cycle, ignoring the ordering",
+								modId, key, dep);
+						break;
+					}
+
+					wave = Math.max(wave, computeWave(other, parallel, after, modEntrypoints, waves, visiting) + 1);
+				}
+			}
+		}
+
+		visiting[index] = false;
+		waves[index] = wave;
+
+		return wave;
+	}
+
+	/**
+	 * @return the ids of the mods to wait for, or null if the entrypoint isn't opted into parallel initialization
+	 */
+	private List<String> getDeclaredDependencies(EntrypointContainer<T> container) {
+		CustomValue value = container.getProvider().getMetadata().getCustomValue(METADATA_KEY);
+		if (value == null || value.getType() != CvType.OBJECT) return null;
+
+		CustomValue keyValue = value.getAsObject().get(key);
+		if (keyValue == null) return null;
+
+		if (keyValue.getType() == CvType.STRING) {
+			return Collections.singletonList(keyValue.getAsString());
+		} else if (keyValue.getType() == CvType.ARRAY) {
+			List<String> ret = new ArrayList<>(keyValue.getAsArray().size());
+
+			for (CustomValue dep : keyValue.getAsArray()) {
+				if (dep.getType() == CvType.STRING) ret.add(dep.getAsString());
+			}
+
+			return ret;
+		} else if (keyValue.getType() == CvType.BOOLEAN) {
+			return keyValue.getAsBoolean() ? Collections.emptyList() : null;
+		} else {
+			Log.warn(LogCategory.ENTRYPOINT, "Invalid %s value for entrypoint '%s' in mod %s", METADATA_KEY, key, container.getProvider().getMetadata().getId());
+			return null;
+		}
+	}
+
+	private Throwable invoke(int index, long[] times) {
+		EntrypointContainer<T> container = entrypoints.get(index);
+		long start = System.nanoTime();
+
+		try (StartupTrace.Span span = StartupTrace.begin(StartupTrace.ENTRYPOINT, key, container.getProvider().getMetadata().getId())) {
+			invoker.accept(container.getEntrypoint());
+			return null;
+		} catch (Throwable t) {
+			return t;
+		} finally {
+			times[index] = System.nanoTime() - start;
+		}
+	}
+
+	private RuntimeException gather(RuntimeException exception, int index, Throwable t) {
+		if (t == null) return exception;
+
+		EntrypointContainer<T> container = entrypoints.get(index);
+
+		return ExceptionUtil.gatherExceptions(t,
+				exception,
+				exc -> new RuntimeException(String.format("Could not execute entrypoint stage '%s' due to errors, provided by '%s' at '%s'!",
+						key, container.getProvider().getMetadata().getId(), container.getDefinition()),
+						exc));
+	}
+
+	private void logTimes(long[] times) {
+		Integer[] order = new Integer[times.length];
+
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+
+		Arrays.sort(order, (a, b) -> Long.compare(times[b], times[a]));
+
+		for (int i : order) {
+			EntrypointContainer<T> container = entrypoints.get(i);
+			Log.debug(LogCategory.ENTRYPOINT, "Entrypoint '%s' of %s at '%s' took %.1f ms",
+					key, container.getProvider().getMetadata().getId(), container.getDefinition(), times[i] * 1e-6);
+		}
+	}
+
+	private ExecutorService createExecutor(int threads) {
+		AtomicInteger counter = new AtomicInteger();
+
+		return Executors.newFixedThreadPool(threads, task -> {
+			Thread thread = new Thread(task, "Entrypoint Worker #" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			thread.setContextClassLoader(contextClassLoader);
+			return thread;
+		});
+	}
+
+	public static boolean hasParallelEntrypoints(String key, Collection<? extends EntrypointContainer<?>> entrypoints) {
+		for (EntrypointContainer<?> container : entrypoints) {
+			CustomValue value = container.getProvider().getMetadata().getCustomValue(METADATA_KEY);
+
+			if (value != null && value.getType() == CvType.OBJECT && value.getAsObject().containsKey(key)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+}
@@ -46,7 +46,7 @@ import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.UrlConversio
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.UrlUtil;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.log.Log;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.log.LogCategory;
-import net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.tree.MappingTree;
+import net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.tree.MappingTreeView;
 import net.playerxess.mpfapi.fabricloaderresources.mapping.tinyremapper.InputTag;
 import net.playerxess.mpfapi.fabricloaderresources.mapping.tinyremapper.NonClassCopyMode;
 import net.playerxess.mpfapi.fabricloaderresources.mapping.tinyremapper.OutputConsumerPath;
@@ -270,7 +270,7 @@ public final class GameProviderHelper {
 		return ret.resolve(versionDirName.toString().replaceAll("[^\\w\\-\\. ]+", "_"));
 	}
 
-	private static void deobfuscate0(List<Path> inputFiles, List<Path> outputFiles, List<Path> tmpFiles, MappingTree mappings, String sourceNamespace, String targetNamespace, FabricLauncher launcher) throws IOException {
+	private static void deobfuscate0(List<Path> inputFiles, List<Path> outputFiles, List<Path> tmpFiles, MappingTreeView mappings, String sourceNamespace, String targetNamespace, FabricLauncher launcher) throws IOException {
 		TinyRemapper remapper = TinyRemapper.newRemapper()
 				.withMappings(TinyUtils.createMappingProvider(mappings, sourceNamespace, targetNamespace))
 				.rebuildSourceFilenames(true)
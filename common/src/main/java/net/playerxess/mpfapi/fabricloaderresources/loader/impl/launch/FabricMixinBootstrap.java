@@ -43,7 +43,7 @@ import net.playerxess.mpfapi.fabricloaderresources.loader.impl.launch.knot.Mixin
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.log.Log;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.log.LogCategory;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.mappings.MixinIntermediaryDevRemapper;
-import net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.tree.MappingTree;
+import net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.tree.MappingTreeView;
 
 public final class FabricMixinBootstrap {
 	private FabricMixinBootstrap() { }
@@ -62,7 +62,7 @@ public final class FabricMixinBootstrap {
 
 		if (FabricLauncherBase.getLauncher().isDevelopment()) {
 			MappingConfiguration mappingConfiguration = FabricLauncherBase.getLauncher().getMappingConfiguration();
-			MappingTree mappings = mappingConfiguration.getMappings();
+			MappingTreeView mappings = mappingConfiguration.getMappings();
 
 			if (mappings != null) {
 				List<String> namespaces = new ArrayList<>(mappings.getDstNamespaces());
@@ -18,13 +18,21 @@ package net.playerxess.mpfapi.fabricloaderresources.loader.impl.launch;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.net.JarURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.List;
+import java.util.Locale;
 import java.util.jar.Attributes.Name;
 import java.util.jar.Manifest;
+import java.util.zip.CRC32C;
 import java.util.zip.ZipError;
 
 import org.jetbrains.annotations.Nullable;
@@ -38,11 +46,15 @@ import net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.MappingRead
 import net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.format.MappingFormat;
 import net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.format.tiny.Tiny1FileReader;
 import net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.format.tiny.Tiny2FileReader;
-import net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.tree.MappingTree;
+import net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.tree.MappedMappingTree;
+import net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.tree.MappingTreeView;
 import net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.tree.MemoryMappingTree;
 
 public final class MappingConfiguration {
 	private static final boolean FIX_PACKAGE_ACCESS = System.getProperty(SystemProperties.FIX_PACKAGE_ACCESS) != null;
+	private static final boolean DISABLE_MAPPINGS_CACHE = System.getProperty(SystemProperties.DEBUG_DISABLE_MAPPINGS_CACHE) != null;
+	private static final String CACHE_FILE_PREFIX = "mappings-";
+	private static final String CACHE_FILE_SUFFIX = ".bin";
 
 	private boolean initializedMetadata;
 	private boolean initializedMappings;
@@ -54,7 +66,10 @@ public final class MappingConfiguration {
 	@Nullable
 	private List<String> namespaces;
 	@Nullable
-	private MemoryMappingTree mappings;
+	private MappingTreeView mappings;
+	private long mappingsHash = -1;
+	@Nullable
+	private Path cacheDir;
 
 	@Nullable
 	public String getGameId() {
@@ -84,12 +99,53 @@ public final class MappingConfiguration {
 				&& (this.gameVersion == null || gameVersion == null || gameVersion.equals(this.gameVersion));
 	}
 
-	public MappingTree getMappings() {
+	public MappingTreeView getMappings() {
 		initializeMappings();
 
 		return mappings;
 	}
 
+	/**
+	 * Set the directory to keep the binary form of the parsed mappings in, the mappings are parsed on every launch without it.
+	 */
+	public void setCacheDir(@Nullable Path cacheDir) {
+		this.cacheDir = cacheDir;
+	}
+
+	/**
+	 * Get a hash of the raw mappings file for caching data derived from the mappings, without parsing them.
+	 *
+	 * @return a non-negative hash of the mappings file content and size, or 0 if there are no mappings
+	 */
+	public long getMappingsHash() {
+		if (mappingsHash >= 0) return mappingsHash;
+
+		final URLConnection connection = openMappings();
+		long ret = 0;
+
+		if (connection != null) {
+			try (InputStream is = connection.getInputStream()) {
+				CRC32C crc = new CRC32C();
+				byte[] buffer = new byte[8192];
+				long size = 0;
+				int len;
+
+				while ((len = is.read(buffer)) >= 0) {
+					crc.update(buffer, 0, len);
+					size += len;
+				}
+
+				ret = crc.getValue() << 32 | size & 0xffffffffL;
+			} catch (IOException e) {
+				throw new RuntimeException("Error reading mappings", e);
+			}
+		}
+
+		mappingsHash = ret & Long.MAX_VALUE; // keep -1 free as the uninitialized marker
+
+		return mappingsHash;
+	}
+
 	public String getTargetNamespace() {
 		return FabricLauncherBase.getLauncher().isDevelopment() ? "named" : "intermediary";
 	}
@@ -144,27 +200,46 @@ public final class MappingConfiguration {
 		final URLConnection connection = openMappings();
 
 		if (connection != null) {
-			try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
-				long time = System.currentTimeMillis();
-				mappings = new MemoryMappingTree();
-				final FilteringMappingVisitor mappingFilter = new FilteringMappingVisitor(mappings);
-
-				final MappingFormat format = readMappingFormat(reader);
-
-				switch (format) {
-				case TINY_FILE:
-					Tiny1FileReader.read(reader, mappingFilter);
-					break;
-				case TINY_2_FILE:
-					Tiny2FileReader.read(reader, mappingFilter);
-					break;
-				default:
-					throw new UnsupportedOperationException("Unsupported mapping format: " + format);
+			long time = System.currentTimeMillis();
+			Path cacheFile = getCacheFile();
+
+			if (cacheFile != null && Files.isRegularFile(cacheFile)) {
+				try {
+					mappings = MappedMappingTree.open(cacheFile); // indexed by source and destination names, like the tree below
+					Log.debug(LogCategory.MAPPINGS, "Loading cached mappings took %d ms", System.currentTimeMillis() - time);
+				} catch (IOException e) {
+					Log.debug(LogCategory.MAPPINGS, "Invalid mappings cache %s: %s", cacheFile, e);
 				}
+			}
 
-				Log.debug(LogCategory.MAPPINGS, "Loading mappings took %d ms", System.currentTimeMillis() - time);
-			} catch (IOException e) {
-				throw new RuntimeException("Error reading mappings", e);
+			if (mappings == null) {
+				try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream()))) {
+					MemoryMappingTree tree = new MemoryMappingTree();
+					final FilteringMappingVisitor mappingFilter = new FilteringMappingVisitor(tree);
+
+					final MappingFormat format = readMappingFormat(reader);
+
+					switch (format) {
+					case TINY_FILE:
+						Tiny1FileReader.read(reader, mappingFilter);
+						break;
+					case TINY_2_FILE:
+						Tiny2FileReader.read(reader, mappingFilter);
+						break;
+					default:
+						throw new UnsupportedOperationException("Unsupported mapping format: " + format);
+					}
+
+					// the tree is only queried from here on, MappingResolver and the mixin remapper look up by intermediary names
+					tree.setIndexByDstNames(true);
+					tree.setIndexMembers(true);
+					mappings = tree;
+					Log.debug(LogCategory.MAPPINGS, "Loading mappings took %d ms", System.currentTimeMillis() - time);
+				} catch (IOException e) {
+					throw new RuntimeException("Error reading mappings", e);
+				}
+
+				if (cacheFile != null) writeCache(cacheFile, mappings);
 			}
 		}
 
@@ -176,6 +251,51 @@ public final class MappingConfiguration {
 		initializedMappings = true;
 	}
 
+	/**
+	 * Get the binary mappings cache file, keyed by the raw mappings' hash so the file never has to be checked for staleness.
+	 */
+	@Nullable
+	private Path getCacheFile() {
+		if (DISABLE_MAPPINGS_CACHE || cacheDir == null) return null;
+
+		long hash = getMappingsHash();
+		if (hash == 0) return null;
+
+		return cacheDir.resolve(String.format(Locale.ENGLISH, "%s%016x%s", CACHE_FILE_PREFIX, hash, CACHE_FILE_SUFFIX));
+	}
+
+	private static void writeCache(Path file, MappingTreeView tree) {
+		try {
+			Files.createDirectories(file.getParent());
+			Path tmpFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+
+			try {
+				try (OutputStream os = Files.newOutputStream(tmpFile)) {
+					MappedMappingTree.write(tree, os);
+				}
+
+				Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(tmpFile);
+			}
+
+			// remove caches for previous mappings, other running instances keep their existing mapping of the file where supported
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(file.getParent(), CACHE_FILE_PREFIX + "*" + CACHE_FILE_SUFFIX)) {
+				for (Path path : stream) {
+					if (path.equals(file)) continue;
+
+					try {
+						Files.deleteIfExists(path);
+					} catch (IOException e) {
+						Log.debug(LogCategory.MAPPINGS, "Can't remove old mappings cache %s: %s", path, e);
+					}
+				}
+			}
+		} catch (IOException e) {
+			Log.warn(LogCategory.MAPPINGS, "Error writing mappings cache " + file, e);
+		}
+	}
+
 	@Nullable
 	private URLConnection openMappings() {
 		URL url = MappingConfiguration.class.getClassLoader().getResource("mappings/mappings.tiny");
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.playerxess.mpfapi.fabricloaderresources.loader.impl.launch.knot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+import java.util.zip.CRC32C;
+
+import net.playerxess.mpfapi.fabricloaderresources.api.EnvType;
+import net.playerxess.mpfapi.fabricloaderresources.loader.impl.FabricLoaderImpl;
+import net.playerxess.mpfapi.fabricloaderresources.loader.impl.ModContainerImpl;
+import net.playerxess.mpfapi.fabricloaderresources.loader.impl.launch.FabricLauncherBase;
+import net.playerxess.mpfapi.fabricloaderresources.loader.impl.transformer.FabricTransformer;
+import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.log.Log;
+import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.log.LogCategory;
+
+/**
+ * Persistent cache of the {@link FabricTransformer} results, keyed by class name and a hash of the untransformed class file.
+ *
+ * <p>The transformation also depends on the environment and the access wideners of the loaded mods, which are covered
+ * by a configuration hash over the loader version, the environment and the id, version and code source files
+ * (size and modification time) of every mod. The whole cache is discarded if the configuration hash changes.
+ * Classes left unchanged by the transformer are only recorded as such, so they don't take up space.
+ *
+ * <p>Mixin transformation isn't cached: applying mixins has side effects beyond the returned class bytes
+ * (mixin plugin callbacks, generated synthetic classes, injection checks) that must not be skipped.
+ *
+ * <p>New entries are written when the JVM shuts down.
+ */
+final class ClassTransformCache {
+	private static final int MAGIC = 0x46544348; // FTCH
+	private static final int VERSION = 1;
+
+	private final Path file;
+	private final long configHash;
+	private final Map<String, Entry> entries;
+	private volatile boolean dirty;
+
+	private ClassTransformCache(Path file, long configHash, Map<String, Entry> entries) {
+		this.file = file;
+		this.configHash = configHash;
+		this.entries = entries;
+	}
+
+	private static final class Entry {
+		final long inputHash;
+		/**
+		 * Transformed class bytes, or {@code null} if the transformer returned the input unchanged.
+		 */
+		final byte[] output;
+
+		Entry(long inputHash, byte[] output) {
+			this.inputHash = inputHash;
+			this.output = output;
+		}
+	}
+
+	static ClassTransformCache load(Path file, boolean isDevelopment, EnvType envType) {
+		long configHash = computeConfigHash(isDevelopment, envType);
+		Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) throw new IOException("invalid header");
+
+			if (in.readLong() == configHash) {
+				int count = in.readInt();
+
+				for (int i = 0; i < count; i++) {
+					String name = in.readUTF();
+					long inputHash = in.readLong();
+					int length = in.readInt();
+					byte[] output = null;
+
+					if (length >= 0) {
+						output = new byte[length];
+						in.readFully(output);
+					}
+
+					entries.put(name, new Entry(inputHash, output));
+				}
+			} else {
+				Log.debug(LogCategory.KNOT, "Discarding class transform cache %s, the mod set changed", file);
+			}
+		} catch (NoSuchFileException e) {
+			// no cache yet
+		} catch (IOException e) {
+			Log.debug(LogCategory.KNOT, "Ignoring invalid class transform cache %s: %s", file, e);
+			entries.clear();
+		}
+
+		ClassTransformCache ret = new ClassTransformCache(file, configHash, entries);
+		Runtime.getRuntime().addShutdownHook(new Thread(ret::save, "Class transform cache writer"));
+
+		return ret;
+	}
+
+	/**
+	 * Get the transformed class bytes from the cache, or apply the transformer and cache its result.
+	 */
+	byte[] transform(String name, byte[] input, UnaryOperator<byte[]> transformer) {
+		long inputHash = hash(input);
+		Entry entry = entries.get(name);
+
+		if (entry != null && entry.inputHash == inputHash) {
+			return entry.output != null ? entry.output : input;
+		}
+
+		byte[] output = transformer.apply(input);
+		entries.put(name, new Entry(inputHash, output == input ? null : output));
+		dirty = true;
+
+		return output;
+	}
+
+	private void save() {
+		if (!dirty) return;
+
+		try {
+			Files.createDirectories(file.getParent());
+			Path tmp = Files.createTempFile(file.getParent(), "classCache", ".tmp");
+
+			try {
+				try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+					out.writeInt(MAGIC);
+					out.writeInt(VERSION);
+					out.writeLong(configHash);
+
+					Map<String, Entry> entries = Map.copyOf(this.entries);
+					out.writeInt(entries.size());
+
+					for (Map.Entry<String, Entry> e : entries.entrySet()) {
+						out.writeUTF(e.getKey());
+						out.writeLong(e.getValue().inputHash);
+						byte[] output = e.getValue().output;
+
+						if (output == null) {
+							out.writeInt(-1);
+						} else {
+							out.writeInt(output.length);
+							out.write(output);
+						}
+					}
+				}
+
+				Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(tmp);
+			}
+		} catch (IOException e) {
+			Log.warn(LogCategory.KNOT, "Failed to write class transform cache " + file, e);
+		}
+	}
+
+	private static long hash(byte[] data) {
+		CRC32C crc = new CRC32C();
+		crc.update(data);
+
+		return crc.getValue() << 32 | data.length;
+	}
+
+	/**
+	 * Hash the state the class bytes defined by Knot depend on, apart from the mixin configuration: loader version,
+	 * environment and the mod files. Also used to invalidate the {@link KnotCds} archive.
+	 */
+	static long computeConfigHash(boolean isDevelopment, EnvType envType) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(FabricLoaderImpl.VERSION).append('\0');
+		sb.append(isDevelopment).append(envType).append('\0');
+		sb.append(FabricLauncherBase.getLauncher().getMappingConfiguration().requiresPackageAccessHack()).append('\0');
+
+		for (ModContainerImpl mod : FabricLoaderImpl.INSTANCE.getModsInternal()) {
+			sb.append(mod.getMetadata().getId()).append(' ').append(mod.getMetadata().getVersion().getFriendlyString());
+
+			for (Path path : mod.getCodeSourcePaths()) {
+				sb.append(' ').append(path);
+
+				try {
+					BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+					sb.append(' ').append(attributes.size()).append(' ').append(attributes.lastModifiedTime().toMillis());
+				} catch (IOException e) {
+					sb.append(" ?");
+				}
+			}
+
+			sb.append('\0');
+		}
+
+		long ret = 0xcbf29ce484222325L; // 64 bit FNV-1a
+
+		for (byte b : sb.toString().getBytes(StandardCharsets.UTF_8)) {
+			ret ^= b & 0xff;
+			ret *= 0x100000001b3L;
+		}
+
+		return ret;
+	}
+}
@@ -44,6 +44,7 @@ import net.playerxess.mpfapi.fabricloaderresources.loader.impl.game.GameProvider
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.launch.FabricLauncherBase;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.launch.FabricMixinBootstrap;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.LoaderUtil;
+import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.StartupTrace;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.SystemProperties;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.UrlUtil;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.log.Log;
@@ -129,6 +130,7 @@ public final class Knot extends FabricLauncherBase {
 
 		provider = createGameProvider(args);
 		Log.finishBuiltinConfig();
+		getMappingConfiguration().setCacheDir(provider.getLaunchDirectory().resolve(FabricLoaderImpl.CACHE_DIR_NAME));
 		Log.info(LogCategory.GAME_PROVIDER, "Loading %s %s with Fabric Loader %s", provider.getGameName(), provider.getRawGameVersion(), FabricLoaderImpl.VERSION);
 
 		// Setup classloader
@@ -147,8 +149,12 @@ public final class Knot extends FabricLauncherBase {
 		loader.freeze();
 
 		FabricLoaderImpl.INSTANCE.loadAccessWideners();
+		KnotCds.setup(isDevelopment(), envType);
+
+		try (StartupTrace.Span span = StartupTrace.begin(StartupTrace.MIXIN, "bootstrap")) {
+			FabricMixinBootstrap.init(getEnvironmentType(), loader);
+		}
 
-		FabricMixinBootstrap.init(getEnvironmentType(), loader);
 		FabricLauncherBase.finishMixinBootstrapping();
 
 		classLoader.initializeTransformers();
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.playerxess.mpfapi.fabricloaderresources.loader.impl.launch.knot;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import net.playerxess.mpfapi.fabricloaderresources.api.EnvType;
+import net.playerxess.mpfapi.fabricloaderresources.loader.impl.FabricLoaderImpl;
+import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.SystemProperties;
+import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.log.Log;
+import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.log.LogCategory;
+
+/**
+ * Maintains a dynamic class data sharing (AppCDS) archive for the current mod set.
+ *
+ * <p>CDS archive options can only be passed when the JVM starts, so Knot can't enable the archive for itself. Instead it
+ * writes the options for the current mod set to the JVM argument file {@code .fabric/cds/<env>-jvm-args.txt}, which launch
+ * scripts pass to the JVM as {@code @.fabric/cds/server-jvm-args.txt} for example. The first launch with the file creates the
+ * archive on exit, and the following launches map it. On Java 19+ {@code -XX:+AutoCreateSharedArchive} does both and recreates
+ * the archive when the JVM changes. This is enabled with {@code -Dfabric.cds=true}, the argument file only exists after the
+ * first launch with it.
+ *
+ * <p>The archive contains the loader and its libraries from the system class path, and the classes Knot defines without
+ * changing them, since the JVM only uses an archived class for a custom class loader if the defined bytes match. Transformed
+ * classes are simply loaded normally. Archives are named after the mod set hash (see {@link ClassTransformCache#computeConfigHash}),
+ * so changing the mods switches to a new archive and archives of other mod sets are deleted.
+ */
+final class KnotCds {
+	private static final String ARGS_FILE_NAME = "jvm-args.txt";
+	private static final String ARCHIVE_EXTENSION = ".jsa";
+
+	static void setup(boolean isDevelopment, EnvType envType) {
+		if (!Boolean.getBoolean(SystemProperties.CDS)) return;
+		if (isDevelopment) return; // class directories change without the mod set hash changing
+
+		Path dir = FabricLoaderImpl.INSTANCE.getGameDir().resolve(FabricLoaderImpl.CACHE_DIR_NAME).resolve("cds");
+		String envName = envType.name().toLowerCase(Locale.ENGLISH);
+		String archiveName = String.format("%s-%016x%s", envName, ClassTransformCache.computeConfigHash(isDevelopment, envType), ARCHIVE_EXTENSION);
+		Path archive = dir.resolve(archiveName).toAbsolutePath().normalize();
+
+		try {
+			Files.createDirectories(dir);
+			deleteStaleArchives(dir, envName, archiveName);
+
+			List<String> args = getJvmArgs(archive);
+			List<String> currentArgs = ManagementFactory.getRuntimeMXBean().getInputArguments();
+
+			if (currentArgs.containsAll(args)) {
+				Log.debug(LogCategory.KNOT, "%s CDS archive %s", Files.exists(archive) ? "Using" : "Creating", archive);
+			} else {
+				Log.debug(LogCategory.KNOT, "Not using the CDS archive %s, the JVM wasn't started with its arguments", archive);
+			}
+
+			Path argsFile = dir.resolve(envName + "-" + ARGS_FILE_NAME);
+			List<String> lines = new ArrayList<>(args.size());
+
+			for (String arg : args) {
+				// argument files use quoting with backslash escapes
+				lines.add('"' + arg.replace("\\", "\\\\").replace("\"", "\\\"") + '"');
+			}
+
+			List<String> prevLines;
+
+			try {
+				prevLines = Files.readAllLines(argsFile, StandardCharsets.UTF_8);
+			} catch (NoSuchFileException e) {
+				prevLines = null;
+			}
+
+			if (!lines.equals(prevLines)) {
+				Files.write(argsFile, lines, StandardCharsets.UTF_8);
+
+				if (!currentArgs.containsAll(args)) {
+					Log.info(LogCategory.KNOT, "Updated the CDS JVM arguments for the current mod set, pass @%s to the JVM to use them", argsFile);
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			Log.warn(LogCategory.KNOT, "Failed to set up the CDS archive in " + dir, e);
+		}
+	}
+
+	private static List<String> getJvmArgs(Path archive) {
+		List<String> ret = new ArrayList<>(2);
+
+		if (Runtime.version().feature() >= 19) {
+			ret.add("-XX:+AutoCreateSharedArchive");
+			ret.add("-XX:SharedArchiveFile=" + archive);
+		} else if (Files.exists(archive)) {
+			ret.add("-XX:SharedArchiveFile=" + archive);
+		} else {
+			ret.add("-XX:ArchiveClassesAtExit=" + archive);
+		}
+
+		return ret;
+	}
+
+	private static void deleteStaleArchives(Path dir, String envName, String archiveName) throws IOException {
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, envName + "-*" + ARCHIVE_EXTENSION)) {
+			for (Path file : stream) {
+				if (file.getFileName().toString().equals(archiveName)) continue;
+
+				try {
+					Files.deleteIfExists(file);
+				} catch (IOException e) {
+					// may be in use by another instance, try again next time
+					Log.debug(LogCategory.KNOT, "Can't delete stale CDS archive %s: %s", file, e);
+				}
+			}
+		}
+	}
+}
@@ -16,30 +16,38 @@
 
 package net.playerxess.mpfapi.fabricloaderresources.loader.impl.launch.knot;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Constructor;
 import java.net.JarURLConnection;
 import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.ByteBuffer;
 import java.nio.file.FileSystemNotFoundException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.security.CodeSource;
 import java.security.cert.Certificate;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
 import java.util.jar.Manifest;
 
 import org.spongepowered.asm.mixin.transformer.IMixinTransformer;
 
 import net.playerxess.mpfapi.fabricloaderresources.api.EnvType;
+import net.playerxess.mpfapi.fabricloaderresources.loader.impl.FabricLoaderImpl;
+import net.playerxess.mpfapi.fabricloaderresources.loader.impl.discovery.NestedJarFile;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.game.GameProvider;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.launch.FabricLauncherBase;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.launch.knot.KnotClassDelegate.ClassLoaderAccess;
@@ -48,6 +56,7 @@ import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.ExceptionUti
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.FileSystemUtil;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.LoaderUtil;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.ManifestUtil;
+import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.StartupTrace;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.SystemProperties;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.UrlConversionException;
 import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.UrlUtil;
@@ -59,6 +68,8 @@ final class KnotClassDelegate<T extends ClassLoader & ClassLoaderAccess> impleme
 	private static final boolean LOG_CLASS_LOAD_ERRORS = LOG_CLASS_LOAD || System.getProperty(SystemProperties.DEBUG_LOG_CLASS_LOAD_ERRORS) != null;
 	private static final boolean LOG_TRANSFORM_ERRORS = System.getProperty(SystemProperties.DEBUG_LOG_TRANSFORM_ERRORS) != null;
 	private static final boolean DISABLE_ISOLATION = System.getProperty(SystemProperties.DEBUG_DISABLE_CLASS_PATH_ISOLATION) != null;
+	private static final boolean DISABLE_CLASS_CACHE = System.getProperty(SystemProperties.DEBUG_DISABLE_CLASS_CACHE) != null;
+	private static final boolean CLASS_PRELOAD = Boolean.getBoolean(SystemProperties.CLASS_PRELOAD);
 
 	static final class Metadata {
 		static final Metadata EMPTY = new Metadata(null, null);
@@ -75,12 +86,15 @@ final class KnotClassDelegate<T extends ClassLoader & ClassLoaderAccess> impleme
 	private static final ClassLoader PLATFORM_CLASS_LOADER = getPlatformClassLoader();
 
 	private final Map<Path, Metadata> metadataCache = new ConcurrentHashMap<>();
+	private final Map<String, Optional<NestedJarFile>> jarCache = new ConcurrentHashMap<>(); // jar url -> mapped jar
 	private final T classLoader;
 	private final ClassLoader parentClassLoader;
 	private final GameProvider provider;
 	private final boolean isDevelopment;
 	private final EnvType envType;
 	private IMixinTransformer mixinTransformer;
+	private ClassTransformCache transformCache; // null if disabled
+	private KnotClassPreloader preloader; // null if disabled
 	private boolean transformInitialized = false;
 	private volatile Set<Path> codeSources = Collections.emptySet();
 	private volatile Set<Path> validParentCodeSources = null; // null = disabled isolation, game provider has to set it to opt in
@@ -120,7 +134,17 @@ final class KnotClassDelegate<T extends ClassLoader & ClassLoaderAccess> impleme
 			}
 		}
 
+		if (!isDevelopment && !DISABLE_CLASS_CACHE) {
+			transformCache = ClassTransformCache.load(FabricLoaderImpl.INSTANCE.getGameDir().resolve(FabricLoaderImpl.CACHE_DIR_NAME).resolve("classCache-" + envType.name().toLowerCase(Locale.ENGLISH) + ".bin"),
+					isDevelopment, envType);
+		}
+
 		transformInitialized = true;
+
+		if (CLASS_PRELOAD) {
+			preloader = KnotClassPreloader.start(FabricLoaderImpl.INSTANCE.getGameDir().resolve(FabricLoaderImpl.CACHE_DIR_NAME).resolve("classList-" + envType.name().toLowerCase(Locale.ENGLISH) + ".txt"),
+					this::preparePreMixinClass);
+		}
 	}
 
 	private IMixinTransformer getMixinTransformer() {
@@ -352,7 +376,10 @@ final class KnotClassDelegate<T extends ClassLoader & ClassLoaderAccess> impleme
 			}
 		}
 
-		return classLoader.defineClassFwd(name, input, 0, input.length, metadata.codeSource);
+		Class<?> ret = classLoader.defineClassFwd(name, input, 0, input.length, metadata.codeSource);
+		if (preloader != null) preloader.record(name);
+
+		return ret;
 	}
 
 	private Metadata getMetadata(String name) {
@@ -412,13 +439,17 @@ final class KnotClassDelegate<T extends ClassLoader & ClassLoaderAccess> impleme
 	}
 
 	private byte[] getPostMixinClassByteArray(String name, boolean allowFromParent) {
-		byte[] transformedClassArray = getPreMixinClassByteArray(name, allowFromParent);
+		byte[] transformedClassArray;
+
+		try (StartupTrace.Span span = StartupTrace.begin(StartupTrace.TRANSFORM, "read and transform class")) {
+			transformedClassArray = getPreMixinClassByteArray(name, allowFromParent);
+		}
 
 		if (!transformInitialized || !canTransformClass(name)) {
 			return transformedClassArray;
 		}
 
-		try {
+		try (StartupTrace.Span span = StartupTrace.begin(StartupTrace.MIXIN, "apply mixins")) {
 			return getMixinTransformer().transformClassBytes(name, name, transformedClassArray);
 		} catch (Throwable t) {
 			String msg = String.format("Mixin transformation of %s failed", name);
@@ -451,11 +482,20 @@ final class KnotClassDelegate<T extends ClassLoader & ClassLoaderAccess> impleme
 		byte[] input = provider.getEntrypointTransformer().transform(name);
 
 		if (input == null) {
+			if (preloader != null) {
+				byte[] ret = preloader.take(name);
+				if (ret != null) return ret;
+			}
+
 			try {
 				input = getRawClassByteArray(name, allowFromParent);
 			} catch (IOException e) {
 				throw new RuntimeException("Failed to load class file for '" + name + "'!", e);
 			}
+
+			if (input != null && transformCache != null) { // the entrypoint patches aren't cached, they depend on more than the class itself
+				return transformCache.transform(name, input, getFabricTransformer(name));
+			}
 		}
 
 		if (input != null) {
@@ -465,6 +505,35 @@ final class KnotClassDelegate<T extends ClassLoader & ClassLoaderAccess> impleme
 		return null;
 	}
 
+	/**
+	 * Read and transform a class like {@link #getPreMixinClassByteArray} on a preloader thread.
+	 * Only classes from Knot's own class path are prepared, and classes patched by the entrypoint transformer are left out
+	 * since the loading thread checks the entrypoint transformer before taking the prepared bytes.
+	 */
+	private byte[] preparePreMixinClass(String name) {
+		if (!canTransformClass(name)) return null;
+
+		byte[] input;
+
+		try {
+			input = getRawClassByteArray(name, false);
+		} catch (IOException e) {
+			return null;
+		}
+
+		if (input == null) return null;
+
+		if (transformCache != null) {
+			return transformCache.transform(name, input, getFabricTransformer(name));
+		} else {
+			return FabricTransformer.transform(isDevelopment, envType, name, input);
+		}
+	}
+
+	private UnaryOperator<byte[]> getFabricTransformer(String name) {
+		return bytes -> FabricTransformer.transform(isDevelopment, envType, name, bytes);
+	}
+
 	private static boolean canTransformClass(String name) {
 		name = name.replace('/', '.');
 		// Blocking Fabric Loader classes is no longer necessary here as they don't exist on the modding class loader
@@ -492,17 +561,62 @@ final class KnotClassDelegate<T extends ClassLoader & ClassLoaderAccess> impleme
 			}
 		}
 
+		if (!DISABLE_CLASS_CACHE) {
+			byte[] ret = readFromMappedJar(url, name);
+			if (ret != null) return ret;
+		}
+
 		try (InputStream inputStream = url.openStream()) {
-			int a = inputStream.available();
-			ByteArrayOutputStream outputStream = new ByteArrayOutputStream(a < 32 ? 32768 : a);
-			byte[] buffer = new byte[8192];
-			int len;
+			return inputStream.readAllBytes();
+		}
+	}
 
-			while ((len = inputStream.read(buffer)) > 0) {
-				outputStream.write(buffer, 0, len);
-			}
+	/**
+	 * Read a class file directly from a memory-mapped view of its jar, instead of opening a connection and stream for the url.
+	 *
+	 * @return the class file bytes, or null if the url doesn't point to the file in a plain jar file
+	 */
+	private byte[] readFromMappedJar(URL url, String fileName) throws IOException {
+		if (!url.getProtocol().equals("jar")) return null;
+
+		String spec = url.toString();
+		int separator = spec.indexOf("!/");
+
+		// only jar:<jar url>!/<fileName> with the file name as-is, not nested or escaped
+		if (separator < 0
+				|| spec.length() != separator + 2 + fileName.length()
+				|| !spec.startsWith(fileName, separator + 2)) {
+			return null;
+		}
+
+		NestedJarFile jar = jarCache.computeIfAbsent(spec.substring("jar:".length(), separator), KnotClassDelegate::openJar).orElse(null);
+		if (jar == null) return null;
+
+		NestedJarFile.Entry entry = jar.getEntry(fileName);
+		if (entry == null) return null;
+
+		ByteBuffer data = jar.getData(entry);
+
+		if (data.hasArray() && data.arrayOffset() == 0 && data.array().length == data.remaining()) { // inflated into a new array
+			return data.array();
+		}
+
+		byte[] ret = new byte[data.remaining()];
+		data.get(ret);
+
+		return ret;
+	}
+
+	private static Optional<NestedJarFile> openJar(String url) {
+		try {
+			URI uri = new URI(url);
+			if (!"file".equals(uri.getScheme())) return Optional.empty();
+
+			return Optional.of(NestedJarFile.open(Paths.get(uri)));
+		} catch (URISyntaxException | IOException | IllegalArgumentException e) {
+			if (LOG_CLASS_LOAD_ERRORS) Log.warn(LogCategory.KNOT, "can't map code source %s, falling back to url access: %s", url, e);
 
-			return outputStream.toByteArray();
+			return Optional.empty();
 		}
 	}
 
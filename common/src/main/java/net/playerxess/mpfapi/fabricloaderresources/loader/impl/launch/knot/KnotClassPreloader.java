@@ -0,0 +1,268 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.playerxess.mpfapi.fabricloaderresources.loader.impl.launch.knot;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.log.Log;
+import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.log.LogCategory;
+
+/**
+ * Records the classes loaded through Knot and prepares them ahead of time on the next launch.
+ *
+ * <p>The class list of the previous launch is read on worker threads in recorded order, and each class file is read and run
+ * through the non-mixin transformers. The results are handed to the loading thread when it asks for the class, so it only has
+ * to apply mixins and define the class. Classes are still defined on demand by the thread that requests them, so the load order
+ * doesn't change. Classes that aren't requested this time are simply never taken.
+ *
+ * <p>The workers stay at most {@link #MAX_PENDING} classes ahead of the loading thread to bound the memory use. Prepared
+ * classes that won't be taken, because they got defined without their prepared bytes or are more than {@link #MAX_LAG}
+ * classes behind the last taken one, are dropped when a worker runs out of room, e.g. after the mod set changed or for
+ * classes only loaded by a parent class loader. If that doesn't free any room and the loading thread stops taking classes
+ * for {@link #MAX_IDLE_MS}, the workers give up and drop the remaining classes. The list recorded during this launch
+ * replaces the previous one when the JVM shuts down.
+ */
+final class KnotClassPreloader {
+	private static final int MAX_PENDING = 4096;
+	private static final int MAX_LAG = 1024;
+	private static final int MAX_RECORDED = 100_000;
+	private static final long WAIT_MS = 200;
+	private static final long MAX_IDLE_MS = 10_000;
+
+	private final Path file;
+	private final Map<String, Prepared> prepared = new ConcurrentHashMap<>();
+	private final Semaphore pending = new Semaphore(MAX_PENDING);
+	/** Index of the last class taken from the list, in the order of the previous launch. */
+	private final AtomicInteger demand = new AtomicInteger(-1);
+	private final AtomicInteger taken = new AtomicInteger();
+	private volatile boolean stopped;
+	private final Set<String> recordedSet = ConcurrentHashMap.newKeySet();
+	private final List<String> recorded = Collections.synchronizedList(new ArrayList<>());
+
+	private KnotClassPreloader(Path file) {
+		this.file = file;
+	}
+
+	/**
+	 * Start preparing the classes recorded in {@code file}.
+	 *
+	 * @param preparer function producing the pre-mixin class bytes, or null if the class can't be prepared
+	 */
+	static KnotClassPreloader start(Path file, Function<String, byte[]> preparer) {
+		KnotClassPreloader ret = new KnotClassPreloader(file);
+		List<String> classes;
+
+		try {
+			classes = Files.readAllLines(file, StandardCharsets.UTF_8);
+		} catch (NoSuchFileException e) {
+			classes = Collections.emptyList();
+		} catch (IOException e) {
+			Log.debug(LogCategory.KNOT, "Ignoring unreadable class list %s: %s", file, e);
+			classes = Collections.emptyList();
+		}
+
+		if (!classes.isEmpty()) {
+			int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+			AtomicInteger next = new AtomicInteger();
+			List<String> list = classes;
+
+			for (int i = 0; i < threads; i++) {
+				Thread thread = new Thread(() -> ret.prepare(list, next, preparer), "Knot class preloader " + i);
+				thread.setDaemon(true);
+				thread.setPriority(Thread.NORM_PRIORITY - 1);
+				thread.start();
+			}
+
+			Log.debug(LogCategory.KNOT, "Preloading %d classes from %s on %d threads", classes.size(), file, threads);
+		}
+
+		Runtime.getRuntime().addShutdownHook(new Thread(ret::save, "Knot class list writer"));
+
+		return ret;
+	}
+
+	private void prepare(List<String> classes, AtomicInteger next, Function<String, byte[]> preparer) {
+		int index;
+
+		while (!stopped && (index = next.getAndIncrement()) < classes.size()) {
+			String name = classes.get(index);
+			if (name.isEmpty() || recordedSet.contains(name)) continue; // already loaded
+			if (isBehind(index)) continue; // the loading thread is already past it
+
+			try {
+				if (!acquire()) return;
+			} catch (InterruptedException e) {
+				return;
+			}
+
+			byte[] bytes;
+
+			try {
+				bytes = preparer.apply(name);
+			} catch (Throwable t) {
+				bytes = null; // the loading thread will run into the same issue and report it properly
+			}
+
+			Prepared entry;
+
+			if (bytes == null || recordedSet.contains(name) || prepared.putIfAbsent(name, entry = new Prepared(bytes, index)) != null) {
+				pending.release();
+			} else if (recordedSet.contains(name)) { // recorded between the check and the put, it won't be taken anymore
+				drop(name, entry);
+			}
+		}
+	}
+
+	/**
+	 * Wait for room for another prepared class, dropping the ones that won't be taken if there is none.
+	 *
+	 * @return false if there is no room and the loading thread stopped taking classes, the prepared classes got dropped
+	 */
+	private boolean acquire() throws InterruptedException {
+		int lastTaken = taken.get();
+		long idleMs = 0;
+
+		while (!pending.tryAcquire(WAIT_MS, TimeUnit.MILLISECONDS)) {
+			int dropped = dropStale();
+			int curTaken = taken.get();
+
+			if (dropped > 0 || curTaken != lastTaken) {
+				idleMs = 0;
+				lastTaken = curTaken;
+			} else if (stopped || (idleMs += WAIT_MS) >= MAX_IDLE_MS) {
+				stopped = true;
+				prepared.forEach(this::drop);
+
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Drop the prepared classes that won't be taken anymore.
+	 */
+	private int dropStale() {
+		int ret = 0;
+
+		for (Map.Entry<String, Prepared> e : prepared.entrySet()) {
+			if ((recordedSet.contains(e.getKey()) || isBehind(e.getValue().index)) && drop(e.getKey(), e.getValue())) {
+				ret++;
+			}
+		}
+
+		return ret;
+	}
+
+	private boolean isBehind(int index) {
+		return index < demand.get() - MAX_LAG;
+	}
+
+	private boolean drop(String name, Prepared entry) {
+		if (!prepared.remove(name, entry)) return false;
+
+		pending.release();
+
+		return true;
+	}
+
+	/**
+	 * Take the prepared pre-mixin bytes of a class.
+	 *
+	 * @return the class bytes, or null if the class hasn't been prepared (yet)
+	 */
+	byte[] take(String name) {
+		Prepared ret = prepared.remove(name);
+		if (ret == null) return null;
+
+		pending.release();
+		demand.accumulateAndGet(ret.index, Math::max);
+		if (taken.incrementAndGet() % MAX_LAG == 0) dropStale(); // the workers may be done and no longer drop them
+
+		return ret.bytes;
+	}
+
+	/**
+	 * Record a class defined by Knot for the next launch.
+	 */
+	void record(String name) {
+		if (recorded.size() < MAX_RECORDED && recordedSet.add(name)) {
+			recorded.add(name);
+		}
+
+		// defined without taking its prepared bytes, e.g. prepared after the loading thread asked for it
+		Prepared entry = prepared.get(name);
+		if (entry != null) drop(name, entry);
+	}
+
+	private void save() {
+		List<String> classes;
+
+		synchronized (recorded) {
+			if (recorded.isEmpty()) return;
+
+			classes = new ArrayList<>(recorded);
+		}
+
+		try {
+			Files.createDirectories(file.getParent());
+			Path tmp = Files.createTempFile(file.getParent(), "classList", ".tmp");
+
+			try {
+				try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+					for (String name : classes) {
+						writer.write(name);
+						writer.newLine();
+					}
+				}
+
+				Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(tmp);
+			}
+		} catch (IOException e) {
+			Log.warn(LogCategory.KNOT, "Failed to write class list " + file, e);
+		}
+	}
+
+	private static final class Prepared {
+		final byte[] bytes;
+		final int index;
+
+		Prepared(byte[] bytes, int index) {
+			this.bytes = bytes;
+			this.index = index;
+		}
+	}
+}
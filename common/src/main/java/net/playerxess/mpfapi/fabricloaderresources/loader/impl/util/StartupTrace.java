@@ -0,0 +1,285 @@
+/*
+ * Copyright 2016 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.playerxess.mpfapi.fabricloaderresources.loader.impl.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import net.playerxess.mpfapi.fabricloaderresources.loader.impl.FabricLoaderImpl;
+import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.log.Log;
+import net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.log.LogCategory;
+
+/**
+ * Records spans of time spent in the loader phases when {@link SystemProperties#DEBUG_STARTUP_TRACE} is set.
+ *
+ * <p>The spans are written as a Chrome trace event file, viewable with chrome://tracing or Perfetto, and a summary
+ * of the time per phase and per mod is logged once startup completed. Spans can be attributed to a mod, which
+ * is used for the per-mod summary.
+ *
+ * <p>Spans are used with try-with-resources:
+ * <pre>
+ * try (StartupTrace.Span span = StartupTrace.begin(StartupTrace.REMAP, "remap", mod.getId())) {
+ *     ...
+ * }
+ * </pre>
+ * When tracing is disabled, {@link #begin} returns a shared no-op span.
+ */
+public final class StartupTrace {
+	public static final String DISCOVERY = "discovery";
+	public static final String METADATA = "metadata";
+	public static final String RESOLUTION = "resolution";
+	public static final String REMAP = "remap";
+	public static final String MIXIN = "mixin";
+	public static final String ENTRYPOINT = "entrypoint";
+	public static final String TRANSFORM = "transform";
+
+	public static final boolean ENABLED = System.getProperty(SystemProperties.DEBUG_STARTUP_TRACE) != null;
+	private static final String DEFAULT_FILE_NAME = "startupTrace.json";
+	private static final Span NOOP = new Span(null, null, null);
+
+	private static final long startTime = System.nanoTime();
+	private static final ConcurrentLinkedQueue<Span> spans = new ConcurrentLinkedQueue<>();
+	private static final AtomicBoolean finished = new AtomicBoolean();
+
+	static {
+		if (ENABLED) {
+			Runtime.getRuntime().addShutdownHook(new Thread(StartupTrace::finish, "Startup Trace Writer"));
+		}
+	}
+
+	public static Span begin(String category, String name) {
+		return begin(category, name, null);
+	}
+
+	public static Span begin(String category, String name, String modId) {
+		if (!ENABLED || finished.get()) return NOOP;
+
+		return new Span(category, name, modId);
+	}
+
+	/**
+	 * Mark the end of startup, writing the trace and logging the summary. Spans started later are ignored.
+	 */
+	public static void finish() {
+		if (!ENABLED || !finished.compareAndSet(false, true)) return;
+
+		List<Span> spans = new ArrayList<>(StartupTrace.spans);
+		StartupTrace.spans.clear();
+		spans.sort(Comparator.comparingLong(span -> span.start));
+
+		Path file = getOutputFile();
+
+		if (file != null) {
+			try {
+				writeTrace(spans, file);
+				Log.info(LogCategory.GENERAL, "Wrote startup trace with %d spans to %s", spans.size(), file);
+			} catch (IOException e) {
+				Log.warn(LogCategory.GENERAL, "Failed to write startup trace to " + file, e);
+			}
+		}
+
+		Log.info(LogCategory.GENERAL, "%s", createSummary(spans));
+	}
+
+	private static Path getOutputFile() {
+		String value = System.getProperty(SystemProperties.DEBUG_STARTUP_TRACE);
+
+		if (!value.isEmpty() && !value.equalsIgnoreCase("true")) {
+			return Paths.get(value);
+		}
+
+		try {
+			return FabricLoaderImpl.INSTANCE.getGameDir().resolve(FabricLoaderImpl.CACHE_DIR_NAME).resolve(DEFAULT_FILE_NAME);
+		} catch (RuntimeException e) { // game dir not set up yet
+			return Paths.get(DEFAULT_FILE_NAME);
+		}
+	}
+
+	private static void writeTrace(List<Span> spans, Path file) throws IOException {
+		Path parent = file.toAbsolutePath().getParent();
+		if (parent != null) Files.createDirectories(parent);
+
+		try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+			Set<Long> threads = new HashSet<>();
+			boolean first = true;
+
+			for (Span span : spans) {
+				if (threads.add(span.threadId)) {
+					writer.write(first ? "\n" : ",\n");
+					first = false;
+					writer.write(String.format(Locale.ROOT, "{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":%d,\"args\":{\"name\":",
+							span.threadId));
+					writeString(writer, span.threadName);
+					writer.write("}}");
+				}
+
+				writer.write(first ? "\n" : ",\n");
+				first = false;
+				writer.write("{\"name\":");
+				writeString(writer, span.name);
+				writer.write(",\"cat\":");
+				writeString(writer, span.category);
+				writer.write(String.format(Locale.ROOT, ",\"ph\":\"X\",\"ts\":%.3f,\"dur\":%.3f,\"pid\":1,\"tid\":%d",
+						(span.start - startTime) * 1e-3, span.duration * 1e-3, span.threadId));
+
+				if (span.modId != null) {
+					writer.write(",\"args\":{\"mod\":");
+					writeString(writer, span.modId);
+					writer.write('}');
+				}
+
+				writer.write('}');
+			}
+
+			writer.write("\n]}\n");
+		}
+	}
+
+	private static void writeString(Writer writer, String str) throws IOException {
+		writer.write('"');
+
+		for (int i = 0; i < str.length(); i++) {
+			char c = str.charAt(i);
+
+			if (c == '"' || c == '\\') {
+				writer.write('\\');
+				writer.write(c);
+			} else if (c < 0x20) {
+				writer.write(String.format(Locale.ROOT, "\\u%04x", (int) c));
+			} else {
+				writer.write(c);
+			}
+		}
+
+		writer.write('"');
+	}
+
+	private static String createSummary(List<Span> spans) {
+		Map<String, long[]> phases = new LinkedHashMap<>(); // category/name -> count, total, max
+		Map<String, Map<String, Long>> mods = new TreeMap<>(); // mod -> category -> total
+
+		for (Span span : spans) {
+			long[] phase = phases.computeIfAbsent(span.category + "/" + span.name, ignore -> new long[3]);
+			phase[0]++;
+			phase[1] += span.duration;
+			phase[2] = Math.max(phase[2], span.duration);
+
+			if (span.modId != null) {
+				mods.computeIfAbsent(span.modId, ignore -> new TreeMap<>()).merge(span.category, span.duration, Long::sum);
+			}
+		}
+
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format(Locale.ROOT, "Startup trace summary after %.1f ms:%n", (System.nanoTime() - startTime) * 1e-6));
+		sb.append(String.format(Locale.ROOT, "\t%-40s %8s %12s %12s%n", "Phase", "Count", "Total (ms)", "Max (ms)"));
+
+		for (Map.Entry<String, long[]> entry : phases.entrySet()) {
+			long[] phase = entry.getValue();
+			sb.append(String.format(Locale.ROOT, "\t%-40s %8d %12.1f %12.1f%n", entry.getKey(), phase[0], phase[1] * 1e-6, phase[2] * 1e-6));
+		}
+
+		if (!mods.isEmpty()) {
+			List<String> categories = new ArrayList<>();
+
+			for (Map<String, Long> times : mods.values()) {
+				for (String category : times.keySet()) {
+					if (!categories.contains(category)) categories.add(category);
+				}
+			}
+
+			categories.sort(null);
+			sb.append(String.format(Locale.ROOT, "\t%-40s", "Mod"));
+
+			for (String category : categories) {
+				sb.append(String.format(Locale.ROOT, " %16s", category + " (ms)"));
+			}
+
+			sb.append(System.lineSeparator());
+
+			for (Map.Entry<String, Map<String, Long>> entry : mods.entrySet()) {
+				sb.append(String.format(Locale.ROOT, "\t%-40s", entry.getKey()));
+
+				for (String category : categories) {
+					Long time = entry.getValue().get(category);
+					sb.append(time != null ? String.format(Locale.ROOT, " %16.1f", time * 1e-6) : String.format(Locale.ROOT, " %16s", "-"));
+				}
+
+				sb.append(System.lineSeparator());
+			}
+		}
+
+		return sb.toString();
+	}
+
+	public static final class Span implements AutoCloseable {
+		final String category;
+		final String name;
+		String modId;
+		final long threadId;
+		final String threadName;
+		final long start;
+		long duration;
+
+		Span(String category, String name, String modId) {
+			this.category = category;
+			this.name = name;
+			this.modId = modId;
+
+			if (category != null) {
+				Thread thread = Thread.currentThread();
+				this.threadId = thread.getId();
+				this.threadName = thread.getName();
+				this.start = System.nanoTime();
+			} else {
+				this.threadId = 0;
+				this.threadName = null;
+				this.start = 0;
+			}
+		}
+
+		/**
+		 * Attribute the span to a mod, for spans where the mod isn't known yet when starting them.
+		 */
+		public void setMod(String modId) {
+			if (this != NOOP) this.modId = modId;
+		}
+
+		@Override
+		public void close() {
+			if (this == NOOP) return;
+
+			duration = System.nanoTime() - start;
+			if (!finished.get()) spans.add(this);
+		}
+	}
+}
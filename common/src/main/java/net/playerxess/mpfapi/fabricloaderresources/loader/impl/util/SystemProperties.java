@@ -46,6 +46,10 @@ public final class SystemProperties {
 	public static final String FIX_PACKAGE_ACCESS = "fabric.fixPackageAccess";
 	// system level libraries, matching code sources will not be assumed to be part of the game or mods and remain on the system class path (paths separated by path separator)
 	public static final String SYSTEM_LIBRARIES = "fabric.systemLibraries";
+	// records the classes loaded by Knot and prepares them on worker threads ahead of their use on the next launch
+	public static final String CLASS_PRELOAD = "fabric.classPreload";
+	// maintains the JVM arguments for a dynamic CDS archive of the current mod set in .fabric/cds
+	public static final String CDS = "fabric.cds";
 	// throw exceptions from entrypoints, discovery etc. directly instead of gathering and attaching as suppressed
 	public static final String DEBUG_THROW_DIRECTLY = "fabric.debug.throwDirectly";
 	// logs library classification activity
@@ -54,6 +58,8 @@ public final class SystemProperties {
 	public static final String DEBUG_LOG_CLASS_LOAD = "fabric.debug.logClassLoad";
 	// logs class loading errors to uncover caught exceptions without adequate logging
 	public static final String DEBUG_LOG_CLASS_LOAD_ERRORS = "fabric.debug.logClassLoadErrors";
+	// records the time spent in the loader phases, written as a Chrome trace to the given file or .fabric/startupTrace.json and logged as a summary
+	public static final String DEBUG_STARTUP_TRACE = "fabric.debug.startupTrace";
 	// logs class transformation errors to uncover caught exceptions without adequate logging
 	public static final String DEBUG_LOG_TRANSFORM_ERRORS = "fabric.debug.logTransformErrors";
 	// disables system class path isolation, allowing bogus lib accesses (too early, transient jars)
@@ -64,6 +70,18 @@ public final class SystemProperties {
 	public static final String DEBUG_LOAD_LATE = "fabric.debug.loadLate";
 	// override the mod discovery timeout, unit in seconds, <= 0 to disable
 	public static final String DEBUG_DISCOVERY_TIMEOUT = "fabric.debug.discoveryTimeout";
+	// disables the persistent mod discovery cache, forcing all mod jars to be scanned
+	public static final String DEBUG_DISABLE_DISCOVERY_CACHE = "fabric.debug.disableDiscoveryCache";
+	// disables reusing the previous mod resolution result, forcing the solver to run
+	public static final String DEBUG_DISABLE_RESOLUTION_CACHE = "fabric.debug.disableResolutionCache";
+	// disables the transformed class cache and reading class files from memory-mapped jars
+	public static final String DEBUG_DISABLE_CLASS_CACHE = "fabric.debug.disableClassCache";
+	// disables reusing runtime remapped mods from previous launches, forcing all mods requiring it to be remapped
+	public static final String DEBUG_DISABLE_REMAP_CACHE = "fabric.debug.disableRemapCache";
+	// disables storing the parsed mappings in a memory-mapped binary file and loading them from there on later launches
+	public static final String DEBUG_DISABLE_MAPPINGS_CACHE = "fabric.debug.disableMappingsCache";
+	// runs the entrypoints opted into parallel initialization serially, in their regular order
+	public static final String DEBUG_DISABLE_PARALLEL_ENTRYPOINTS = "fabric.debug.disableParallelEntrypoints";
 	// override the mod resolution timeout, unit in seconds, <= 0 to disable
 	public static final String DEBUG_RESOLUTION_TIMEOUT = "fabric.debug.resolutionTimeout";
 	// replace mod versions (modA:versionA,modB:versionB,...)
@@ -26,7 +26,7 @@ import java.util.Set;
 
 import org.spongepowered.asm.mixin.transformer.ClassInfo;
 
-import net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.tree.MappingTree;
+import net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.tree.MappingTreeView;
 
 public class MixinIntermediaryDevRemapper extends MixinRemapper {
 	private static final String ambiguousName = "<ambiguous>"; // dummy value for ambiguous mappings - needs querying with additional owner and/or desc info
@@ -37,10 +37,10 @@ public class MixinIntermediaryDevRemapper extends MixinRemapper {
 	private final Map<String, String> nameDescFieldLookup = new HashMap<>();
 	private final Map<String, String> nameDescMethodLookup = new HashMap<>();
 
-	public MixinIntermediaryDevRemapper(MappingTree mappings, String from, String to) {
+	public MixinIntermediaryDevRemapper(MappingTreeView mappings, String from, String to) {
 		super(mappings, mappings.getNamespaceId(from), mappings.getNamespaceId(to));
 
-		for (MappingTree.ClassMapping classDef : mappings.getClasses()) {
+		for (MappingTreeView.ClassMappingView classDef : mappings.getClasses()) {
 			allPossibleClassNames.add(classDef.getName(from));
 			allPossibleClassNames.add(classDef.getName(to));
 
@@ -49,7 +49,7 @@ public class MixinIntermediaryDevRemapper extends MixinRemapper {
 		}
 	}
 
-	private <T extends MappingTree.MemberMapping> void putMemberInLookup(int from, int to, Collection<T> descriptored, Map<String, String> nameMap, Map<String, String> nameDescMap) {
+	private <T extends MappingTreeView.MemberMappingView> void putMemberInLookup(int from, int to, Collection<T> descriptored, Map<String, String> nameMap, Map<String, String> nameDescMap) {
 		for (T field : descriptored) {
 			String nameFrom = field.getName(from);
 			String descFrom = field.getDesc(from);
@@ -18,14 +18,14 @@ package net.playerxess.mpfapi.fabricloaderresources.loader.impl.util.mappings;
 
 import org.spongepowered.asm.mixin.extensibility.IRemapper;
 
-import net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.tree.MappingTree;
+import net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.tree.MappingTreeView;
 
 public class MixinRemapper implements IRemapper {
-	protected final MappingTree mappings;
+	protected final MappingTreeView mappings;
 	protected final int fromId;
 	protected final int toId;
 
-	public MixinRemapper(MappingTree mappings, int fromId, int toId) {
+	public MixinRemapper(MappingTreeView mappings, int fromId, int toId) {
 		this.mappings = mappings;
 		this.fromId = fromId;
 		this.toId = toId;
@@ -33,13 +33,13 @@ public class MixinRemapper implements IRemapper {
 
 	@Override
 	public String mapMethodName(String owner, String name, String desc) {
-		final MappingTree.MethodMapping method = mappings.getMethod(owner, name, desc, fromId);
+		final MappingTreeView.MethodMappingView method = mappings.getMethod(owner, name, desc, fromId);
 		return method == null ? name : method.getName(toId);
 	}
 
 	@Override
 	public String mapFieldName(String owner, String name, String desc) {
-		final MappingTree.FieldMapping field = mappings.getField(owner, name, desc, fromId);
+		final MappingTreeView.FieldMappingView field = mappings.getField(owner, name, desc, fromId);
 		return field == null ? name : field.getName(toId);
 	}
 
@@ -28,6 +28,7 @@ import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.jetbrains.annotations.Nullable;
@@ -262,6 +263,36 @@ public final class MappingReader {
 		}
 	}
 
+	/**
+	 * Tries to read the given path using the passed format's reader, parsing the files of multi-file formats in parallel.
+	 *
+	 * <p>Single-file formats are read on the calling thread like {@link #read(Path, MappingFormat, MappingVisitor)}.
+	 *
+	 * @param path The path to read from. Can be a file or a directory.
+	 * @param format The format to use. Has to match the path's format. May be null to detect it.
+	 * @param visitor The receiving visitor.
+	 * @param executor The executor to parse the individual files on.
+	 * @throws IOException If reading fails.
+	 */
+	public static void read(Path path, MappingFormat format, MappingVisitor visitor, Executor executor) throws IOException {
+		if (format == null) {
+			format = detectFormat(path);
+			if (format == null) throw new IOException("invalid/unsupported mapping format");
+		}
+
+		if (format.hasSingleFile()) {
+			read(path, format, visitor);
+		} else {
+			switch (format) {
+			case ENIGMA_DIR:
+				EnigmaDirReader.read(path, visitor, executor);
+				break;
+			default:
+				throw new IllegalStateException();
+			}
+		}
+	}
+
 	/**
 	 * Tries to detect the reader's content's format and read it.
 	 *
@@ -17,13 +17,22 @@
 package net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.format.enigma;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+import org.jetbrains.annotations.Nullable;
 
 import net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.MappingFlag;
 import net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.MappingUtil;
@@ -48,6 +57,26 @@ public final class EnigmaDirReader {
 	}
 
 	public static void read(Path dir, String sourceNs, String targetNs, MappingVisitor visitor) throws IOException {
+		read(dir, sourceNs, targetNs, visitor, null);
+	}
+
+	/**
+	 * Read the directory's files in parallel.
+	 *
+	 * @see #read(Path, String, String, MappingVisitor, Executor)
+	 */
+	public static void read(Path dir, MappingVisitor visitor, @Nullable Executor executor) throws IOException {
+		read(dir, MappingUtil.NS_SOURCE_FALLBACK, MappingUtil.NS_TARGET_FALLBACK, visitor, executor);
+	}
+
+	/**
+	 * Read the directory's files, in parallel if an executor is passed.
+	 *
+	 * <p>In parallel mode every file is parsed into its own partial {@link MemoryMappingTree} on the executor. The partial
+	 * trees are passed on to the visitor in the order of their relative paths, regardless of completion order, so the
+	 * result is deterministic.
+	 */
+	public static void read(Path dir, String sourceNs, String targetNs, MappingVisitor visitor, @Nullable Executor executor) throws IOException {
 		if (!Files.exists(dir)) throw new IOException("Directory does not exist: " + dir);
 		if (!Files.isDirectory(dir)) throw new IOException("Not a directory: " + dir);
 
@@ -88,23 +117,79 @@ public final class EnigmaDirReader {
 			private boolean visitContent;
 		};
 
+		if (executor == null) {
+			Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+					if (file.getFileName().toString().endsWith("." + MappingFormat.ENIGMA_FILE.fileExt)) {
+						try (Reader reader = Files.newBufferedReader(file)) {
+							EnigmaFileReader.read(reader, sourceNs, targetNs, delegatingVisitor);
+						}
+					}
+
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		} else {
+			readParallel(dir, sourceNs, targetNs, delegatingVisitor, executor);
+		}
+
+		if (visitor.visitEnd() && parentVisitor == null) return;
+
+		if (parentVisitor == null) {
+			throw new IllegalStateException("repeated visitation requested without NEEDS_MULTIPLE_PASSES");
+		}
+
+		((MappingTree) visitor).accept(parentVisitor);
+	}
+
+	private static void readParallel(Path dir, String sourceNs, String targetNs, MappingVisitor visitor, Executor executor) throws IOException {
+		List<Path> files = new ArrayList<>();
+
 		Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
 			@Override
 			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
 				if (file.getFileName().toString().endsWith("." + MappingFormat.ENIGMA_FILE.fileExt)) {
-					EnigmaFileReader.read(Files.newBufferedReader(file), sourceNs, targetNs, delegatingVisitor);
+					files.add(file);
 				}
 
 				return FileVisitResult.CONTINUE;
 			}
 		});
 
-		if (visitor.visitEnd() && parentVisitor == null) return;
+		files.sort((a, b) -> dir.relativize(a).toString().compareTo(dir.relativize(b).toString()));
+		List<CompletableFuture<MemoryMappingTree>> partials = new ArrayList<>(files.size());
 
-		if (parentVisitor == null) {
-			throw new IllegalStateException("repeated visitation requested without NEEDS_MULTIPLE_PASSES");
+		for (Path file : files) {
+			partials.add(CompletableFuture.supplyAsync(() -> {
+				MemoryMappingTree ret = new MemoryMappingTree();
+				ret.visitNamespaces(sourceNs, Collections.singletonList(targetNs));
+
+				try (Reader reader = Files.newBufferedReader(file)) {
+					EnigmaFileReader.read(reader, sourceNs, targetNs, ret);
+				} catch (IOException e) {
+					throw new UncheckedIOException("Error reading " + file, e);
+				}
+
+				return ret;
+			}, executor));
 		}
 
-		((MappingTree) visitor).accept(parentVisitor);
+		for (int i = 0; i < partials.size(); i++) {
+			MemoryMappingTree partial;
+
+			try {
+				partial = partials.get(i).join();
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof UncheckedIOException) { // keep the file name from the message
+					throw new IOException(e.getCause().getMessage(), e.getCause().getCause());
+				}
+
+				throw e;
+			}
+
+			partials.set(i, null); // release each partial tree once it has been passed on
+			partial.accept(visitor);
+		}
 	}
 }
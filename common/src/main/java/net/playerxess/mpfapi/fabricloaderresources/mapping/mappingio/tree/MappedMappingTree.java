@@ -0,0 +1,1323 @@
+/*
+ * Copyright (c) 2021 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.tree;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.jetbrains.annotations.Nullable;
+
+import net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.MappedElementKind;
+import net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.MappingFlag;
+import net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.MappingVisitor;
+
+/**
+ * Read-only {@link MappingTreeView} backed by a compact binary representation, usually a memory-mapped file.
+ *
+ * <p>The binary form consists of a header, fixed-size class and member records referencing each other by offset
+ * and a deduplicated UTF-8 string pool. Every record table is stored in input order, accompanied by an index sorted
+ * by source name, with records of the same name kept in input order, so lookups are binary searches over the mapped data
+ * with the same results as {@link MemoryMappingTree}. Classes and members are additionally indexed by each destination
+ * name. Strings are only decoded when requested.
+ *
+ * <p>Opening a tree only parses the header, the data itself is paged in on demand by the OS and shared between all
+ * processes mapping the same file. Element views are created on demand and don't preserve identity.
+ *
+ * <p>Use {@link #write(MappingTreeView, OutputStream)} to create the binary form from any other tree.
+ */
+public final class MappedMappingTree implements MappingTreeView {
+	private static final int MAGIC = 0x4d494f42; // MIOB
+	private static final int VERSION = 3;
+	private static final int NULL_STRING = -1;
+	private static final int FLAG_HAS_ANY_DESC = 1;
+	private static final int FLAG_MISSES_ANY_DESC = 2;
+
+	/**
+	 * Map the binary mapping file into memory.
+	 *
+	 * <p>The file must not be modified while the tree is in use, replace it atomically instead.
+	 */
+	public static MappedMappingTree open(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) throw new IOException("binary mapping file too large: "+file);
+
+			return new MappedMappingTree(channel.map(MapMode.READ_ONLY, 0, size));
+		}
+	}
+
+	/**
+	 * Use the binary mapping data between the buffer's position and limit, without copying it.
+	 */
+	public static MappedMappingTree wrap(ByteBuffer buffer) throws IOException {
+		return new MappedMappingTree(buffer.slice());
+	}
+
+	private MappedMappingTree(ByteBuffer buf) throws IOException {
+		this.buf = buf;
+
+		try {
+			int pos = 0;
+			if (buf.getInt(pos) != MAGIC) throw new IOException("invalid binary mapping magic");
+			if (buf.getInt(pos + 4) != VERSION) throw new IOException("unsupported binary mapping version "+buf.getInt(pos + 4));
+			dstCount = buf.getInt(pos + 8);
+			if (dstCount < 0) throw new IOException("invalid namespace count");
+			pos += 12;
+
+			int srcNsRef = buf.getInt(pos);
+			int[] dstNsRefs = new int[dstCount];
+			pos += 4;
+
+			for (int i = 0; i < dstCount; i++, pos += 4) {
+				dstNsRefs[i] = buf.getInt(pos);
+			}
+
+			metadataCount = buf.getInt(pos);
+			int metadataOff = buf.getInt(pos + 4);
+			classCount = buf.getInt(pos + 8);
+			int classesOff = buf.getInt(pos + 12);
+			int classIndexOff = buf.getInt(pos + 16);
+			pos += 20;
+
+			int[] dstIndexOffs = new int[dstCount];
+
+			for (int i = 0; i < dstCount; i++, pos += 4) {
+				dstIndexOffs[i] = buf.getInt(pos);
+			}
+
+			int bodyLen = buf.getInt(pos);
+			int poolLen = buf.getInt(pos + 4);
+			pos += 8;
+
+			if (bodyLen < 0 || poolLen < 0 || (long) pos + bodyLen + poolLen > buf.limit()) throw new IOException("truncated binary mapping data");
+
+			bodyBase = pos;
+			poolBase = pos + bodyLen;
+			this.metadataPos = bodyBase + metadataOff;
+			this.classesPos = bodyBase + classesOff;
+			this.classIndexPos = bodyBase + classIndexOff;
+			this.dstIndexPos = new int[dstCount];
+
+			for (int i = 0; i < dstCount; i++) {
+				dstIndexPos[i] = bodyBase + dstIndexOffs[i];
+			}
+
+			classSize = (9 + 3 * dstCount) * 4;
+			fieldSize = (3 + dstCount) * 4;
+			methodSize = (7 + dstCount) * 4;
+			argSize = (4 + dstCount) * 4;
+			varSize = (6 + dstCount) * 4;
+
+			srcNamespace = getString(srcNsRef);
+			String[] dstNamespaces = new String[dstCount];
+
+			for (int i = 0; i < dstCount; i++) {
+				dstNamespaces[i] = getString(dstNsRefs[i]);
+			}
+
+			this.dstNamespaces = Collections.unmodifiableList(Arrays.asList(dstNamespaces));
+		} catch (IndexOutOfBoundsException e) {
+			throw new IOException("truncated binary mapping data", e);
+		}
+	}
+
+	@Override
+	public String getSrcNamespace() {
+		return srcNamespace;
+	}
+
+	@Override
+	public List<String> getDstNamespaces() {
+		return dstNamespaces;
+	}
+
+	@Override
+	public List<? extends MetadataEntryView> getMetadata() {
+		return new AbstractList<MetadataEntryView>() {
+			@Override
+			public MetadataEntryView get(int index) {
+				Objects.checkIndex(index, metadataCount);
+
+				return new MetadataView(metadataPos + index * 8);
+			}
+
+			@Override
+			public int size() {
+				return metadataCount;
+			}
+		};
+	}
+
+	@Override
+	public List<? extends MetadataEntryView> getMetadata(String key) {
+		List<MetadataEntryView> ret = new ArrayList<>();
+
+		for (MetadataEntryView entry : getMetadata()) {
+			if (key.equals(entry.getKey())) ret.add(entry);
+		}
+
+		return Collections.unmodifiableList(ret);
+	}
+
+	@Override
+	public Collection<? extends ClassMappingView> getClasses() {
+		return new AbstractList<ClassView>() {
+			@Override
+			public ClassView get(int index) {
+				Objects.checkIndex(index, classCount);
+
+				return new ClassView(classesPos + index * classSize);
+			}
+
+			@Override
+			public int size() {
+				return classCount;
+			}
+		};
+	}
+
+	@Override
+	@Nullable
+	public ClassMappingView getClass(String srcName) {
+		int pos = findClass(classIndexPos, classCount, 0, srcName);
+
+		return pos >= 0 ? new ClassView(pos) : null;
+	}
+
+	@Override
+	@Nullable
+	public ClassMappingView getClass(String name, int namespace) {
+		if (namespace < 0) return getClass(name);
+		if (namespace >= dstCount) return null;
+
+		int indexPos = dstIndexPos[namespace];
+		int pos = findClass(indexPos + 4, buf.getInt(indexPos), 1 + namespace, name);
+
+		return pos >= 0 ? new ClassView(pos) : null;
+	}
+
+	private int findClass(int indexPos, int count, int nameSlot, String name) {
+		byte[] key = name.getBytes(StandardCharsets.UTF_8);
+		int lo = 0;
+		int hi = count - 1;
+
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			int pos = classesPos + buf.getInt(indexPos + mid * 4) * classSize;
+			int cmp = compareString(buf.getInt(pos + nameSlot * 4), key);
+
+			if (cmp < 0) {
+				lo = mid + 1;
+			} else if (cmp > 0) {
+				hi = mid - 1;
+			} else {
+				return pos;
+			}
+		}
+
+		return -1;
+	}
+
+	@Override
+	public void accept(MappingVisitor visitor, VisitOrder order) throws IOException {
+		do {
+			if (visitor.visitHeader()) {
+				visitor.visitNamespaces(srcNamespace, dstNamespaces);
+				List<? extends MetadataEntryView> metadataToVisit = getMetadata();
+
+				if (visitor.getFlags().contains(MappingFlag.NEEDS_METADATA_UNIQUENESS)) {
+					List<MetadataEntryView> uniqueMetadata = new ArrayList<>();
+					List<String> addedKeys = new ArrayList<>();
+
+					// Iterate last-to-first to construct a list of each key's latest occurrence.
+					for (int i = metadataToVisit.size() - 1; i >= 0; i--) {
+						MetadataEntryView entry = metadataToVisit.get(i);
+
+						if (!addedKeys.contains(entry.getKey())) {
+							addedKeys.add(entry.getKey());
+							uniqueMetadata.add(0, entry);
+						}
+					}
+
+					metadataToVisit = uniqueMetadata;
+				}
+
+				for (MetadataEntryView entry : metadataToVisit) {
+					visitor.visitMetadata(entry.getKey(), entry.getValue());
+				}
+			}
+
+			if (visitor.visitContent()) {
+				boolean supplyFieldDstDescs = visitor.getFlags().contains(MappingFlag.NEEDS_DST_FIELD_DESC);
+				boolean supplyMethodDstDescs = visitor.getFlags().contains(MappingFlag.NEEDS_DST_METHOD_DESC);
+
+				@SuppressWarnings("unchecked")
+				Collection<ClassView> classes = (Collection<ClassView>) getClasses();
+
+				for (ClassView cls : order.sortClasses(classes)) {
+					cls.accept(visitor, order, supplyFieldDstDescs, supplyMethodDstDescs);
+				}
+			}
+		} while (!visitor.visitEnd());
+	}
+
+	@Nullable
+	private String getString(int ref) {
+		if (ref == NULL_STRING) return null;
+
+		int pos = poolBase + ref;
+		byte[] data = new byte[buf.getInt(pos)];
+		buf.get(pos + 4, data);
+
+		return new String(data, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Compare the pooled string with the given UTF-8 encoded key, null strings sort first.
+	 */
+	private int compareString(int ref, @Nullable byte[] key) {
+		if (ref == NULL_STRING) return key == null ? 0 : -1;
+		if (key == null) return 1;
+
+		int pos = poolBase + ref;
+		int len = buf.getInt(pos);
+		int common = Math.min(len, key.length);
+		pos += 4;
+
+		for (int i = 0; i < common; i++) {
+			int cmp = Integer.compare(buf.get(pos + i) & 0xff, key[i] & 0xff);
+			if (cmp != 0) return cmp;
+		}
+
+		return Integer.compare(len, key.length);
+	}
+
+	/**
+	 * Look up a member the same way {@link MemoryMappingTree} does, with the candidates narrowed by binary search.
+	 *
+	 * <p>Members with the same name are indexed in input order, which is the order {@link MemoryMappingTree} scans them in.
+	 *
+	 * @param flags The class' {@link #FLAG_HAS_ANY_DESC} and {@link #FLAG_MISSES_ANY_DESC} flags for the member kind.
+	 */
+	private int findMember(int tablePos, int indexPos, int count, int recordSize, int flags, String srcName, @Nullable String srcDesc) {
+		byte[] nameKey = srcName.getBytes(StandardCharsets.UTF_8);
+		int lo = 0;
+		int hi = count;
+
+		while (lo < hi) { // lower bound of srcName
+			int mid = (lo + hi) >>> 1;
+
+			if (compareString(buf.getInt(tablePos + buf.getInt(indexPos + mid * 4) * recordSize), nameKey) < 0) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+
+		int start = lo;
+		int end = lo;
+
+		while (end < count && compareString(buf.getInt(tablePos + buf.getInt(indexPos + end * 4) * recordSize), nameKey) == 0) {
+			end++;
+		}
+
+		if (start == end) return -1;
+
+		boolean hasAnyDesc = (flags & FLAG_HAS_ANY_DESC) != 0;
+		boolean missesAnyDesc = (flags & FLAG_MISSES_ANY_DESC) != 0;
+		int ret;
+
+		if (srcDesc == null) { // null desc
+			if (missesAnyDesc && (ret = findDesc(tablePos, indexPos, start, end, recordSize, null)) >= 0) { // [no desc] -> [no desc]
+				return ret;
+			}
+
+			if (hasAnyDesc) { // name match [no desc] -> [full desc/partial desc]
+				return tablePos + buf.getInt(indexPos + start * 4) * recordSize;
+			}
+		} else if (srcDesc.endsWith(")")) { // parameter-only desc
+			if (missesAnyDesc) { // [partial desc] -> [partial desc] or [partial desc] -> [no desc]
+				if ((ret = findDesc(tablePos, indexPos, start, end, recordSize, srcDesc)) >= 0) return ret;
+				if ((ret = findDesc(tablePos, indexPos, start, end, recordSize, null)) >= 0) return ret;
+			}
+
+			if (hasAnyDesc) { // [partial desc] -> [full desc]
+				for (int i = start; i < end; i++) {
+					int pos = tablePos + buf.getInt(indexPos + i * 4) * recordSize;
+					String desc = getString(buf.getInt(pos + 4));
+
+					if (desc != null && desc.startsWith(srcDesc)) return pos;
+				}
+			}
+		} else { // regular desc
+			if (hasAnyDesc && (ret = findDesc(tablePos, indexPos, start, end, recordSize, srcDesc)) >= 0) { // [full desc] -> [full desc]
+				return ret;
+			}
+
+			if (missesAnyDesc) { // [full desc] -> [no desc] or [full desc] -> [partial desc]
+				if ((ret = findDesc(tablePos, indexPos, start, end, recordSize, null)) >= 0) return ret;
+
+				if (srcDesc.indexOf(')') >= 0) {
+					for (int i = start; i < end; i++) {
+						int pos = tablePos + buf.getInt(indexPos + i * 4) * recordSize;
+						String desc = getString(buf.getInt(pos + 4));
+
+						if (desc != null && srcDesc.startsWith(desc)) return pos;
+					}
+				}
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * @return The position of the first record in the index range with exactly the given descriptor, or -1.
+	 */
+	private int findDesc(int tablePos, int indexPos, int start, int end, int recordSize, @Nullable String srcDesc) {
+		byte[] descKey = srcDesc != null ? srcDesc.getBytes(StandardCharsets.UTF_8) : null;
+
+		for (int i = start; i < end; i++) {
+			int pos = tablePos + buf.getInt(indexPos + i * 4) * recordSize;
+			int descRef = buf.getInt(pos + 4);
+
+			if (descKey == null ? descRef == NULL_STRING : descRef != NULL_STRING && compareString(descRef, descKey) == 0) {
+				return pos;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Look up a member by destination name the same way {@link ClassMappingView#getField(String, String, int)} and
+	 * {@link ClassMappingView#getMethod(String, String, int)} do, with the candidates narrowed by binary search.
+	 *
+	 * @param indexPos The position of the member count followed by the record indices sorted by destination name, the ones
+	 * with the same name in input order.
+	 */
+	private int findMemberByDst(int tablePos, int indexPos, int recordSize, int namespace, String name, @Nullable String desc, boolean isMethod) {
+		byte[] nameKey = name.getBytes(StandardCharsets.UTF_8);
+		int nameOff = (2 + namespace) * 4;
+		int count = buf.getInt(indexPos);
+		indexPos += 4;
+		int lo = 0;
+		int hi = count;
+
+		while (lo < hi) { // lower bound of name
+			int mid = (lo + hi) >>> 1;
+
+			if (compareString(buf.getInt(tablePos + buf.getInt(indexPos + mid * 4) * recordSize + nameOff), nameKey) < 0) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+
+		for (int i = lo; i < count; i++) {
+			int pos = tablePos + buf.getInt(indexPos + i * 4) * recordSize;
+			if (compareString(buf.getInt(pos + nameOff), nameKey) != 0) break;
+			if (desc == null) return pos;
+
+			String srcDesc = getString(buf.getInt(pos + 4));
+			String mDesc;
+
+			if (srcDesc == null
+					|| desc.equals(mDesc = mapDesc(srcDesc, namespace))
+					|| isMethod && desc.endsWith(")") && mDesc.startsWith(desc)) {
+				return pos;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Write the binary representation of the given tree, which can then be loaded with {@link #open(Path)}.
+	 */
+	public static void write(MappingTreeView tree, OutputStream out) throws IOException {
+		new Writer(tree).write(out);
+	}
+
+	private final class MetadataView implements MetadataEntryView {
+		MetadataView(int pos) {
+			this.pos = pos;
+		}
+
+		@Override
+		public String getKey() {
+			return getString(buf.getInt(pos));
+		}
+
+		@Override
+		public String getValue() {
+			return getString(buf.getInt(pos + 4));
+		}
+
+		private final int pos;
+	}
+
+	private abstract class ElementView implements ElementMappingView {
+		ElementView(int pos, int srcNameSlot, int dstNameSlot) {
+			this.pos = pos;
+			this.srcNameSlot = srcNameSlot;
+			this.dstNameSlot = dstNameSlot;
+		}
+
+		abstract MappedElementKind getKind();
+
+		/**
+		 * @return The slot after the destination names, holding the comment.
+		 */
+		final int tailSlot() {
+			return dstNameSlot + dstCount;
+		}
+
+		final int getInt(int slot) {
+			return buf.getInt(pos + slot * 4);
+		}
+
+		@Override
+		public MappingTreeView getTree() {
+			return MappedMappingTree.this;
+		}
+
+		@Override
+		public String getSrcName() {
+			return getString(getInt(srcNameSlot));
+		}
+
+		@Override
+		public String getDstName(int namespace) {
+			Objects.checkIndex(namespace, dstCount);
+
+			return getString(getInt(dstNameSlot + namespace));
+		}
+
+		@Override
+		public String getComment() {
+			return getString(getInt(tailSlot()));
+		}
+
+		protected final boolean acceptElement(MappingVisitor visitor, @Nullable String[] dstDescs) throws IOException {
+			MappedElementKind kind = getKind();
+
+			for (int i = 0; i < dstCount; i++) {
+				String dstName = getDstName(i);
+
+				if (dstName != null) visitor.visitDstName(kind, i, dstName);
+			}
+
+			if (dstDescs != null) {
+				for (int i = 0; i < dstDescs.length; i++) {
+					String dstDesc = dstDescs[i];
+
+					if (dstDesc != null) visitor.visitDstDesc(kind, i, dstDesc);
+				}
+			}
+
+			if (!visitor.visitElementContent(kind)) {
+				return false;
+			}
+
+			String comment = getComment();
+			if (comment != null) visitor.visitComment(kind, comment);
+
+			return true;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj != null && obj.getClass() == getClass() && ((ElementView) obj).pos == pos && ((ElementView) obj).getTree() == getTree();
+		}
+
+		@Override
+		public int hashCode() {
+			return pos;
+		}
+
+		@Override
+		public String toString() {
+			return getSrcName();
+		}
+
+		protected final int pos;
+		private final int srcNameSlot;
+		private final int dstNameSlot;
+	}
+
+	private final class ClassView extends ElementView implements ClassMappingView {
+		ClassView(int pos) {
+			super(pos, 0, 1);
+		}
+
+		@Override
+		MappedElementKind getKind() {
+			return MappedElementKind.CLASS;
+		}
+
+		@Override
+		public Collection<? extends FieldMappingView> getFields() {
+			int tail = tailSlot();
+			int count = getInt(tail + 1);
+			int tablePos = bodyBase + getInt(tail + 2);
+
+			return new AbstractList<FieldView>() {
+				@Override
+				public FieldView get(int index) {
+					Objects.checkIndex(index, count);
+
+					return new FieldView(ClassView.this, tablePos + index * fieldSize);
+				}
+
+				@Override
+				public int size() {
+					return count;
+				}
+			};
+		}
+
+		@Override
+		@Nullable
+		public FieldMappingView getField(String srcName, @Nullable String srcDesc) {
+			int tail = tailSlot();
+			int ret = findMember(bodyBase + getInt(tail + 2), bodyBase + getInt(tail + 3), getInt(tail + 1), fieldSize, getInt(tail + 7 + 2 * dstCount), srcName, srcDesc);
+
+			return ret >= 0 ? new FieldView(this, ret) : null;
+		}
+
+		@Override
+		@Nullable
+		public FieldMappingView getField(String name, @Nullable String desc, int namespace) {
+			if (namespace < 0) return getField(name, desc);
+			if (namespace >= dstCount) return null;
+
+			int tail = tailSlot();
+			int ret = findMemberByDst(bodyBase + getInt(tail + 2), bodyBase + getInt(tail + 7 + namespace), fieldSize, namespace, name, desc, false);
+
+			return ret >= 0 ? new FieldView(this, ret) : null;
+		}
+
+		@Override
+		public Collection<? extends MethodMappingView> getMethods() {
+			int tail = tailSlot();
+			int count = getInt(tail + 4);
+			int tablePos = bodyBase + getInt(tail + 5);
+
+			return new AbstractList<MethodView>() {
+				@Override
+				public MethodView get(int index) {
+					Objects.checkIndex(index, count);
+
+					return new MethodView(ClassView.this, tablePos + index * methodSize);
+				}
+
+				@Override
+				public int size() {
+					return count;
+				}
+			};
+		}
+
+		@Override
+		@Nullable
+		public MethodMappingView getMethod(String srcName, @Nullable String srcDesc) {
+			int tail = tailSlot();
+			int ret = findMember(bodyBase + getInt(tail + 5), bodyBase + getInt(tail + 6), getInt(tail + 4), methodSize, getInt(tail + 7 + 2 * dstCount) >>> 2, srcName, srcDesc);
+
+			return ret >= 0 ? new MethodView(this, ret) : null;
+		}
+
+		@Override
+		@Nullable
+		public MethodMappingView getMethod(String name, @Nullable String desc, int namespace) {
+			if (namespace < 0) return getMethod(name, desc);
+			if (namespace >= dstCount) return null;
+
+			int tail = tailSlot();
+			int ret = findMemberByDst(bodyBase + getInt(tail + 5), bodyBase + getInt(tail + 7 + dstCount + namespace), methodSize, namespace, name, desc, true);
+
+			return ret >= 0 ? new MethodView(this, ret) : null;
+		}
+
+		@SuppressWarnings("unchecked")
+		void accept(MappingVisitor visitor, VisitOrder order, boolean supplyFieldDstDescs, boolean supplyMethodDstDescs) throws IOException {
+			if (visitor.visitClass(getSrcName()) && acceptElement(visitor, null)) {
+				Collection<FieldView> fields = (Collection<FieldView>) getFields();
+				Collection<MethodView> methods = (Collection<MethodView>) getMethods();
+				boolean methodsFirst = order.isMethodsFirst() && !fields.isEmpty() && !methods.isEmpty();
+
+				if (!methodsFirst) {
+					for (FieldView field : order.sortFields(fields)) {
+						field.accept(visitor, supplyFieldDstDescs);
+					}
+				}
+
+				for (MethodView method : order.sortMethods(methods)) {
+					method.accept(visitor, order, supplyMethodDstDescs);
+				}
+
+				if (methodsFirst) {
+					for (FieldView field : order.sortFields(fields)) {
+						field.accept(visitor, supplyFieldDstDescs);
+					}
+				}
+			}
+		}
+	}
+
+	private abstract class MemberView extends ElementView implements MemberMappingView {
+		MemberView(ClassView owner, int pos) {
+			super(pos, 0, 2);
+
+			this.owner = owner;
+		}
+
+		@Override
+		public ClassMappingView getOwner() {
+			return owner;
+		}
+
+		@Override
+		@Nullable
+		public String getSrcDesc() {
+			return getString(getInt(1));
+		}
+
+		protected final boolean acceptMember(MappingVisitor visitor, boolean supplyDstDescs) throws IOException {
+			String srcDesc;
+			String[] dstDescs;
+
+			if (!supplyDstDescs || (srcDesc = getSrcDesc()) == null) {
+				dstDescs = null;
+			} else {
+				dstDescs = new String[dstCount];
+
+				for (int i = 0; i < dstDescs.length; i++) {
+					dstDescs[i] = mapDesc(srcDesc, i);
+				}
+			}
+
+			return acceptElement(visitor, dstDescs);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s;;%s", getSrcName(), getSrcDesc());
+		}
+
+		private final ClassView owner;
+	}
+
+	private final class FieldView extends MemberView implements FieldMappingView {
+		FieldView(ClassView owner, int pos) {
+			super(owner, pos);
+		}
+
+		@Override
+		MappedElementKind getKind() {
+			return MappedElementKind.FIELD;
+		}
+
+		void accept(MappingVisitor visitor, boolean supplyDstDescs) throws IOException {
+			if (visitor.visitField(getSrcName(), getSrcDesc())) {
+				acceptMember(visitor, supplyDstDescs);
+			}
+		}
+	}
+
+	private final class MethodView extends MemberView implements MethodMappingView {
+		MethodView(ClassView owner, int pos) {
+			super(owner, pos);
+		}
+
+		@Override
+		MappedElementKind getKind() {
+			return MappedElementKind.METHOD;
+		}
+
+		@Override
+		public List<? extends MethodArgMappingView> getArgs() {
+			int tail = tailSlot();
+			int count = getInt(tail + 1);
+			int tablePos = bodyBase + getInt(tail + 2);
+
+			return new AbstractList<ArgView>() {
+				@Override
+				public ArgView get(int index) {
+					Objects.checkIndex(index, count);
+
+					return new ArgView(MethodView.this, tablePos + index * argSize);
+				}
+
+				@Override
+				public int size() {
+					return count;
+				}
+			};
+		}
+
+		@Override
+		@Nullable
+		public MethodArgMappingView getArg(int argPosition, int lvIndex, @Nullable String srcName) {
+			List<? extends MethodArgMappingView> args = getArgs();
+
+			if (argPosition >= 0 || lvIndex >= 0) {
+				for (MethodArgMappingView entry : args) {
+					if (argPosition >= 0 && entry.getArgPosition() == argPosition
+							|| lvIndex >= 0 && entry.getLvIndex() == lvIndex) {
+						if (srcName != null && entry.getSrcName() != null && !srcName.equals(entry.getSrcName())) continue; // both srcNames are present but not equal
+						return entry;
+					}
+				}
+			}
+
+			if (srcName != null) {
+				for (MethodArgMappingView entry : args) {
+					if (srcName.equals(entry.getSrcName())
+							&& (argPosition < 0 || entry.getArgPosition() < 0)
+							&& (lvIndex < 0 || entry.getLvIndex() < 0)) {
+						return entry;
+					}
+				}
+			}
+
+			return null;
+		}
+
+		@Override
+		public List<? extends MethodVarMappingView> getVars() {
+			int tail = tailSlot();
+			int count = getInt(tail + 3);
+			int tablePos = bodyBase + getInt(tail + 4);
+
+			return new AbstractList<VarView>() {
+				@Override
+				public VarView get(int index) {
+					Objects.checkIndex(index, count);
+
+					return new VarView(MethodView.this, tablePos + index * varSize);
+				}
+
+				@Override
+				public int size() {
+					return count;
+				}
+			};
+		}
+
+		@Override
+		@Nullable
+		public MethodVarMappingView getVar(int lvtRowIndex, int lvIndex, int startOpIdx, int endOpIdx, @Nullable String srcName) {
+			List<? extends MethodVarMappingView> vars = getVars();
+
+			if (lvtRowIndex >= 0) {
+				boolean hasMissing = false;
+
+				for (MethodVarMappingView entry : vars) {
+					if (entry.getLvtRowIndex() == lvtRowIndex) {
+						return entry;
+					} else if (entry.getLvtRowIndex() < 0) {
+						hasMissing = true;
+					}
+				}
+
+				if (!hasMissing) return null;
+			}
+
+			if (lvIndex >= 0) {
+				boolean hasMissing = false;
+				MethodVarMappingView bestMatch = null;
+
+				for (MethodVarMappingView entry : vars) {
+					// skip otherwise mismatched candidates
+					if (lvtRowIndex >= 0 && entry.getLvtRowIndex() >= 0 && lvtRowIndex != entry.getLvtRowIndex() // different lvtRowIndex
+							|| srcName != null && entry.getSrcName() != null && !srcName.equals(entry.getSrcName())) { // different srcName
+						continue;
+					}
+
+					if (entry.getLvIndex() != lvIndex) {
+						if (entry.getLvIndex() < 0) hasMissing = true;
+						continue;
+					}
+
+					if (startOpIdx >= 0 && endOpIdx >= 0 && entry.getStartOpIdx() >= 0 && entry.getEndOpIdx() >= 0) { // full ranges on both
+						if (startOpIdx >= entry.getEndOpIdx() || endOpIdx <= entry.getStartOpIdx()) { // non-overlapping op idx ranges
+							continue;
+						} else { // full match
+							return entry;
+						}
+					}
+
+					if (endOpIdx >= 0 && entry.getStartOpIdx() >= 0 && endOpIdx <= entry.getStartOpIdx()
+							|| entry.getEndOpIdx() >= 0 && startOpIdx >= 0 && entry.getEndOpIdx() <= startOpIdx) {
+						// incompatible full range on one side
+						continue;
+					}
+
+					if (startOpIdx < 0 || startOpIdx == entry.getStartOpIdx()) {
+						return entry;
+					}
+
+					if (bestMatch == null
+							|| entry.getStartOpIdx() >= 0 && Math.abs(entry.getStartOpIdx() - startOpIdx) < Math.abs(bestMatch.getStartOpIdx() - startOpIdx)) {
+						bestMatch = entry;
+					}
+				}
+
+				if (!hasMissing || bestMatch != null) return bestMatch;
+			}
+
+			if (srcName != null) {
+				for (MethodVarMappingView entry : vars) {
+					if (srcName.equals(entry.getSrcName())
+							&& (lvtRowIndex < 0 || entry.getLvtRowIndex() < 0)
+							&& (lvIndex < 0 || entry.getLvIndex() < 0)) {
+						return entry;
+					}
+				}
+			}
+
+			return null;
+		}
+
+		@SuppressWarnings("unchecked")
+		void accept(MappingVisitor visitor, VisitOrder order, boolean supplyDstDescs) throws IOException {
+			if (visitor.visitMethod(getSrcName(), getSrcDesc()) && acceptMember(visitor, supplyDstDescs)) {
+				Collection<ArgView> args = (Collection<ArgView>) getArgs();
+				Collection<VarView> vars = (Collection<VarView>) getVars();
+				boolean varsFirst = order.isMethodVarsFirst() && !args.isEmpty() && !vars.isEmpty();
+
+				if (!varsFirst) {
+					for (ArgView arg : order.sortMethodArgs(args)) {
+						arg.accept(visitor);
+					}
+				}
+
+				for (VarView var : order.sortMethodVars(vars)) {
+					var.accept(visitor);
+				}
+
+				if (varsFirst) {
+					for (ArgView arg : order.sortMethodArgs(args)) {
+						arg.accept(visitor);
+					}
+				}
+			}
+		}
+	}
+
+	private final class ArgView extends ElementView implements MethodArgMappingView {
+		ArgView(MethodView method, int pos) {
+			super(pos, 2, 3);
+
+			this.method = method;
+		}
+
+		@Override
+		MappedElementKind getKind() {
+			return MappedElementKind.METHOD_ARG;
+		}
+
+		@Override
+		public MethodMappingView getMethod() {
+			return method;
+		}
+
+		@Override
+		public int getArgPosition() {
+			return getInt(0);
+		}
+
+		@Override
+		public int getLvIndex() {
+			return getInt(1);
+		}
+
+		void accept(MappingVisitor visitor) throws IOException {
+			if (visitor.visitMethodArg(getArgPosition(), getLvIndex(), getSrcName())) {
+				acceptElement(visitor, null);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d/%d:%s", getArgPosition(), getLvIndex(), getSrcName());
+		}
+
+		private final MethodView method;
+	}
+
+	private final class VarView extends ElementView implements MethodVarMappingView {
+		VarView(MethodView method, int pos) {
+			super(pos, 4, 5);
+
+			this.method = method;
+		}
+
+		@Override
+		MappedElementKind getKind() {
+			return MappedElementKind.METHOD_VAR;
+		}
+
+		@Override
+		public MethodMappingView getMethod() {
+			return method;
+		}
+
+		@Override
+		public int getLvtRowIndex() {
+			return getInt(0);
+		}
+
+		@Override
+		public int getLvIndex() {
+			return getInt(1);
+		}
+
+		@Override
+		public int getStartOpIdx() {
+			return getInt(2);
+		}
+
+		@Override
+		public int getEndOpIdx() {
+			return getInt(3);
+		}
+
+		void accept(MappingVisitor visitor) throws IOException {
+			if (visitor.visitMethodVar(getLvtRowIndex(), getLvIndex(), getStartOpIdx(), getEndOpIdx(), getSrcName())) {
+				acceptElement(visitor, null);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d/%d@%d-%d:%s", getLvtRowIndex(), getLvIndex(), getStartOpIdx(), getEndOpIdx(), getSrcName());
+		}
+
+		private final MethodView method;
+	}
+
+	/**
+	 * Lays out the body bottom-up so every record only references already written data, the string pool is
+	 * assembled alongside and appended after the body.
+	 */
+	private static final class Writer {
+		Writer(MappingTreeView tree) {
+			this.tree = tree;
+			this.dstCount = tree.getDstNamespaces().size();
+		}
+
+		void write(OutputStream out) throws IOException {
+			List<? extends MetadataEntryView> metadata = tree.getMetadata();
+			int metadataOff = body.size();
+
+			for (MetadataEntryView entry : metadata) {
+				body.writeInt(string(entry.getKey()));
+				body.writeInt(string(entry.getValue()));
+			}
+
+			List<ClassMappingView> classes = new ArrayList<>(tree.getClasses());
+			int[][] memberTables = new int[classes.size()][];
+
+			for (int i = 0; i < classes.size(); i++) {
+				memberTables[i] = writeMembers(classes.get(i));
+			}
+
+			int classesOff = body.size();
+			byte[][] srcNames = new byte[classes.size()][];
+
+			for (int i = 0; i < classes.size(); i++) {
+				ClassMappingView cls = classes.get(i);
+				srcNames[i] = encode(cls.getSrcName());
+				writeElement(cls, -1);
+
+				for (int value : memberTables[i]) {
+					body.writeInt(value);
+				}
+			}
+
+			int classIndexOff = writeIndex(srcNames);
+			int[] dstIndexOffs = new int[dstCount];
+
+			for (int ns = 0; ns < dstCount; ns++) {
+				byte[][] dstNames = new byte[classes.size()][];
+
+				for (int i = 0; i < classes.size(); i++) {
+					dstNames[i] = encode(classes.get(i).getDstName(ns));
+				}
+
+				dstIndexOffs[ns] = body.size();
+				writeDstIndex(dstNames);
+			}
+
+			DataOutputStream header = new DataOutputStream(out);
+			header.writeInt(MAGIC);
+			header.writeInt(VERSION);
+			header.writeInt(dstCount);
+			header.writeInt(string(tree.getSrcNamespace()));
+
+			for (String ns : tree.getDstNamespaces()) {
+				header.writeInt(string(ns));
+			}
+
+			header.writeInt(metadata.size());
+			header.writeInt(metadataOff);
+			header.writeInt(classes.size());
+			header.writeInt(classesOff);
+			header.writeInt(classIndexOff);
+
+			for (int off : dstIndexOffs) {
+				header.writeInt(off);
+			}
+
+			header.writeInt(body.size());
+			header.writeInt(pool.size());
+			bodyBytes.writeTo(header);
+			poolBytes.writeTo(header);
+			header.flush();
+		}
+
+		/**
+		 * @return The class record's member table slots: field count, offset and index offset followed by the same for methods,
+		 * then the field destination name index offsets and the method ones, followed by the descriptor flags of both.
+		 */
+		private int[] writeMembers(ClassMappingView cls) throws IOException {
+			List<FieldMappingView> fields = new ArrayList<>(cls.getFields());
+			List<MethodMappingView> methods = new ArrayList<>(cls.getMethods());
+			int[] argTables = new int[methods.size() * 2];
+
+			for (int i = 0; i < methods.size(); i++) {
+				MethodMappingView method = methods.get(i);
+				argTables[i * 2] = body.size();
+
+				for (MethodArgMappingView arg : method.getArgs()) {
+					body.writeInt(arg.getArgPosition());
+					body.writeInt(arg.getLvIndex());
+					writeElement(arg, -1);
+				}
+
+				argTables[i * 2 + 1] = body.size();
+
+				for (MethodVarMappingView var : method.getVars()) {
+					body.writeInt(var.getLvtRowIndex());
+					body.writeInt(var.getLvIndex());
+					body.writeInt(var.getStartOpIdx());
+					body.writeInt(var.getEndOpIdx());
+					writeElement(var, -1);
+				}
+			}
+
+			int fieldsOff = body.size();
+			byte[][] fieldNames = new byte[fields.size()][];
+
+			for (int i = 0; i < fields.size(); i++) {
+				FieldMappingView field = fields.get(i);
+				fieldNames[i] = encode(field.getSrcName());
+				writeElement(field, string(field.getSrcDesc()));
+			}
+
+			int fieldIndexOff = writeIndex(fieldNames);
+			int methodsOff = body.size();
+			byte[][] methodNames = new byte[methods.size()][];
+
+			for (int i = 0; i < methods.size(); i++) {
+				MethodMappingView method = methods.get(i);
+				methodNames[i] = encode(method.getSrcName());
+				writeElement(method, string(method.getSrcDesc()));
+				body.writeInt(method.getArgs().size());
+				body.writeInt(argTables[i * 2]);
+				body.writeInt(method.getVars().size());
+				body.writeInt(argTables[i * 2 + 1]);
+			}
+
+			int methodIndexOff = writeIndex(methodNames);
+			int[] ret = new int[7 + 2 * dstCount];
+			ret[0] = fields.size();
+			ret[1] = fieldsOff;
+			ret[2] = fieldIndexOff;
+			ret[3] = methods.size();
+			ret[4] = methodsOff;
+			ret[5] = methodIndexOff;
+
+			for (int ns = 0; ns < dstCount; ns++) {
+				ret[6 + ns] = writeDstIndex(getDstNames(fields, ns));
+				ret[6 + dstCount + ns] = writeDstIndex(getDstNames(methods, ns));
+			}
+
+			ret[6 + 2 * dstCount] = getDescFlags(fields) | getDescFlags(methods) << 2;
+
+			return ret;
+		}
+
+		/**
+		 * Determine which descriptor kinds the members have, {@link MemoryMappingTree} skips the lookup steps for absent ones.
+		 */
+		private static int getDescFlags(List<? extends MemberMappingView> members) {
+			int ret = 0;
+
+			for (MemberMappingView member : members) {
+				String desc = member.getSrcDesc();
+				ret |= desc == null || desc.endsWith(")") ? FLAG_MISSES_ANY_DESC : FLAG_HAS_ANY_DESC;
+			}
+
+			return ret;
+		}
+
+		private static byte[][] getDstNames(List<? extends ElementMappingView> elements, int namespace) {
+			byte[][] ret = new byte[elements.size()][];
+
+			for (int i = 0; i < ret.length; i++) {
+				ret[i] = encode(elements.get(i).getDstName(namespace));
+			}
+
+			return ret;
+		}
+
+		/**
+		 * Write the element's source name, the given descriptor if it's a member, destination names and comment.
+		 */
+		private void writeElement(ElementMappingView element, int descRef) throws IOException {
+			body.writeInt(string(element.getSrcName()));
+			if (element instanceof MemberMappingView) body.writeInt(descRef);
+
+			for (int i = 0; i < dstCount; i++) {
+				body.writeInt(string(element.getDstName(i)));
+			}
+
+			body.writeInt(string(element.getComment()));
+		}
+
+		/**
+		 * Write the record indices sorted by name, omitting records without a name. The sort is stable, so records with
+		 * the same name stay in input order.
+		 *
+		 * @return The index offset.
+		 */
+		private int writeIndex(byte[][] names) throws IOException {
+			List<Integer> indices = new ArrayList<>(names.length);
+
+			for (int i = 0; i < names.length; i++) {
+				if (names[i] != null) indices.add(i);
+			}
+
+			indices.sort((a, b) -> compare(names[a], names[b]));
+
+			int ret = body.size();
+
+			for (int index : indices) {
+				body.writeInt(index);
+			}
+
+			return ret;
+		}
+
+		/**
+		 * Write the number of records with a destination name, followed by their index sorted by that name.
+		 *
+		 * @return The offset of the count.
+		 */
+		private int writeDstIndex(byte[][] names) throws IOException {
+			int ret = body.size();
+			int count = 0;
+
+			for (byte[] name : names) {
+				if (name != null) count++;
+			}
+
+			body.writeInt(count);
+			writeIndex(names);
+
+			return ret;
+		}
+
+		private int string(@Nullable String str) throws IOException {
+			if (str == null) return NULL_STRING;
+
+			Integer ret = strings.get(str);
+
+			if (ret == null) {
+				byte[] data = str.getBytes(StandardCharsets.UTF_8);
+				ret = pool.size();
+				pool.writeInt(data.length);
+				pool.write(data);
+				strings.put(str, ret);
+			}
+
+			return ret;
+		}
+
+		@Nullable
+		private static byte[] encode(@Nullable String str) {
+			return str != null ? str.getBytes(StandardCharsets.UTF_8) : null;
+		}
+
+		/**
+		 * Unsigned byte-wise comparison matching {@link MappedMappingTree#compareString}, null sorts first.
+		 */
+		private static int compare(@Nullable byte[] a, @Nullable byte[] b) {
+			if (a == null) return b == null ? 0 : -1;
+			if (b == null) return 1;
+
+			return Arrays.compareUnsigned(a, b);
+		}
+
+		private final MappingTreeView tree;
+		private final int dstCount;
+		private final ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+		private final DataOutputStream body = new DataOutputStream(bodyBytes);
+		private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+		private final DataOutputStream pool = new DataOutputStream(poolBytes);
+		private final Map<String, Integer> strings = new HashMap<>();
+	}
+
+	private final ByteBuffer buf;
+	private final int dstCount;
+	private final int bodyBase;
+	private final int poolBase;
+	private final int metadataCount;
+	private final int metadataPos;
+	private final int classCount;
+	private final int classesPos;
+	private final int classIndexPos;
+	private final int[] dstIndexPos;
+	private final int classSize;
+	private final int fieldSize;
+	private final int methodSize;
+	private final int argSize;
+	private final int varSize;
+	private final String srcNamespace;
+	private final List<String> dstNamespaces;
+}
@@ -59,6 +59,7 @@ public final class MemoryMappingTree implements VisitableMappingTree {
 	public MemoryMappingTree(MappingTree src) {
 		if (src instanceof MemoryMappingTree) {
 			indexByDstNames = ((MemoryMappingTree) src).indexByDstNames;
+			indexMembers = ((MemoryMappingTree) src).indexMembers;
 		}
 
 		setSrcNamespace(src.getSrcNamespace());
@@ -91,6 +92,43 @@ public final class MemoryMappingTree implements VisitableMappingTree {
 		this.indexByDstNames = indexByDstNames;
 	}
 
+	/**
+	 * Whether to look up fields and methods through per-namespace tables keyed by interned name and descriptor ids.
+	 *
+	 * <p>The tables are built for the whole tree on the first member lookup and dropped by any modification, so this is
+	 * meant for trees that are queried a lot after being fully populated. Lookups through the tables don't allocate and
+	 * lookups by destination names or descriptors no longer scan all members. Lookups during a visitation pass always
+	 * use the regular maps.
+	 */
+	public void setIndexMembers(boolean indexMembers) {
+		assertNotInVisitPass();
+		this.indexMembers = indexMembers;
+		if (!indexMembers) memberIndex = null;
+	}
+
+	@Nullable
+	private MemberIndex getMemberIndex() {
+		if (!indexMembers || inVisitPass) return null;
+
+		MemberIndex ret = memberIndex;
+		if (ret != null) return ret;
+
+		synchronized (this) {
+			ret = memberIndex;
+
+			if (ret == null) {
+				ret = new MemberIndex(this);
+				memberIndex = ret;
+			}
+		}
+
+		return ret;
+	}
+
+	void invalidateMemberIndex() {
+		if (memberIndex != null) memberIndex = null;
+	}
+
 	@SuppressWarnings("unchecked")
 	private void initClassesByDstNames() {
 		classesByDstNames = new Map[dstNamespaces.size()];
@@ -309,6 +347,7 @@ public final class MemoryMappingTree implements VisitableMappingTree {
 		assertNotInVisitPass();
 		ClassEntry entry = cls instanceof ClassEntry && cls.getTree() == this ? (ClassEntry) cls : new ClassEntry(this, cls, getSrcNsEquivalent(cls));
 		ClassEntry ret = classesBySrcName.putIfAbsent(cls.getSrcName(), entry);
+		invalidateMemberIndex();
 
 		if (ret != null) {
 			ret.copyFrom(entry, true);
@@ -337,6 +376,7 @@ public final class MemoryMappingTree implements VisitableMappingTree {
 	public ClassMapping removeClass(String srcName) {
 		assertNotInVisitPass();
 		ClassEntry ret = classesBySrcName.remove(srcName);
+		invalidateMemberIndex();
 
 		if (ret != null && indexByDstNames) {
 			for (int i = 0; i < ret.dstNames.length; i++) {
@@ -492,6 +532,7 @@ public final class MemoryMappingTree implements VisitableMappingTree {
 			} else {
 				cls = new ClassEntry(this, srcName);
 				classesBySrcName.put(srcName, cls);
+				invalidateMemberIndex();
 			}
 		}
 
@@ -602,6 +643,7 @@ public final class MemoryMappingTree implements VisitableMappingTree {
 
 		if (existing == null) {
 			classesBySrcName.put(srcName, cls);
+			invalidateMemberIndex();
 		} else { // copy remaining data
 			existing.copyFrom(cls, true);
 		}
@@ -893,6 +935,7 @@ public final class MemoryMappingTree implements VisitableMappingTree {
 			}
 
 			srcName = name;
+			tree.invalidateMemberIndex();
 		}
 
 		@Override
@@ -909,10 +952,12 @@ public final class MemoryMappingTree implements VisitableMappingTree {
 
 		void setDstNameInternal(String name, int namespace) {
 			dstNames[namespace] = name;
+			tree.invalidateMemberIndex();
 		}
 
 		void resizeDstNames(int newSize) {
 			dstNames = Arrays.copyOf(dstNames, newSize);
+			tree.invalidateMemberIndex();
 		}
 
 		void updateDstNames(int[] map) {
@@ -927,6 +972,7 @@ public final class MemoryMappingTree implements VisitableMappingTree {
 			}
 
 			dstNames = newDstNames;
+			tree.invalidateMemberIndex();
 		}
 
 		@Override
@@ -972,6 +1018,8 @@ public final class MemoryMappingTree implements VisitableMappingTree {
 		}
 
 		protected void copyFrom(T o, boolean replace) {
+			tree.invalidateMemberIndex();
+
 			for (int i = 0; i < dstNames.length; i++) {
 				if (o.dstNames[i] != null && (replace || dstNames[i] == null)) {
 					dstNames[i] = o.dstNames[i];
@@ -1047,12 +1095,24 @@ public final class MemoryMappingTree implements VisitableMappingTree {
 		@Override
 		@Nullable
 		public FieldEntry getField(String srcName, @Nullable String srcDesc) {
+			ClassIndex index = getIndex();
+			if (index != null) {
+				return (FieldEntry) index.fields[0].getSrc(index.owner.ids, srcName, srcDesc,
+						(flags & FLAG_HAS_ANY_FIELD_DESC) != 0, (flags & FLAG_MISSES_ANY_FIELD_DESC) != 0);
+			}
+
 			return getMember(srcName, srcDesc, fields, flags, FLAG_HAS_ANY_FIELD_DESC, FLAG_MISSES_ANY_FIELD_DESC);
 		}
 
 		@Override
 		@Nullable
 		public FieldEntry getField(String name, @Nullable String desc, int namespace) {
+			ClassIndex index;
+
+			if (namespace >= 0 && namespace < dstNames.length && (index = getIndex()) != null) {
+				return (FieldEntry) index.fields[namespace + 1].getDst(index.owner.ids, name, desc, false);
+			}
+
 			return (FieldEntry) ClassMapping.super.getField(name, desc, namespace);
 		}
 
@@ -1078,8 +1138,9 @@ public final class MemoryMappingTree implements VisitableMappingTree {
 		public FieldEntry removeField(String srcName, @Nullable String srcDesc) {
 			tree.assertNotInVisitPass();
 
-			FieldEntry ret = getField(srcName, srcDesc);
+			FieldEntry ret = getMember(srcName, srcDesc, fields, flags, FLAG_HAS_ANY_FIELD_DESC, FLAG_MISSES_ANY_FIELD_DESC);
 			if (ret != null) fields.remove(ret.getKey());
+			tree.invalidateMemberIndex();
 
 			return ret;
 		}
@@ -1094,15 +1155,37 @@ public final class MemoryMappingTree implements VisitableMappingTree {
 		@Override
 		@Nullable
 		public MethodEntry getMethod(String srcName, @Nullable String srcDesc) {
+			ClassIndex index = getIndex();
+			if (index != null) {
+				return (MethodEntry) index.methods[0].getSrc(index.owner.ids, srcName, srcDesc,
+						(flags & FLAG_HAS_ANY_METHOD_DESC) != 0, (flags & FLAG_MISSES_ANY_METHOD_DESC) != 0);
+			}
+
 			return getMember(srcName, srcDesc, methods, flags, FLAG_HAS_ANY_METHOD_DESC, FLAG_MISSES_ANY_METHOD_DESC);
 		}
 
 		@Override
 		@Nullable
 		public MethodEntry getMethod(String name, @Nullable String desc, int namespace) {
+			ClassIndex index;
+
+			if (namespace >= 0 && namespace < dstNames.length && (index = getIndex()) != null) {
+				return (MethodEntry) index.methods[namespace + 1].getDst(index.owner.ids, name, desc, true);
+			}
+
 			return (MethodEntry) ClassMapping.super.getMethod(name, desc, namespace);
 		}
 
+		@Nullable
+		private ClassIndex getIndex() {
+			MemberIndex treeIndex = tree.getMemberIndex();
+			if (treeIndex == null) return null;
+
+			ClassIndex ret = index;
+
+			return ret != null && ret.owner == treeIndex ? ret : null; // null if the class was removed or the index got rebuilt concurrently
+		}
+
 		@Override
 		public MethodEntry addMethod(MethodMapping method) {
 			tree.assertNotInVisitPass();
@@ -1125,8 +1208,9 @@ public final class MemoryMappingTree implements VisitableMappingTree {
 		public MethodEntry removeMethod(String srcName, @Nullable String srcDesc) {
 			tree.assertNotInVisitPass();
 
-			MethodEntry ret = getMethod(srcName, srcDesc);
+			MethodEntry ret = getMember(srcName, srcDesc, methods, flags, FLAG_HAS_ANY_METHOD_DESC, FLAG_MISSES_ANY_METHOD_DESC);
 			if (ret != null) methods.remove(ret.getKey());
+			tree.invalidateMemberIndex();
 
 			return ret;
 		}
@@ -1191,6 +1275,7 @@ public final class MemoryMappingTree implements VisitableMappingTree {
 		}
 
 		private <T extends MemberEntry<T>> T addMember(T entry, Map<MemberKey, T> map, int flagHasAny, int flagMissesAny) {
+			tree.invalidateMemberIndex();
 			T ret = map.putIfAbsent(entry.getKey(), entry);
 
 			if (ret != null) { // same desc
@@ -1317,6 +1402,8 @@ public final class MemoryMappingTree implements VisitableMappingTree {
 		private Collection<FieldEntry> fieldsView = null;
 		private Collection<MethodEntry> methodsView = null;
 		private byte flags;
+		/** Member tables, written before the owning {@link MemberIndex} gets published. */
+		private ClassIndex index;
 	}
 
 	abstract static class MemberEntry<T extends MemberEntry<T>> extends Entry<T> implements MemberMapping {
@@ -1431,6 +1518,7 @@ public final class MemoryMappingTree implements VisitableMappingTree {
 
 			srcDesc = desc;
 			setKey(newKey);
+			tree.invalidateMemberIndex();
 
 			if (owner.fields != null) {
 				owner.fields.put(newKey, this);
@@ -1496,6 +1584,7 @@ public final class MemoryMappingTree implements VisitableMappingTree {
 
 			srcDesc = desc;
 			setKey(newKey);
+			tree.invalidateMemberIndex();
 
 			if (owner.methods != null) {
 				owner.methods.put(newKey, this);
@@ -2061,6 +2150,291 @@ public final class MemoryMappingTree implements VisitableMappingTree {
 		final String value;
 	}
 
+	/**
+	 * Immutable member lookup tables for the whole tree, see {@link #setIndexMembers(boolean)}.
+	 */
+	static final class MemberIndex {
+		MemberIndex(MemoryMappingTree tree) {
+			int nsCount = tree.dstNamespaces.size() + 1; // slot 0 is the source namespace
+			Collection<ClassEntry> classes = tree.classesBySrcName.values();
+			ids = new StringIds(classes.size() * 8);
+
+			for (ClassEntry cls : classes) {
+				MemberTable[] fields = new MemberTable[nsCount];
+				MemberTable[] methods = new MemberTable[nsCount];
+
+				for (int ns = 0; ns < nsCount; ns++) {
+					fields[ns] = new MemberTable(tree, ids, cls.getFields(), ns - 1);
+					methods[ns] = new MemberTable(tree, ids, cls.getMethods(), ns - 1);
+				}
+
+				cls.index = new ClassIndex(this, fields, methods);
+			}
+		}
+
+		final StringIds ids;
+	}
+
+	static final class ClassIndex {
+		ClassIndex(MemberIndex owner, MemberTable[] fields, MemberTable[] methods) {
+			this.owner = owner;
+			this.fields = fields;
+			this.methods = methods;
+		}
+
+		final MemberIndex owner;
+		final MemberTable[] fields;
+		final MemberTable[] methods;
+	}
+
+	/**
+	 * Open-addressing table assigning sequential ids to strings.
+	 */
+	static final class StringIds {
+		StringIds(int expectedSize) {
+			int capacity = Integer.highestOneBit(Math.max(expectedSize, 8) * 2 - 1) << 1;
+			keys = new String[capacity];
+			ids = new int[capacity];
+			strings = new String[capacity >>> 1];
+		}
+
+		int intern(String str) {
+			int mask = keys.length - 1;
+			int slot = mix(str.hashCode()) & mask;
+			String key;
+
+			while ((key = keys[slot]) != null) {
+				if (key.equals(str)) return ids[slot];
+				slot = (slot + 1) & mask;
+			}
+
+			if (size == strings.length) {
+				grow();
+
+				return intern(str);
+			}
+
+			keys[slot] = str;
+			ids[slot] = size;
+			strings[size] = str;
+
+			return size++;
+		}
+
+		/**
+		 * @return The string's id or -1 if it wasn't interned.
+		 */
+		int get(String str) {
+			int mask = keys.length - 1;
+			int slot = mix(str.hashCode()) & mask;
+			String key;
+
+			while ((key = keys[slot]) != null) {
+				if (key.equals(str)) return ids[slot];
+				slot = (slot + 1) & mask;
+			}
+
+			return -1;
+		}
+
+		String get(int id) {
+			return strings[id];
+		}
+
+		private void grow() {
+			String[] oldStrings = strings;
+			int oldSize = size;
+			keys = new String[keys.length * 2];
+			ids = new int[keys.length];
+			strings = new String[keys.length >>> 1];
+			size = 0;
+
+			for (int i = 0; i < oldSize; i++) {
+				intern(oldStrings[i]);
+			}
+		}
+
+		private String[] keys;
+		private int[] ids;
+		private String[] strings;
+		private int size;
+	}
+
+	/**
+	 * One class' fields or methods by their name and descriptor id in a single namespace.
+	 *
+	 * <p>Members with the same name are stored contiguously in their original order, the name id table points at
+	 * that range.
+	 */
+	static final class MemberTable {
+		MemberTable(MemoryMappingTree tree, StringIds ids, Collection<? extends MemberEntry<?>> members, int namespace) {
+			MemberEntry<?>[] unsorted = members.toArray(new MemberEntry<?>[0]);
+			int[] nameIds = new int[unsorted.length];
+			int[] order = new int[unsorted.length];
+			int size = 0;
+
+			for (int i = 0; i < unsorted.length; i++) {
+				String name = unsorted[i].getName(namespace);
+				if (name == null) continue;
+
+				nameIds[size] = ids.intern(name);
+				order[size++] = i;
+			}
+
+			int capacity = Integer.highestOneBit(Math.max(size, 1) * 2 - 1) << 1;
+			keys = new int[capacity];
+			starts = new int[capacity];
+			ends = new int[capacity];
+			entries = new MemberEntry<?>[size];
+			descIds = new int[size];
+			Arrays.fill(keys, -1);
+
+			// count entries per name, then assign the ranges in order of each name's first occurrence
+			int[] slots = new int[size];
+			int[] counts = new int[capacity];
+
+			for (int i = 0; i < size; i++) {
+				int slot = findSlot(nameIds[i]);
+				keys[slot] = nameIds[i];
+				counts[slot]++;
+				slots[i] = slot;
+			}
+
+			int pos = 0;
+
+			for (int i = 0; i < size; i++) {
+				int slot = slots[i];
+				int count = counts[slot];
+
+				if (count > 0) {
+					starts[slot] = ends[slot] = pos;
+					pos += count;
+					counts[slot] = 0;
+				}
+			}
+
+			for (int i = 0; i < size; i++) {
+				int slot = slots[i];
+				MemberEntry<?> member = unsorted[order[i]];
+				String desc = namespace < 0 ? member.getSrcDesc() : member.getDesc(namespace);
+				int idx = ends[slot]++;
+
+				entries[idx] = member;
+				descIds[idx] = desc != null ? ids.intern(desc) : -1;
+			}
+		}
+
+		private int findSlot(int nameId) {
+			int mask = keys.length - 1;
+			int slot = mix(nameId) & mask;
+
+			while (keys[slot] != -1 && keys[slot] != nameId) {
+				slot = (slot + 1) & mask;
+			}
+
+			return slot;
+		}
+
+		/**
+		 * Resolve a member by its destination name and descriptor like {@link ClassMappingView#getField(String, String, int)}
+		 * and {@link ClassMappingView#getMethod(String, String, int)}.
+		 */
+		@Nullable
+		MemberEntry<?> getDst(StringIds ids, String name, @Nullable String desc, boolean allowPartialDesc) {
+			int nameId = ids.get(name);
+			if (nameId < 0) return null;
+
+			int slot = findSlot(nameId);
+			if (keys[slot] < 0) return null;
+
+			int descId = desc != null ? ids.get(desc) : -1;
+			boolean partial = allowPartialDesc && desc != null && desc.endsWith(")");
+
+			for (int i = starts[slot]; i < ends[slot]; i++) {
+				int entryDescId = descIds[i];
+
+				if (desc == null || entryDescId < 0 || entryDescId == descId
+						|| partial && ids.get(entryDescId).startsWith(desc)) {
+					return entries[i];
+				}
+			}
+
+			return null;
+		}
+
+		/**
+		 * Resolve a member by its source name and descriptor with the same precedence as {@link ClassEntry#getMember}.
+		 *
+		 * @param hasAnyDesc Whether the class' flags record a member of this kind with a full descriptor.
+		 * @param missedAnyDesc Whether the class' flags record a member of this kind without or with a partial descriptor.
+		 */
+		@Nullable
+		MemberEntry<?> getSrc(StringIds ids, String name, @Nullable String desc, boolean hasAnyDesc, boolean missedAnyDesc) {
+			int nameId = ids.get(name);
+			if (nameId < 0) return null;
+
+			int slot = findSlot(nameId);
+			if (keys[slot] < 0) return null;
+
+			int start = starts[slot];
+			int end = ends[slot];
+			int descId = desc != null ? ids.get(desc) : -1;
+			int ret;
+
+			if (desc == null) { // null desc
+				if (missedAnyDesc && (ret = find(start, end, -1)) >= 0) return entries[ret]; // [no desc] -> [no desc]
+				if (hasAnyDesc) return entries[start]; // [no desc] -> [full desc/partial desc]
+			} else if (desc.endsWith(")")) { // parameter-only desc
+				if (missedAnyDesc) { // [partial desc] -> [partial desc] or [partial desc] -> [no desc]
+					if (descId >= 0 && (ret = find(start, end, descId)) >= 0) return entries[ret];
+					if ((ret = find(start, end, -1)) >= 0) return entries[ret];
+				}
+
+				if (hasAnyDesc) { // [partial desc] -> [full desc]
+					for (int i = start; i < end; i++) {
+						if (descIds[i] >= 0 && ids.get(descIds[i]).startsWith(desc)) return entries[i];
+					}
+				}
+			} else { // regular desc
+				if (hasAnyDesc && descId >= 0 && (ret = find(start, end, descId)) >= 0) return entries[ret]; // [full desc] -> [full desc]
+
+				if (missedAnyDesc) { // [full desc] -> [no desc] or [full desc] -> [partial desc]
+					if ((ret = find(start, end, -1)) >= 0) return entries[ret];
+
+					if (desc.indexOf(')') >= 0) {
+						for (int i = start; i < end; i++) {
+							if (descIds[i] >= 0 && desc.startsWith(ids.get(descIds[i]))) return entries[i];
+						}
+					}
+				}
+			}
+
+			return null;
+		}
+
+		/**
+		 * @param descId The descriptor id, -1 for entries without descriptor.
+		 * @return The index of the first entry in the range with the descriptor, or -1 if there is none.
+		 */
+		private int find(int start, int end, int descId) {
+			for (int i = start; i < end; i++) {
+				if (descIds[i] == descId) return i;
+			}
+
+			return -1;
+		}
+
+		private final int[] keys;
+		private final int[] starts;
+		private final int[] ends;
+		private final MemberEntry<?>[] entries;
+		private final int[] descIds;
+	}
+
+	private static int mix(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
 	static final class GlobalMemberKey {
 		GlobalMemberKey(ClassEntry owner, String name, @Nullable String desc, boolean isField) {
 			this.owner = owner;
@@ -2100,6 +2474,8 @@ public final class MemoryMappingTree implements VisitableMappingTree {
 
 	private boolean inVisitPass;
 	private boolean indexByDstNames;
+	private boolean indexMembers;
+	private volatile MemberIndex memberIndex;
 	private String srcNamespace;
 	private List<String> dstNamespaces = Collections.emptyList();
 	private final List<MetadataEntry> metadata = new ArrayList<>();
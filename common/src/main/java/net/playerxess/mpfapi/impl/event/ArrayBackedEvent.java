@@ -18,40 +18,60 @@ package net.playerxess.mpfapi.impl.event;
 
 import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+import org.jetbrains.annotations.Nullable;
 
 import net.minecraft.util.Identifier;
 
 import net.playerxess.mpfapi.api.event.Event;
+import net.playerxess.mpfapi.api.event.Subscription;
 import net.playerxess.mpfapi.impl.toposort.NodeSorting;
 
+/**
+ * An event backed by an immutable {@link State} snapshot of its phases and listeners.
+ *
+ * <p>Every modification builds a new snapshot from the current one and installs it with a compare-and-set,
+ * so registration never takes a lock. Adding a listener to an existing phase only copies the listener arrays;
+ * the phases are only sorted again when a phase or a phase ordering is added.
+ * Removing a listener compacts the arrays of its phase and rebuilds the invoker.
+ * The invoker is only built for the snapshot that got installed, not for attempts that lost the race.
+ */
 class ArrayBackedEvent<T> extends Event<T> {
+	private final Class<? super T> type;
 	private final Function<T[], T> invokerFactory;
-	private final Object lock = new Object();
-	private T[] handlers;
 	/**
-	 * Registered event phases.
+	 * Profiling data, or {@code null} if {@link EventProfiler} is disabled.
 	 */
-	private final Map<Identifier, EventPhaseData<T>> phases = new LinkedHashMap<>();
+	@Nullable
+	private final EventProfiler.EventProfile<T> profile;
+	private final AtomicReference<State<T>> state;
 	/**
-	 * Phases sorted in the correct dependency order.
+	 * Invoker for an empty listener array, used by collected weak listeners. Lazily computed.
 	 */
-	private final List<EventPhaseData<T>> sortedPhases = new ArrayList<>();
+	@Nullable
+	private volatile T emptyInvoker;
 
 	@SuppressWarnings("unchecked")
 	ArrayBackedEvent(Class<? super T> type, Function<T[], T> invokerFactory) {
+		this.type = type;
 		this.invokerFactory = invokerFactory;
-		this.handlers = (T[]) Array.newInstance(type, 0);
-		update();
+		this.profile = EventProfiler.createProfile(type);
+		T[] handlers = (T[]) Array.newInstance(type, 0);
+		this.state = new AtomicReference<>(new State<>(Collections.emptyList(), Collections.emptyList(), handlers, buildInvoker(Collections.emptyList(), handlers)));
+		publishInvoker();
 	}
 
 	void update() {
-		this.invoker = invokerFactory.apply(handlers);
+		modify(current -> new State<>(current.sortedPhases, current.orderings, current.handlers, null));
 	}
 
 	@Override
@@ -64,36 +84,209 @@ class ArrayBackedEvent<T> extends Event<T> {
 		Objects.requireNonNull(phaseIdentifier, "Tried to register a listener for a null phase!");
 		Objects.requireNonNull(listener, "Tried to register a null listener!");
 
-		synchronized (lock) {
-			getOrCreatePhase(phaseIdentifier, true).addListener(listener);
-			rebuildInvoker(handlers.length + 1);
+		modify(current -> addListeners(current, phaseIdentifier, Collections.singletonList(listener)));
+	}
+
+	@Override
+	public Subscription subscribe(Identifier phaseIdentifier, T listener) {
+		register(phaseIdentifier, listener);
+		return new ListenerSubscription(phaseIdentifier, listener);
+	}
+
+	@Override
+	public Subscription subscribeWeak(Identifier phaseIdentifier, T listener) {
+		Objects.requireNonNull(listener, "Tried to register a null listener!");
+
+		WeakListener<T> weakListener = new WeakListener<>(type, listener, getEmptyInvoker());
+		register(phaseIdentifier, weakListener.getProxy());
+		ListenerSubscription subscription = new ListenerSubscription(phaseIdentifier, weakListener.getProxy());
+		weakListener.setSubscription(subscription);
+		return subscription;
+	}
+
+	@Override
+	public void registerAll(Identifier phaseIdentifier, Collection<? extends T> listeners) {
+		Objects.requireNonNull(phaseIdentifier, "Tried to register listeners for a null phase!");
+
+		for (T listener : listeners) {
+			Objects.requireNonNull(listener, "Tried to register a null listener!");
+		}
+
+		if (listeners.isEmpty()) return;
+
+		List<T> listenersCopy = new ArrayList<>(listeners);
+		modify(current -> addListeners(current, phaseIdentifier, listenersCopy));
+	}
+
+	@Override
+	public void addPhaseOrdering(Identifier firstPhase, Identifier secondPhase) {
+		Objects.requireNonNull(firstPhase, "Tried to add an ordering for a null phase.");
+		Objects.requireNonNull(secondPhase, "Tried to add an ordering for a null phase.");
+		if (firstPhase.equals(secondPhase)) throw new IllegalArgumentException("Tried to add a phase that depends on itself.");
+
+		modify(current -> {
+			List<EventPhaseData<T>> phases = new ArrayList<>(current.sortedPhases);
+			boolean created = getOrCreatePhase(phases, firstPhase);
+			created |= getOrCreatePhase(phases, secondPhase);
+			List<Identifier[]> orderings = new ArrayList<>(current.orderings);
+			orderings.add(new Identifier[] { firstPhase, secondPhase });
+
+			if (!created && indexOf(phases, firstPhase) < indexOf(phases, secondPhase)) {
+				// The current order already respects the new constraint, in which case sorting again would produce the same order:
+				// NodeSorting always emits the smallest phase whose predecessors are done, and the new edge only delays the second
+				// phase until the first one is emitted, which is never a point where the second phase was picked.
+				return new State<>(current.sortedPhases, Collections.unmodifiableList(orderings), current.handlers, current.invoker);
+			}
+
+			return buildState(sortPhases(phases, orderings), orderings);
+		});
+	}
+
+	private T getEmptyInvoker() {
+		T ret = emptyInvoker;
+
+		if (ret == null) {
+			@SuppressWarnings("unchecked")
+			T[] empty = (T[]) Array.newInstance(type, 0);
+			emptyInvoker = ret = invokerFactory.apply(empty);
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Atomically replace the current state by the result of {@code modification}, retrying if another thread modified it concurrently.
+	 * The invoker is built once the new state is installed, so retries don't create invokers that are thrown away.
+	 */
+	private void modify(UnaryOperator<State<T>> modification) {
+		State<T> current;
+		State<T> next;
+
+		do {
+			current = state.get();
+			next = modification.apply(current);
+		} while (!state.compareAndSet(current, next));
+
+		if (next == current) return;
+
+		if (next.invoker == null) {
+			next.invoker = buildInvoker(next.sortedPhases, next.handlers);
+		}
+
+		publishInvoker();
+	}
+
+	/**
+	 * Copy the invoker of the current state to the invoker field.
+	 * If the state is replaced concurrently, the loop guarantees that the invoker of the latest state wins.
+	 * A state without an invoker yet is skipped, the thread that installed it publishes its invoker once built.
+	 */
+	private void publishInvoker() {
+		State<T> current;
+
+		do {
+			current = state.get();
+			T invoker = current.invoker;
+			if (invoker == null) return;
+
+			this.invoker = invoker;
+		} while (state.get() != current);
+	}
+
+	private State<T> addListeners(State<T> current, Identifier phaseIdentifier, List<T> listeners) {
+		List<EventPhaseData<T>> phases = new ArrayList<>(current.sortedPhases);
+		boolean created = getOrCreatePhase(phases, phaseIdentifier);
+
+		for (int i = 0; i < phases.size(); i++) {
+			if (phases.get(i).id.equals(phaseIdentifier)) {
+				phases.set(i, phases.get(i).withAddedListeners(listeners));
+				break;
+			}
 		}
+
+		return buildState(created ? sortPhases(phases, current.orderings) : phases, current.orderings);
 	}
 
-	private EventPhaseData<T> getOrCreatePhase(Identifier id, boolean sortIfCreate) {
-		EventPhaseData<T> phase = phases.get(id);
+	private State<T> removeListener(State<T> current, Identifier phaseIdentifier, T listener) {
+		List<EventPhaseData<T>> phases = new ArrayList<>(current.sortedPhases);
 
-		if (phase == null) {
-			phase = new EventPhaseData<>(id, handlers.getClass().getComponentType());
-			phases.put(id, phase);
-			sortedPhases.add(phase);
+		for (int i = 0; i < phases.size(); i++) {
+			EventPhaseData<T> phase = phases.get(i);
+			if (!phase.id.equals(phaseIdentifier)) continue;
 
-			if (sortIfCreate) {
-				NodeSorting.sort(sortedPhases, "event phases", Comparator.comparing(data -> data.id));
+			for (int j = 0; j < phase.listeners.length; j++) {
+				if (phase.listeners[j] == listener) {
+					// The phase is kept even if it becomes empty, as its orderings still apply.
+					phases.set(i, phase.withoutListener(j));
+					return buildState(phases, current.orderings);
+				}
 			}
 		}
 
-		return phase;
+		return current;
+	}
+
+	/**
+	 * Add a phase to the list if it's not in it yet.
+	 *
+	 * @return {@code true} if the phase was created, in which case the phases need to be sorted again.
+	 */
+	private boolean getOrCreatePhase(List<EventPhaseData<T>> phases, Identifier id) {
+		for (EventPhaseData<T> phase : phases) {
+			if (phase.id.equals(id)) return false;
+		}
+
+		phases.add(new EventPhaseData<>(id, type));
+		return true;
+	}
+
+	private List<EventPhaseData<T>> sortPhases(List<EventPhaseData<T>> phases, List<Identifier[]> orderings) {
+		// Sort fresh copies of the phases, so that the nodes of published states are never modified.
+		List<EventPhaseData<T>> sortedPhases = new ArrayList<>(phases.size());
+
+		for (EventPhaseData<T> phase : phases) {
+			sortedPhases.add(phase.withAddedListeners(Collections.emptyList()));
+		}
+
+		for (Identifier[] ordering : orderings) {
+			EventPhaseData.link(find(sortedPhases, ordering[0]), find(sortedPhases, ordering[1]));
+		}
+
+		NodeSorting.sort(sortedPhases, "event phases", Comparator.comparing(data -> data.id));
+		return sortedPhases;
+	}
+
+	private static <T> int indexOf(List<EventPhaseData<T>> phases, Identifier id) {
+		for (int i = 0; i < phases.size(); i++) {
+			if (phases.get(i).id.equals(id)) return i;
+		}
+
+		return -1;
+	}
+
+	private static <T> EventPhaseData<T> find(List<EventPhaseData<T>> phases, Identifier id) {
+		for (EventPhaseData<T> phase : phases) {
+			if (phase.id.equals(id)) return phase;
+		}
+
+		throw new IllegalStateException("Unknown event phase " + id);
 	}
 
-	private void rebuildInvoker(int newLength) {
-		// Rebuild handlers.
+	private State<T> buildState(List<EventPhaseData<T>> sortedPhases, List<Identifier[]> orderings) {
+		T[] handlers;
+
 		if (sortedPhases.size() == 1) {
 			// Special case with a single phase: use the array of the phase directly.
 			handlers = sortedPhases.get(0).listeners;
 		} else {
+			int newLength = 0;
+
+			for (EventPhaseData<T> phase : sortedPhases) {
+				newLength += phase.listeners.length;
+			}
+
 			@SuppressWarnings("unchecked")
-			T[] newHandlers = (T[]) Array.newInstance(handlers.getClass().getComponentType(), newLength);
+			T[] newHandlers = (T[]) Array.newInstance(type, newLength);
 			int newHandlersIndex = 0;
 
 			for (EventPhaseData<T> existingPhase : sortedPhases) {
@@ -105,22 +298,67 @@ class ArrayBackedEvent<T> extends Event<T> {
 			handlers = newHandlers;
 		}
 
-		// Rebuild invoker.
-		update();
+		return new State<>(Collections.unmodifiableList(sortedPhases), Collections.unmodifiableList(orderings), handlers, null);
 	}
 
-	@Override
-	public void addPhaseOrdering(Identifier firstPhase, Identifier secondPhase) {
-		Objects.requireNonNull(firstPhase, "Tried to add an ordering for a null phase.");
-		Objects.requireNonNull(secondPhase, "Tried to add an ordering for a null phase.");
-		if (firstPhase.equals(secondPhase)) throw new IllegalArgumentException("Tried to add a phase that depends on itself.");
+	private T buildInvoker(List<EventPhaseData<T>> sortedPhases, T[] handlers) {
+		if (profile == null) {
+			return invokerFactory.apply(handlers);
+		} else {
+			return invokerFactory.apply(profile.wrap(sortedPhases, handlers));
+		}
+	}
 
-		synchronized (lock) {
-			EventPhaseData<T> first = getOrCreatePhase(firstPhase, false);
-			EventPhaseData<T> second = getOrCreatePhase(secondPhase, false);
-			EventPhaseData.link(first, second);
-			NodeSorting.sort(this.sortedPhases, "event phases", Comparator.comparing(data -> data.id));
-			rebuildInvoker(handlers.length);
+	private final class ListenerSubscription implements Subscription {
+		private final Identifier phase;
+		private final T listener;
+		private final AtomicBoolean active = new AtomicBoolean(true);
+
+		private ListenerSubscription(Identifier phase, T listener) {
+			this.phase = phase;
+			this.listener = listener;
+		}
+
+		@Override
+		public boolean isActive() {
+			return active.get();
+		}
+
+		@Override
+		public void close() {
+			if (active.compareAndSet(true, false)) {
+				modify(current -> removeListener(current, phase, listener));
+			}
 		}
 	}
+
+	/**
+	 * Immutable snapshot of the phases and listeners of an event, apart from the invoker that is set once after installing it.
+	 */
+	private static final class State<T> {
+		State(List<EventPhaseData<T>> sortedPhases, List<Identifier[]> orderings, T[] handlers, @Nullable T invoker) {
+			this.sortedPhases = sortedPhases;
+			this.orderings = orderings;
+			this.handlers = handlers;
+			this.invoker = invoker;
+		}
+
+		/**
+		 * Phases sorted in the correct dependency order. Their listener arrays are never modified.
+		 */
+		final List<EventPhaseData<T>> sortedPhases;
+		/**
+		 * Phase orderings, as {@code [first, second]} pairs.
+		 */
+		final List<Identifier[]> orderings;
+		/**
+		 * All listeners, in phase order.
+		 */
+		final T[] handlers;
+		/**
+		 * The invoker built from {@code handlers}, or {@code null} until the thread that installed this state built it.
+		 */
+		@Nullable
+		volatile T invoker;
+	}
 }
@@ -49,6 +49,10 @@ public final class EventFactoryImpl {
 		return event;
 	}
 
+	public static <T> Event<T> createUnrolled(Class<T> type, Function<T[], T> invokerFactory) {
+		return createArrayBacked(type, UnrolledInvokerGenerator.wrap(type, invokerFactory));
+	}
+
 	public static void ensureContainsDefault(Identifier[] defaultPhases) {
 		for (Identifier id : defaultPhases) {
 			if (id.equals(Event.DEFAULT_PHASE)) {
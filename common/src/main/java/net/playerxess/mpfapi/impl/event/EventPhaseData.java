@@ -18,6 +18,7 @@ package net.playerxess.mpfapi.impl.event;
 
 import java.lang.reflect.Array;
 import java.util.Arrays;
+import java.util.List;
 
 import net.minecraft.util.Identifier;
 
@@ -28,18 +29,41 @@ import net.playerxess.mpfapi.impl.toposort.SortableNode;
  */
 class EventPhaseData<T> extends SortableNode<EventPhaseData<T>> {
 	final Identifier id;
-	T[] listeners;
+	final T[] listeners;
 
 	@SuppressWarnings("unchecked")
 	EventPhaseData(Identifier id, Class<?> listenerClass) {
+		this(id, (T[]) Array.newInstance(listenerClass, 0));
+	}
+
+	private EventPhaseData(Identifier id, T[] listeners) {
 		this.id = id;
-		this.listeners = (T[]) Array.newInstance(listenerClass, 0);
+		this.listeners = listeners;
 	}
 
-	void addListener(T listener) {
+	/**
+	 * @return A new phase with the same id and the given listeners appended, without any link to other phases.
+	 */
+	EventPhaseData<T> withAddedListeners(List<T> added) {
 		int oldLength = listeners.length;
-		listeners = Arrays.copyOf(listeners, oldLength + 1);
-		listeners[oldLength] = listener;
+		T[] newListeners = Arrays.copyOf(listeners, oldLength + added.size());
+
+		for (int i = 0; i < added.size(); i++) {
+			newListeners[oldLength + i] = added.get(i);
+		}
+
+		return new EventPhaseData<>(id, newListeners);
+	}
+
+	/**
+	 * @return A new phase with the same id and the listener at the given index removed, without any link to other phases.
+	 */
+	EventPhaseData<T> withoutListener(int index) {
+		@SuppressWarnings("unchecked")
+		T[] newListeners = (T[]) Array.newInstance(listeners.getClass().getComponentType(), listeners.length - 1);
+		System.arraycopy(listeners, 0, newListeners, 0, index);
+		System.arraycopy(listeners, index + 1, newListeners, index, listeners.length - index - 1);
+		return new EventPhaseData<>(id, newListeners);
 	}
 
 	@Override
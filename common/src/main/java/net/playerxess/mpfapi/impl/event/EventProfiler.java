@@ -0,0 +1,374 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.playerxess.mpfapi.impl.event;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.collect.MapMaker;
+import com.google.gson.stream.JsonWriter;
+import org.jetbrains.annotations.Nullable;
+
+import net.minecraft.util.Identifier;
+
+import net.fabricmc.loader.api.FabricLoader;
+import net.fabricmc.loader.api.ModContainer;
+
+/**
+ * Optional per-listener profiling of {@link ArrayBackedEvent}s.
+ *
+ * <p>When enabled with the {@value #ENABLE_PROPERTY} system property, every listener is wrapped in a proxy that records
+ * its call count, total and maximum time, and the bytes allocated by the calling thread while it runs. The reflective calls
+ * of an event are warmed up when its profile is created, and the allocations of a reflective call itself are measured
+ * once and subtracted. A listener registered for several phases is profiled separately for each of them.
+ * Listeners are attributed to the mod whose code source contains their class.
+ *
+ * <p>When disabled, events don't hold an {@link EventProfile} and build their invoker from the plain listener array,
+ * so there is no overhead at all.
+ */
+public final class EventProfiler {
+	static final String ENABLE_PROPERTY = "fabric-api.event.profiling";
+	public static final boolean ENABLED = Boolean.getBoolean(ENABLE_PROPERTY);
+
+	private static final Set<EventProfile<?>> PROFILES = Collections.newSetFromMap(new MapMaker().weakKeys().makeMap());
+	private static final ClassValue<String> OWNING_MODS = new ClassValue<>() {
+		@Override
+		protected String computeValue(Class<?> type) {
+			return findOwningMod(type);
+		}
+	};
+	@Nullable
+	private static final com.sun.management.ThreadMXBean THREAD_BEAN = getThreadBean();
+	/**
+	 * Bytes allocated by the reflective call of a listener that does nothing.
+	 */
+	private static final long ALLOCATION_BASELINE = ENABLED && THREAD_BEAN != null ? measureAllocationBaseline() : 0;
+	/**
+	 * Calls after which the reflective invocation of a method stops allocating, see {@code sun.reflect.inflationThreshold}.
+	 */
+	private static final int REFLECTION_WARMUP_CALLS = 20;
+
+	private EventProfiler() { }
+
+	@Nullable
+	static <T> EventProfile<T> createProfile(Class<? super T> type) {
+		if (!ENABLED) return null;
+
+		warmUpReflection(type);
+		EventProfile<T> profile = new EventProfile<>(type);
+		PROFILES.add(profile);
+		return profile;
+	}
+
+	/**
+	 * @return A snapshot of the statistics of all profiled listeners, sorted by descending total time.
+	 */
+	public static List<ListenerStats> getStats() {
+		List<ListenerStats> ret = new ArrayList<>();
+
+		for (EventProfile<?> profile : PROFILES) {
+			synchronized (profile) {
+				for (Map<Identifier, ListenerStats> phaseStats : profile.stats.values()) {
+					ret.addAll(phaseStats.values());
+				}
+			}
+		}
+
+		ret.sort(Comparator.comparingLong(ListenerStats::getTotalNanos).reversed());
+		return ret;
+	}
+
+	public static void reset() {
+		for (ListenerStats stats : getStats()) {
+			stats.reset();
+		}
+	}
+
+	public static void writeJson(Path path) throws IOException {
+		Files.createDirectories(path.toAbsolutePath().getParent());
+
+		try (Writer writer = Files.newBufferedWriter(path); JsonWriter json = new JsonWriter(writer)) {
+			json.setIndent("\t");
+			json.beginObject();
+			json.name("allocationTracking").value(THREAD_BEAN != null);
+			json.name("listeners").beginArray();
+
+			for (ListenerStats stats : getStats()) {
+				json.beginObject();
+				json.name("event").value(stats.event);
+				json.name("phase").value(stats.phase.toString());
+				json.name("mod").value(stats.mod);
+				json.name("listener").value(stats.listenerClass);
+				json.name("calls").value(stats.getCalls());
+				json.name("totalNanos").value(stats.getTotalNanos());
+				json.name("maxNanos").value(stats.getMaxNanos());
+				json.name("allocatedBytes").value(stats.getAllocatedBytes());
+				json.endObject();
+			}
+
+			json.endArray();
+			json.endObject();
+		}
+	}
+
+	private static String findOwningMod(Class<?> type) {
+		try {
+			CodeSource codeSource = type.getProtectionDomain().getCodeSource();
+			if (codeSource == null || codeSource.getLocation() == null) return "unknown";
+
+			Path path = Paths.get(codeSource.getLocation().toURI()).toAbsolutePath().normalize();
+
+			for (ModContainer mod : FabricLoader.getInstance().getAllMods()) {
+				for (Path modPath : mod.getOrigin().getPaths()) {
+					if (path.startsWith(modPath.toAbsolutePath().normalize())) {
+						return mod.getMetadata().getId();
+					}
+				}
+			}
+		} catch (URISyntaxException | RuntimeException | LinkageError e) {
+			// Unusual code source or no Fabric Loader, can't attribute the listener.
+		}
+
+		return "unknown";
+	}
+
+	@Nullable
+	private static com.sun.management.ThreadMXBean getThreadBean() {
+		try {
+			if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean && bean.isThreadAllocatedMemorySupported()) {
+				bean.setThreadAllocatedMemoryEnabled(true);
+				return bean;
+			}
+		} catch (LinkageError | RuntimeException e) {
+			// Not a HotSpot JVM.
+		}
+
+		return null;
+	}
+
+	private static long allocatedBytes() {
+		return THREAD_BEAN == null ? 0 : THREAD_BEAN.getCurrentThreadAllocatedBytes();
+	}
+
+	private static long measureAllocationBaseline() {
+		Runnable listener = () -> { };
+		long ret = Long.MAX_VALUE;
+
+		try {
+			Method method = Runnable.class.getMethod("run");
+
+			// Enough calls for the reflective invocation to reach its steady state, the smallest sample is its per-call overhead.
+			for (int i = 0; i < REFLECTION_WARMUP_CALLS * 10; i++) {
+				long startBytes = allocatedBytes();
+				EventProfile.invoke(method, listener, null);
+				ret = Math.min(ret, allocatedBytes() - startBytes);
+			}
+		} catch (Throwable t) {
+			return 0;
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Call the listener methods of an event type on a no-op target, so the first calls of the profiled listeners don't
+	 * get the allocations of setting up the reflective invocation attributed.
+	 */
+	private static void warmUpReflection(Class<?> type) {
+		Object target = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> defaultValue(method.getReturnType()));
+
+		for (Method method : type.getMethods()) {
+			if (!Modifier.isAbstract(method.getModifiers())) continue;
+
+			Class<?>[] paramTypes = method.getParameterTypes();
+			Object[] args = new Object[paramTypes.length];
+
+			for (int i = 0; i < args.length; i++) {
+				args[i] = defaultValue(paramTypes[i]);
+			}
+
+			try {
+				for (int i = 0; i < REFLECTION_WARMUP_CALLS; i++) {
+					method.invoke(target, args);
+				}
+			} catch (ReflectiveOperationException | RuntimeException e) {
+				// Only affects the accuracy of the first calls.
+			}
+		}
+	}
+
+	@Nullable
+	private static Object defaultValue(Class<?> type) {
+		return type.isPrimitive() && type != void.class ? Array.get(Array.newInstance(type, 1), 0) : null;
+	}
+
+	/**
+	 * Profiling data of a single event, holding the profiled wrapper of each of its current listeners.
+	 *
+	 * <p>The wrappers reference their listener, so only the ones of the last built invoker are kept. The statistics are
+	 * kept while the listener is reachable, and are reused if it gets wrapped again.
+	 */
+	static final class EventProfile<T> {
+		private final Class<? super T> type;
+		private final Map<T, Map<Identifier, ListenerStats>> stats = new MapMaker().weakKeys().makeMap();
+		private Map<T, Map<Identifier, T>> wrappers = new IdentityHashMap<>();
+
+		private EventProfile(Class<? super T> type) {
+			this.type = type;
+		}
+
+		/**
+		 * Build the array of profiled listeners matching {@code handlers}, which must be the concatenation of the listeners of {@code sortedPhases}.
+		 */
+		synchronized T[] wrap(List<EventPhaseData<T>> sortedPhases, T[] handlers) {
+			@SuppressWarnings("unchecked")
+			T[] ret = (T[]) Array.newInstance(handlers.getClass().getComponentType(), handlers.length);
+			Map<T, Map<Identifier, T>> newWrappers = new IdentityHashMap<>();
+			int i = 0;
+
+			for (EventPhaseData<T> phase : sortedPhases) {
+				for (T listener : phase.listeners) {
+					ret[i++] = newWrappers.computeIfAbsent(listener, l -> new HashMap<>()).computeIfAbsent(phase.id, id -> {
+						Map<Identifier, T> oldWrappers = wrappers.get(listener);
+						T wrapper = oldWrappers != null ? oldWrappers.get(id) : null;
+
+						return wrapper != null ? wrapper : createWrapper(id, listener);
+					});
+				}
+			}
+
+			// Drop the wrappers of removed listeners.
+			wrappers = newWrappers;
+
+			return ret;
+		}
+
+		@SuppressWarnings("unchecked")
+		private T createWrapper(Identifier phase, T listener) {
+			ListenerStats listenerStats = stats.computeIfAbsent(listener, l -> new HashMap<>()).computeIfAbsent(phase,
+					id -> new ListenerStats(type.getName(), id, OWNING_MODS.get(listener.getClass()), listener.getClass().getName()));
+
+			return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+				if (method.getDeclaringClass() == Object.class) {
+					return invoke(method, listener, args);
+				}
+
+				long startBytes = allocatedBytes();
+				long startTime = System.nanoTime();
+
+				try {
+					return invoke(method, listener, args);
+				} finally {
+					listenerStats.record(System.nanoTime() - startTime, Math.max(0, allocatedBytes() - startBytes - ALLOCATION_BASELINE));
+				}
+			});
+		}
+
+		private static Object invoke(Method method, Object listener, Object[] args) throws Throwable {
+			try {
+				return method.invoke(listener, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+
+	public static final class ListenerStats {
+		private final String event;
+		private final Identifier phase;
+		private final String mod;
+		private final String listenerClass;
+		private final LongAdder calls = new LongAdder();
+		private final LongAdder totalNanos = new LongAdder();
+		private final AtomicLong maxNanos = new AtomicLong();
+		private final LongAdder allocatedBytes = new LongAdder();
+
+		private ListenerStats(String event, Identifier phase, String mod, String listenerClass) {
+			this.event = event;
+			this.phase = phase;
+			this.mod = mod;
+			this.listenerClass = listenerClass;
+		}
+
+		private void record(long nanos, long bytes) {
+			calls.increment();
+			totalNanos.add(nanos);
+			maxNanos.accumulateAndGet(nanos, Math::max);
+			allocatedBytes.add(bytes);
+		}
+
+		private void reset() {
+			calls.reset();
+			totalNanos.reset();
+			maxNanos.set(0);
+			allocatedBytes.reset();
+		}
+
+		public String getEvent() {
+			return event;
+		}
+
+		public Identifier getPhase() {
+			return phase;
+		}
+
+		public String getMod() {
+			return mod;
+		}
+
+		public String getListenerClass() {
+			return listenerClass;
+		}
+
+		public long getCalls() {
+			return calls.sum();
+		}
+
+		public long getTotalNanos() {
+			return totalNanos.sum();
+		}
+
+		public long getMaxNanos() {
+			return maxNanos.get();
+		}
+
+		public long getAllocatedBytes() {
+			return allocatedBytes.sum();
+		}
+	}
+}
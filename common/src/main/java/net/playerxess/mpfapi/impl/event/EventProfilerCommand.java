@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.playerxess.mpfapi.impl.event;
+
+import static net.minecraft.server.command.CommandManager.literal;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.context.CommandContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.text.Text;
+
+import net.fabricmc.loader.api.FabricLoader;
+import net.playerxess.mpfapi.MPFAPI;
+import net.playerxess.mpfapi.api.command.CommandRegistrationCallback;
+
+/**
+ * The {@code /mpfapi profile events} command, only registered when the {@link EventProfiler} is enabled.
+ */
+public final class EventProfilerCommand {
+	private static final Logger LOGGER = LoggerFactory.getLogger("fabric-api-base");
+	private static final int SHOWN_LISTENERS = 10;
+
+	private EventProfilerCommand() { }
+
+	public static void init() {
+		if (EventProfiler.ENABLED) {
+			CommandRegistrationCallback.EVENT.register((dispatcher, registryAccess, environment) -> register(dispatcher));
+		}
+	}
+
+	private static void register(CommandDispatcher<ServerCommandSource> dispatcher) {
+		dispatcher.register(literal(MPFAPI.MOD_ID)
+				.requires(source -> source.hasPermissionLevel(4))
+				.then(literal("profile")
+						.then(literal("events")
+								.executes(EventProfilerCommand::print)
+								.then(literal("dump").executes(EventProfilerCommand::dump))
+								.then(literal("reset").executes(EventProfilerCommand::reset)))));
+	}
+
+	private static int print(CommandContext<ServerCommandSource> context) {
+		List<EventProfiler.ListenerStats> stats = EventProfiler.getStats();
+		ServerCommandSource source = context.getSource();
+		source.sendFeedback(() -> Text.literal("Top %d of %d event listeners by total time:".formatted(Math.min(SHOWN_LISTENERS, stats.size()), stats.size())), false);
+
+		for (EventProfiler.ListenerStats listener : stats.subList(0, Math.min(SHOWN_LISTENERS, stats.size()))) {
+			String line = String.format(Locale.ROOT, "%s [%s] %s (%s): %d calls, %.3f ms total, %.3f ms max, %d bytes allocated",
+					listener.getMod(), listener.getPhase(), listener.getEvent(), listener.getListenerClass(), listener.getCalls(),
+					listener.getTotalNanos() / 1e6, listener.getMaxNanos() / 1e6, listener.getAllocatedBytes());
+			source.sendFeedback(() -> Text.literal(line), false);
+		}
+
+		return stats.size();
+	}
+
+	private static int dump(CommandContext<ServerCommandSource> context) {
+		String fileName = "event-profile-" + new SimpleDateFormat("yyyy-MM-dd_HH.mm.ss", Locale.ROOT).format(new Date()) + ".json";
+		Path path = FabricLoader.getInstance().getGameDir().resolve("debug").resolve(MPFAPI.MOD_ID).resolve(fileName);
+
+		try {
+			EventProfiler.writeJson(path);
+		} catch (IOException e) {
+			LOGGER.error("Failed to write event profile to {}", path, e);
+			context.getSource().sendError(Text.literal("Failed to write event profile: " + e));
+			return 0;
+		}
+
+		context.getSource().sendFeedback(() -> Text.literal("Wrote event profile to " + path), false);
+		return 1;
+	}
+
+	private static int reset(CommandContext<ServerCommandSource> context) {
+		EventProfiler.reset();
+		context.getSource().sendFeedback(() -> Text.literal("Reset event profile"), false);
+		return 1;
+	}
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.playerxess.mpfapi.impl.event;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.Function;
+
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Generates invokers that call every listener of an event through its own call site.
+ *
+ * <p>The generated invoker is a hidden class holding each listener in a final field, with the listener method
+ * unrolled into one direct interface call per listener. Unlike a loop over the listener array, every call site only
+ * ever sees a single receiver class, which lets the JIT inline the listeners.
+ *
+ * <p>This only works for listener interfaces with a single {@code void} method, for which calling every listener
+ * in order is the only sensible behavior. Generation is disabled unless the {@value #ENABLE_PROPERTY} system property
+ * is set to {@code true}.
+ */
+final class UnrolledInvokerGenerator<T> {
+	static final String ENABLE_PROPERTY = "fabric-api.event.unrolledInvokers";
+	static final boolean ENABLED = Boolean.getBoolean(ENABLE_PROPERTY);
+	/**
+	 * Above this many listeners the invoker method gets too large to be inlined as a whole, so unrolling stops paying off.
+	 */
+	static final int MAX_UNROLLED_LISTENERS = 64;
+
+	private static final Logger LOGGER = LoggerFactory.getLogger("fabric-api-base");
+	private static final String CLASS_NAME = Type.getInternalName(UnrolledInvokerGenerator.class).replace("UnrolledInvokerGenerator", "UnrolledInvoker");
+	private static final String CONSTRUCTOR_DESCRIPTOR = Type.getMethodDescriptor(Type.VOID_TYPE, Type.getType(Object[].class));
+
+	private final Class<T> type;
+	private final Method method;
+	private volatile boolean failed = false;
+
+	private UnrolledInvokerGenerator(Class<T> type, Method method) {
+		this.type = type;
+		this.method = method;
+	}
+
+	/**
+	 * Wrap an invoker factory so that it produces generated invokers when possible.
+	 * The original factory is used for the empty and single listener cases, and whenever generation is not possible.
+	 */
+	static <T> Function<T[], T> wrap(Class<T> type, Function<T[], T> invokerFactory) {
+		if (!ENABLED) return invokerFactory;
+
+		UnrolledInvokerGenerator<T> generator = create(type);
+
+		if (generator == null) {
+			LOGGER.debug("Cannot generate unrolled invokers for {}, falling back to the default invoker", type.getName());
+			return invokerFactory;
+		}
+
+		return listeners -> {
+			if (listeners.length > 1 && listeners.length <= MAX_UNROLLED_LISTENERS && !generator.failed) {
+				T invoker = generator.generate(listeners);
+				if (invoker != null) return invoker;
+			}
+
+			return invokerFactory.apply(listeners);
+		};
+	}
+
+	@Nullable
+	private static <T> UnrolledInvokerGenerator<T> create(Class<T> type) {
+		if (!type.isInterface() || !Modifier.isPublic(type.getModifiers())) {
+			return null;
+		}
+
+		Method method = null;
+
+		for (Method m : type.getMethods()) {
+			if (!Modifier.isAbstract(m.getModifiers()) || isObjectMethod(m)) {
+				continue;
+			}
+
+			if (method != null) {
+				// Not a functional interface.
+				return null;
+			}
+
+			method = m;
+		}
+
+		if (method == null || method.getReturnType() != void.class) {
+			return null;
+		}
+
+		return new UnrolledInvokerGenerator<>(type, method);
+	}
+
+	private static boolean isObjectMethod(Method method) {
+		try {
+			Object.class.getMethod(method.getName(), method.getParameterTypes());
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	@Nullable
+	private T generate(T[] listeners) {
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(generateClass(listeners.length), true);
+			MethodHandle constructor = lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class, Object[].class));
+			return type.cast(constructor.invoke((Object[]) listeners));
+		} catch (Throwable t) {
+			// Most likely the listener interface is not accessible from this class loader. Don't try again for this event.
+			failed = true;
+			LOGGER.warn("Failed to generate unrolled invoker for {}, falling back to the default invoker", type.getName(), t);
+			return null;
+		}
+	}
+
+	private byte[] generateClass(int listenerCount) {
+		String typeName = Type.getInternalName(type);
+		String typeDescriptor = Type.getDescriptor(type);
+		String methodDescriptor = Type.getMethodDescriptor(method);
+
+		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		cw.visit(Opcodes.V17, Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, CLASS_NAME, null, "java/lang/Object", new String[] { typeName });
+
+		for (int i = 0; i < listenerCount; i++) {
+			cw.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "listener" + i, typeDescriptor, null, null).visitEnd();
+		}
+
+		// Constructor: copy the listeners into the fields.
+		MethodVisitor mv = cw.visitMethod(0, "<init>", CONSTRUCTOR_DESCRIPTOR, null, null);
+		mv.visitCode();
+		mv.visitVarInsn(Opcodes.ALOAD, 0);
+		mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+
+		for (int i = 0; i < listenerCount; i++) {
+			mv.visitVarInsn(Opcodes.ALOAD, 0);
+			mv.visitVarInsn(Opcodes.ALOAD, 1);
+			mv.visitLdcInsn(i);
+			mv.visitInsn(Opcodes.AALOAD);
+			mv.visitTypeInsn(Opcodes.CHECKCAST, typeName);
+			mv.visitFieldInsn(Opcodes.PUTFIELD, CLASS_NAME, "listener" + i, typeDescriptor);
+		}
+
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		// Listener method: one call site per listener.
+		Type[] argumentTypes = Type.getArgumentTypes(method);
+		mv = cw.visitMethod(Opcodes.ACC_PUBLIC, method.getName(), methodDescriptor, null, null);
+		mv.visitCode();
+
+		for (int i = 0; i < listenerCount; i++) {
+			mv.visitVarInsn(Opcodes.ALOAD, 0);
+			mv.visitFieldInsn(Opcodes.GETFIELD, CLASS_NAME, "listener" + i, typeDescriptor);
+			int slot = 1;
+
+			for (Type argumentType : argumentTypes) {
+				mv.visitVarInsn(argumentType.getOpcode(Opcodes.ILOAD), slot);
+				slot += argumentType.getSize();
+			}
+
+			mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, typeName, method.getName(), methodDescriptor, true);
+		}
+
+		mv.visitInsn(Opcodes.RETURN);
+		mv.visitMaxs(0, 0);
+		mv.visitEnd();
+
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.playerxess.mpfapi.impl.event;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import net.playerxess.mpfapi.api.event.Subscription;
+
+/**
+ * A listener that only weakly references its delegate.
+ *
+ * <p>Once the delegate is collected, the listener forwards to the empty invoker of its event
+ * and removes itself from the event by closing its subscription.
+ */
+final class WeakListener<T> implements InvocationHandler {
+	private final WeakReference<T> delegate;
+	private final T emptyInvoker;
+	private final T proxy;
+	private volatile Subscription subscription;
+
+	@SuppressWarnings("unchecked")
+	WeakListener(Class<? super T> type, T delegate, T emptyInvoker) {
+		this.delegate = new WeakReference<>(delegate);
+		this.emptyInvoker = emptyInvoker;
+		this.proxy = (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, this);
+	}
+
+	T getProxy() {
+		return proxy;
+	}
+
+	void setSubscription(Subscription subscription) {
+		this.subscription = subscription;
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		if (method.getDeclaringClass() == Object.class) {
+			// Identity semantics, the delegate may be gone.
+			return switch (method.getName()) {
+			case "equals" -> proxy == args[0];
+			case "hashCode" -> System.identityHashCode(proxy);
+			default -> "WeakListener[" + delegate.get() + "]";
+			};
+		}
+
+		T target = delegate.get();
+
+		if (target == null) {
+			Subscription subscription = this.subscription;
+			if (subscription != null) subscription.close();
+			target = emptyInvoker;
+		}
+
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+}
@@ -21,7 +21,12 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
 
@@ -32,11 +37,22 @@ import net.minecraft.resource.ResourcePack;
 import net.minecraft.resource.ResourceType;
 import net.minecraft.resource.metadata.ResourceMetadata;
 import net.minecraft.util.Identifier;
+import net.minecraft.util.Pair;
 
 /**
  * Represents a group resource pack, holds multiple resource packs as one.
+ *
+ * <p>With {@code -Dfabric-api.resource-loader.parallelDiscovery=true}, {@link #findResources} queries the packs of a namespace
+ * concurrently when there are enough of them, then passes the results on in pack order, so the results are the same as with
+ * sequential discovery. Single resource lookups stay sequential, they are cheaper than handing them to another thread.
  */
 public abstract class GroupResourcePack implements ResourcePack {
+	private static final boolean PARALLEL_DISCOVERY = Boolean.getBoolean("fabric-api.resource-loader.parallelDiscovery");
+	/**
+	 * Minimum number of packs in a namespace to query them concurrently.
+	 */
+	private static final int PARALLEL_THRESHOLD = 8;
+
 	protected final ResourceType type;
 	protected final List<? extends ResourcePack> packs;
 	protected final Map<String, List<ResourcePack>> namespacedPacks = new Object2ObjectOpenHashMap<>();
@@ -76,6 +92,23 @@ public abstract class GroupResourcePack implements ResourcePack {
 			return;
 		}
 
+		if (shouldQueryInParallel(packs)) {
+			List<List<Pair<Identifier, InputSupplier<InputStream>>>> results = queryInParallel(packs.size(), i -> {
+				List<Pair<Identifier, InputSupplier<InputStream>>> result = new ArrayList<>();
+				packs.get(i).findResources(type, namespace, prefix, (id, supplier) -> result.add(new Pair<>(id, supplier)));
+				return result;
+			});
+
+			// First to last, since later calls override previously returned data
+			for (List<Pair<Identifier, InputSupplier<InputStream>>> result : results) {
+				for (Pair<Identifier, InputSupplier<InputStream>> entry : result) {
+					consumer.accept(entry.getLeft(), entry.getRight());
+				}
+			}
+
+			return;
+		}
+
 		// First to last, since later calls override previously returned data
 		for (ResourcePack pack : packs) {
 			pack.findResources(type, namespace, prefix, consumer);
@@ -112,6 +145,20 @@ public abstract class GroupResourcePack implements ResourcePack {
 		}
 	}
 
+	private static boolean shouldQueryInParallel(List<? extends ResourcePack> packs) {
+		// Don't fan out again from a discovery thread.
+		return PARALLEL_DISCOVERY && packs.size() >= PARALLEL_THRESHOLD && !(Thread.currentThread() instanceof DiscoveryThread);
+	}
+
+	/**
+	 * Compute {@code query} for each pack index concurrently.
+	 *
+	 * @return the results, in pack order
+	 */
+	private static <T> List<T> queryInParallel(int count, IntFunction<T> query) {
+		return DiscoveryPool.POOL.submit(() -> IntStream.range(0, count).parallel().mapToObj(query).collect(Collectors.toList())).join();
+	}
+
 	public String getFullName() {
 		return this.getName() + " (" + this.packs.stream().map(ResourcePack::getName).collect(Collectors.joining(", ")) + ")";
 	}
@@ -120,4 +167,22 @@ public abstract class GroupResourcePack implements ResourcePack {
 	public void close() {
 		this.packs.forEach(ResourcePack::close);
 	}
+
+	/**
+	 * Bounded pool for parallel discovery, separate from the common pool used by vanilla and other mods.
+	 */
+	private static final class DiscoveryPool {
+		private static final ForkJoinPool POOL = new ForkJoinPool(Math.min(Runtime.getRuntime().availableProcessors(), 8), DiscoveryThread::new, null, false);
+	}
+
+	private static final class DiscoveryThread extends ForkJoinWorkerThread {
+		private static final AtomicInteger COUNTER = new AtomicInteger();
+
+		private DiscoveryThread(ForkJoinPool pool) {
+			super(pool);
+			setName("Fabric Resource Discovery-" + COUNTER.incrementAndGet());
+			setDaemon(true);
+			setContextClassLoader(GroupResourcePack.class.getClassLoader());
+		}
+	}
 }
@@ -66,43 +66,113 @@ public class ModNioResourcePack implements ResourcePack, ModResourcePack {
 	private final AutoCloseable closer;
 	private final ResourcePackActivationType activationType;
 	private final Map<ResourceType, Set<String>> namespaces;
+	/**
+	 * Index of each base path, or {@code null} for base paths that could not be indexed and are looked up on the file system.
+	 */
+	private final List<ResourcePathIndex> indices;
 
 	public static ModNioResourcePack create(String id, ModContainer mod, String subPath, ResourceType type, ResourcePackActivationType activationType) {
 		List<Path> rootPaths = mod.getRootPaths();
-		List<Path> paths;
-
-		if (subPath == null) {
-			paths = rootPaths;
+		List<Path> paths = new ArrayList<>(rootPaths.size());
+		List<ResourcePathIndex> indices = new ArrayList<>(rootPaths.size());
+		ResourceIndexCache.Key cacheKey = ResourceIndexCache.getKey(mod, subPath);
+		List<ResourcePathIndex> rootIndices = cacheKey != null ? cacheKey.load() : null;
+
+		if (rootIndices != null && rootIndices.size() == rootPaths.size()) {
+			// The cache also knows which root paths contain the sub path.
+			for (int i = 0; i < rootPaths.size(); i++) {
+				if (rootIndices.get(i) == null) continue;
+
+				paths.add(resolveSubPath(rootPaths.get(i), subPath));
+				indices.add(rootIndices.get(i));
+			}
 		} else {
-			paths = new ArrayList<>(rootPaths.size());
+			rootIndices = new ArrayList<>(rootPaths.size());
+			boolean complete = true;
 
 			for (Path path : rootPaths) {
-				path = path.toAbsolutePath().normalize();
-				Path childPath = path.resolve(subPath.replace("/", path.getFileSystem().getSeparator())).normalize();
+				Path childPath = resolveSubPath(path, subPath);
 
-				if (!childPath.startsWith(path) || !exists(childPath)) {
+				if (childPath == null || subPath != null && !exists(childPath)) {
+					rootIndices.add(null);
 					continue;
 				}
 
+				ResourcePathIndex index = buildIndex(childPath, mod.getMetadata().getId());
+				complete &= index != null;
+				rootIndices.add(index);
 				paths.add(childPath);
+				indices.add(index);
+			}
+
+			if (cacheKey != null && complete) {
+				cacheKey.save(rootIndices);
 			}
 		}
 
 		if (paths.isEmpty()) return null;
 
-		ModNioResourcePack ret = new ModNioResourcePack(id, mod.getMetadata(), paths, type, null, activationType);
+		ModNioResourcePack ret = new ModNioResourcePack(id, mod.getMetadata(), paths, indices, type, null, activationType);
 
 		return ret.getNamespaces(type).isEmpty() ? null : ret;
 	}
 
-	private ModNioResourcePack(String id, ModMetadata modInfo, List<Path> paths, ResourceType type, AutoCloseable closer, ResourcePackActivationType activationType) {
+	/**
+	 * @return the sub path in the root path, or {@code null} if it's outside of the root path
+	 */
+	@Nullable
+	private static Path resolveSubPath(Path rootPath, @Nullable String subPath) {
+		if (subPath == null) return rootPath;
+
+		rootPath = rootPath.toAbsolutePath().normalize();
+		Path childPath = rootPath.resolve(subPath.replace("/", rootPath.getFileSystem().getSeparator())).normalize();
+		return childPath.startsWith(rootPath) ? childPath : null;
+	}
+
+	private ModNioResourcePack(String id, ModMetadata modInfo, List<Path> paths, List<ResourcePathIndex> indices, ResourceType type, AutoCloseable closer, ResourcePackActivationType activationType) {
 		this.id = id;
 		this.modInfo = modInfo;
 		this.basePaths = paths;
 		this.type = type;
 		this.closer = closer;
 		this.activationType = activationType;
-		this.namespaces = readNamespaces(paths, modInfo.getId());
+		this.indices = indices;
+		this.namespaces = indices.contains(null) ? readNamespaces(paths, modInfo.getId()) : readIndexedNamespaces(indices, modInfo.getId());
+	}
+
+	@Nullable
+	private static ResourcePathIndex buildIndex(Path path, String modId) {
+		try {
+			return ResourcePathIndex.build(path);
+		} catch (IOException e) {
+			LOGGER.warn("Indexing resources at " + path + " in mod " + modId + " failed!", e);
+			return null;
+		}
+	}
+
+	private static Map<ResourceType, Set<String>> readIndexedNamespaces(List<ResourcePathIndex> indices, String modId) {
+		Map<ResourceType, Set<String>> ret = new EnumMap<>(ResourceType.class);
+
+		for (ResourceType type : ResourceType.values()) {
+			Set<String> namespaces = null;
+
+			for (ResourcePathIndex index : indices) {
+				for (String s : index.getNamespaces(type)) {
+					if (!RESOURCE_PACK_PATH.matcher(s).matches()) {
+						LOGGER.warn("Fabric NioResourcePack: ignored invalid namespace: {} in mod ID {}", s, modId);
+						continue;
+					}
+
+					if (namespaces == null) namespaces = new HashSet<>();
+
+					namespaces.add(s);
+				}
+			}
+
+			ret.put(type, namespaces != null ? namespaces : Collections.emptySet());
+		}
+
+		return ret;
 	}
 
 	static Map<ResourceType, Set<String>> readNamespaces(List<Path> paths, String modId) {
@@ -148,7 +218,21 @@ public class ModNioResourcePack implements ResourcePack, ModResourcePack {
 	private Path getPath(String filename) {
 		if (hasAbsentNs(filename)) return null;
 
-		for (Path basePath : basePaths) {
+		boolean indexed = ResourcePathIndex.isIndexed(filename);
+
+		for (int i = 0; i < basePaths.size(); i++) {
+			Path basePath = basePaths.get(i);
+			ResourcePathIndex index = indices.get(i);
+
+			if (indexed && index != null) {
+				// Only exact matches are indexed, which also excludes paths escaping the base path.
+				if (index.contains(filename)) {
+					return basePath.resolve(filename.replace("/", basePath.getFileSystem().getSeparator()));
+				}
+
+				continue;
+			}
+
 			Path childPath = basePath.resolve(filename.replace("/", basePath.getFileSystem().getSeparator())).toAbsolutePath().normalize();
 
 			if (childPath.startsWith(basePath) && exists(childPath)) {
@@ -217,8 +301,27 @@ public class ModNioResourcePack implements ResourcePack, ModResourcePack {
 			return;
 		}
 
-		for (Path basePath : basePaths) {
+		String nsPrefix = type.getDirectory() + "/" + namespace + "/";
+
+		for (int i = 0; i < basePaths.size(); i++) {
+			Path basePath = basePaths.get(i);
+			ResourcePathIndex index = indices.get(i);
 			String separator = basePath.getFileSystem().getSeparator();
+
+			if (index != null) {
+				index.forEachFile(path.isEmpty() ? nsPrefix : nsPrefix + path, filename -> {
+					Identifier identifier = Identifier.of(namespace, filename.substring(nsPrefix.length()));
+
+					if (identifier == null) {
+						LOGGER.error("Invalid path in mod resource-pack {}: {}:{}, ignoring", id, namespace, filename.substring(nsPrefix.length()));
+					} else {
+						visitor.accept(identifier, InputSupplier.create(basePath.resolve(filename.replace("/", separator))));
+					}
+				});
+
+				continue;
+			}
+
 			Path nsPath = basePath.resolve(type.getDirectory()).resolve(namespace);
 			Path searchPath = nsPath.resolve(path.replace("/", separator)).normalize();
 			if (!exists(searchPath)) continue;
@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.playerxess.mpfapi.impl.resourceloader;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.playerxess.mpfapi.fabricloaderresources.loader.api.FabricLoader;
+import net.playerxess.mpfapi.fabricloaderresources.loader.api.ModContainer;
+import net.playerxess.mpfapi.fabricloaderresources.loader.api.metadata.ModOrigin;
+
+/**
+ * Cache of the {@link ResourcePathIndex resource indices} of mod resource packs, so that mod jars don't need to be walked again.
+ *
+ * <p>The indices are kept in memory and persisted under {@code .fabric/resource-index} in the game directory,
+ * with one file per mod and resource pack sub path. Cache files are memory-mapped when read.
+ * An entry is keyed by the mod version and the path, size and modification time of the jars the mod comes from,
+ * so changing a mod only invalidates its own entries. Mods loaded from directories are never cached,
+ * as their modification time doesn't reflect changes to the files they contain.
+ *
+ * <p>Can be disabled with {@code -Dfabric-api.resource-loader.indexCache=false}.
+ */
+final class ResourceIndexCache {
+	private static final boolean ENABLED = Boolean.parseBoolean(System.getProperty("fabric-api.resource-loader.indexCache", "true"));
+	private static final Logger LOGGER = LoggerFactory.getLogger(ResourceIndexCache.class);
+	private static final int MAGIC = 0x46524958; // FRIX
+	private static final int VERSION = 1;
+	private static final Map<String, List<ResourcePathIndex>> LOADED = new ConcurrentHashMap<>();
+
+	private ResourceIndexCache() {
+	}
+
+	/**
+	 * Get the cache key of a mod resource pack.
+	 *
+	 * @param mod     the mod providing the resource pack
+	 * @param subPath the sub path of the resource pack in the mod, may be {@code null}
+	 * @return the key, or {@code null} if the resource pack can't be cached
+	 */
+	@Nullable
+	static Key getKey(ModContainer mod, @Nullable String subPath) {
+		if (!ENABLED) return null;
+
+		StringBuilder state = new StringBuilder();
+		state.append(mod.getMetadata().getId()).append('\n');
+		state.append(subPath == null ? "" : subPath).append('\n');
+		state.append(mod.getMetadata().getVersion().getFriendlyString()).append('\n');
+		state.append(mod.getRootPaths().size()).append('\n');
+
+		// Nested jars change with the jar containing them.
+		ModContainer origin = mod;
+
+		while (origin.getOrigin().getKind() == ModOrigin.Kind.NESTED) {
+			Optional<ModContainer> parent = FabricLoader.getInstance().getModContainer(origin.getOrigin().getParentModId());
+			if (parent.isEmpty()) return null;
+
+			origin = parent.get();
+		}
+
+		if (origin.getOrigin().getKind() != ModOrigin.Kind.PATH) return null;
+
+		for (Path path : origin.getOrigin().getPaths()) {
+			BasicFileAttributes attributes;
+
+			try {
+				attributes = Files.readAttributes(path, BasicFileAttributes.class);
+			} catch (IOException e) {
+				return null;
+			}
+
+			if (!attributes.isRegularFile()) return null;
+
+			state.append(path.toAbsolutePath()).append('\n');
+			state.append(attributes.size()).append('\n');
+			state.append(attributes.lastModifiedTime().toMillis()).append('\n');
+		}
+
+		// Mod ids can't contain dots.
+		String prefix = mod.getMetadata().getId() + "." + (subPath == null ? "root" : Integer.toHexString(subPath.hashCode()));
+		return new Key(state.toString(), prefix);
+	}
+
+	private static Path getDirectory() {
+		return FabricLoader.getInstance().getGameDir().resolve(".fabric").resolve("resource-index");
+	}
+
+	static final class Key {
+		/**
+		 * Everything the cached indices depend on, stored in the cache file to detect hash collisions.
+		 */
+		private final String state;
+		/**
+		 * Cache file name prefix shared by all the states of the same mod resource pack.
+		 */
+		private final String filePrefix;
+
+		private Key(String state, String filePrefix) {
+			this.state = state;
+			this.filePrefix = filePrefix;
+		}
+
+		private Path getFile() {
+			return getDirectory().resolve(filePrefix + "." + Long.toHexString(hash(state)) + ".idx");
+		}
+
+		/**
+		 * @return the indices of the resource pack for each root path of the mod, with {@code null} for root paths
+		 * that don't contain the sub path, or {@code null} if they are not cached
+		 */
+		@Nullable
+		List<ResourcePathIndex> load() {
+			List<ResourcePathIndex> ret = LOADED.get(state);
+			if (ret != null) return ret;
+
+			Path file = getFile();
+
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				ret = read(buffer);
+			} catch (NoSuchFileException e) {
+				return null;
+			} catch (IOException | RuntimeException e) {
+				LOGGER.debug("Failed to read resource index cache {}", file, e);
+				return null;
+			}
+
+			if (ret != null) LOADED.put(state, ret);
+			return ret;
+		}
+
+		@Nullable
+		private List<ResourcePathIndex> read(ByteBuffer buffer) {
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) return null;
+
+			byte[] stateBytes = new byte[buffer.getInt()];
+			buffer.get(stateBytes);
+			if (!state.equals(new String(stateBytes, StandardCharsets.UTF_8))) return null;
+
+			int count = buffer.getInt();
+			List<ResourcePathIndex> ret = new ArrayList<>(count);
+
+			for (int i = 0; i < count; i++) {
+				ret.add(buffer.get() != 0 ? ResourcePathIndex.read(buffer) : null);
+			}
+
+			return Collections.unmodifiableList(ret);
+		}
+
+		/**
+		 * Store the indices of the resource pack, in the same format as returned by {@link #load}.
+		 */
+		void save(List<ResourcePathIndex> indices) {
+			List<ResourcePathIndex> copy = Collections.unmodifiableList(new ArrayList<>(indices));
+			LOADED.put(state, copy);
+
+			Path file = getFile();
+
+			try {
+				Files.createDirectories(file.getParent());
+				// The file names depend on the content, so existing files that may still be mapped are never overwritten.
+				Path tmp = Files.createTempFile(file.getParent(), filePrefix, ".tmp");
+
+				try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+					byte[] stateBytes = state.getBytes(StandardCharsets.UTF_8);
+					out.writeInt(MAGIC);
+					out.writeInt(VERSION);
+					out.writeInt(stateBytes.length);
+					out.write(stateBytes);
+					out.writeInt(copy.size());
+
+					for (ResourcePathIndex index : copy) {
+						out.writeBoolean(index != null);
+						if (index != null) index.write(out);
+					}
+				}
+
+				Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException e) {
+				LOGGER.debug("Failed to write resource index cache {}", file, e);
+				return;
+			}
+
+			deleteOutdated(file);
+		}
+
+		private void deleteOutdated(Path current) {
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(current.getParent(), filePrefix + ".*.idx")) {
+				for (Path path : stream) {
+					if (!path.equals(current)) {
+						try {
+							Files.delete(path);
+						} catch (IOException e) {
+							// Still mapped on some platforms, it will be deleted the next time.
+						}
+					}
+				}
+			} catch (IOException e) {
+				LOGGER.debug("Failed to clean up resource index cache", e);
+			}
+		}
+
+		private static long hash(String s) {
+			// 64-bit FNV-1a
+			long hash = 0xcbf29ce484222325L;
+
+			for (int i = 0; i < s.length(); i++) {
+				hash ^= s.charAt(i);
+				hash *= 0x100000001b3L;
+			}
+
+			return hash;
+		}
+	}
+}
@@ -21,14 +21,17 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.function.Consumer;
 
-import com.google.common.collect.Lists;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntLinkedOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.ints.IntSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -150,7 +153,6 @@ public class ResourceManagerHelperImpl implements ResourceManagerHelper {
 		//   trust them 100%. Only code doesn't lie.
 		// - We addReloadListener all custom listeners after vanilla listeners. Same reasons.
 
-		List<IdentifiableResourceReloadListener> listenersToAdd = Lists.newArrayList(addedListeners);
 		Set<Identifier> resolvedIds = new HashSet<>();
 
 		for (ResourceReloader listener : listeners) {
@@ -159,26 +161,100 @@ public class ResourceManagerHelperImpl implements ResourceManagerHelper {
 			}
 		}
 
-		int lastSize = -1;
+		// Build the dependency graph of the custom listeners, only keeping edges between custom listeners
+		// as vanilla listeners always run first.
+		List<IdentifiableResourceReloadListener> candidates = new ArrayList<>(addedListeners);
+		int count = candidates.size();
+		Map<Identifier, Integer> indices = new HashMap<>();
 
-		while (listeners.size() != lastSize) {
-			lastSize = listeners.size();
+		for (int i = 0; i < count; i++) {
+			indices.put(candidates.get(i).getFabricId(), i);
+		}
+
+		int[][] dependencies = new int[count][];
+		int[] unresolvedDependencies = new int[count];
+		List<IntList> dependents = new ArrayList<>(count);
+
+		for (int i = 0; i < count; i++) {
+			dependents.add(new IntArrayList());
+		}
+
+		for (int i = 0; i < count; i++) {
+			IntSet listenerDependencies = new IntLinkedOpenHashSet();
+
+			for (Identifier dependency : candidates.get(i).getFabricDependencies()) {
+				Integer index = indices.get(dependency);
+
+				if (index != null) {
+					listenerDependencies.add(index.intValue());
+				} else if (!resolvedIds.contains(dependency)) {
+					// Unknown listener, can never be resolved.
+					unresolvedDependencies[i]++;
+				}
+			}
+
+			dependencies[i] = listenerDependencies.toIntArray();
+			unresolvedDependencies[i] += dependencies[i].length;
+
+			for (int dependency : dependencies[i]) {
+				dependents.get(dependency).add(i);
+			}
+		}
 
-			Iterator<IdentifiableResourceReloadListener> it = listenersToAdd.iterator();
+		// Topological sort reproducing the order of repeated passes over the listeners in registration order, where each pass
+		// adds every listener whose dependencies have been added by then. Listeners may rely on that order without declaring
+		// dependencies. A listener becoming ready after its position in the current pass is added in the same pass.
+		PriorityQueue<Integer> ready = new PriorityQueue<>();
+		PriorityQueue<Integer> nextPass = new PriorityQueue<>();
+		int[] sortedIndices = new int[count];
+		int sortedCount = 0;
 
-			while (it.hasNext()) {
-				IdentifiableResourceReloadListener listener = it.next();
+		for (int i = 0; i < count; i++) {
+			if (unresolvedDependencies[i] == 0) ready.add(i);
+		}
+
+		while (!ready.isEmpty()) {
+			int index = ready.poll();
+			sortedIndices[index] = sortedCount++;
 
-				if (resolvedIds.containsAll(listener.getFabricDependencies())) {
-					resolvedIds.add(listener.getFabricId());
-					listeners.add(listener);
-					it.remove();
+			for (int dependent : dependents.get(index)) {
+				if (--unresolvedDependencies[dependent] == 0) {
+					(dependent > index ? ready : nextPass).add(dependent);
 				}
 			}
+
+			if (ready.isEmpty()) {
+				PriorityQueue<Integer> tmp = ready;
+				ready = nextPass;
+				nextPass = tmp;
+			}
+		}
+
+		List<IdentifiableResourceReloadListener> sorted = new ArrayList<>(Collections.nCopies(sortedCount, null));
+		int[][] sortedDependencies = new int[sortedCount][];
+
+		for (int i = 0; i < count; i++) {
+			IdentifiableResourceReloadListener listener = candidates.get(i);
+
+			if (unresolvedDependencies[i] != 0) {
+				LOGGER.warn("Could not resolve dependencies for listener: " + listener.getFabricId() + "!");
+				continue;
+			}
+
+			int[] remapped = new int[dependencies[i].length];
+
+			for (int j = 0; j < remapped.length; j++) {
+				remapped[j] = sortedIndices[dependencies[i][j]];
+			}
+
+			sorted.set(sortedIndices[i], listener);
+			sortedDependencies[sortedIndices[i]] = remapped;
 		}
 
-		for (IdentifiableResourceReloadListener listener : listenersToAdd) {
-			LOGGER.warn("Could not resolve dependencies for listener: " + listener.getFabricId() + "!");
+		if (ResourceReloadListenerGraph.isEnabled() && !sorted.isEmpty()) {
+			listeners.add(new ResourceReloadListenerGraph(sorted, sortedDependencies));
+		} else {
+			listeners.addAll(sorted);
 		}
 	}
 
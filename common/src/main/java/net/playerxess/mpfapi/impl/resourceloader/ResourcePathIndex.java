@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.playerxess.mpfapi.impl.resourceloader;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import net.minecraft.resource.ResourceType;
+
+/**
+ * In-memory index of the files of a mod resource pack root, so that resource lookups don't touch the file system.
+ *
+ * <p>Only the files under the resource type directories ({@code assets/} and {@code data/}) are indexed,
+ * as a sorted table of their paths relative to the root, separated by {@code /}.
+ */
+final class ResourcePathIndex {
+	private final String[] files;
+	private final Map<ResourceType, Set<String>> namespaces;
+
+	private ResourcePathIndex(String[] files, Map<ResourceType, Set<String>> namespaces) {
+		this.files = files;
+		this.namespaces = namespaces;
+	}
+
+	/**
+	 * Walk the resource type directories of {@code root} to build its index.
+	 */
+	static ResourcePathIndex build(Path root) throws IOException {
+		List<String> files = new ArrayList<>();
+		Map<ResourceType, Set<String>> namespaces = new EnumMap<>(ResourceType.class);
+		String separator = root.getFileSystem().getSeparator();
+
+		for (ResourceType type : ResourceType.values()) {
+			Path dir = root.resolve(type.getDirectory());
+			Set<String> typeNamespaces = new LinkedHashSet<>();
+			namespaces.put(type, Collections.unmodifiableSet(typeNamespaces));
+
+			if (!Files.isDirectory(dir)) continue;
+
+			Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+				@Override
+				public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attrs) {
+					if (dir.equals(directory.getParent())) {
+						// directory names may contain trailing slashes, remove them
+						typeNamespaces.add(directory.getFileName().toString().replace(separator, ""));
+					}
+
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+					files.add(root.relativize(file).toString().replace(separator, "/"));
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		}
+
+		String[] sortedFiles = files.toArray(new String[0]);
+		Arrays.sort(sortedFiles);
+		return new ResourcePathIndex(sortedFiles, namespaces);
+	}
+
+	/**
+	 * Write this index to {@code out}, see {@link #read}.
+	 */
+	void write(DataOutputStream out) throws IOException {
+		ResourceType[] types = ResourceType.values();
+		out.writeInt(types.length);
+
+		for (ResourceType type : types) {
+			writeString(out, type.getDirectory());
+			out.writeInt(namespaces.get(type).size());
+
+			for (String namespace : namespaces.get(type)) {
+				writeString(out, namespace);
+			}
+		}
+
+		// Sorted paths share long prefixes, only write the part that differs from the previous path.
+		out.writeInt(files.length);
+		String previous = "";
+
+		for (String file : files) {
+			int shared = 0;
+			int max = Math.min(previous.length(), file.length());
+
+			while (shared < max && previous.charAt(shared) == file.charAt(shared)) {
+				shared++;
+			}
+
+			out.writeInt(shared);
+			writeString(out, file.substring(shared));
+			previous = file;
+		}
+	}
+
+	/**
+	 * Read an index written by {@link #write}.
+	 *
+	 * @throws IllegalArgumentException if the data doesn't match the current resource types
+	 */
+	static ResourcePathIndex read(ByteBuffer buffer) {
+		ResourceType[] types = ResourceType.values();
+		if (buffer.getInt() != types.length) throw new IllegalArgumentException("resource type count mismatch");
+
+		Map<ResourceType, Set<String>> namespaces = new EnumMap<>(ResourceType.class);
+
+		for (ResourceType type : types) {
+			if (!type.getDirectory().equals(readString(buffer))) throw new IllegalArgumentException("resource type mismatch");
+
+			int count = buffer.getInt();
+			Set<String> typeNamespaces = new LinkedHashSet<>();
+
+			for (int i = 0; i < count; i++) {
+				typeNamespaces.add(readString(buffer));
+			}
+
+			namespaces.put(type, Collections.unmodifiableSet(typeNamespaces));
+		}
+
+		String[] files = new String[buffer.getInt()];
+		String previous = "";
+
+		for (int i = 0; i < files.length; i++) {
+			int shared = buffer.getInt();
+			files[i] = previous = previous.substring(0, shared).concat(readString(buffer));
+		}
+
+		return new ResourcePathIndex(files, namespaces);
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return whether {@code filename} is covered by this index, i.e. located in a resource type directory
+	 */
+	static boolean isIndexed(String filename) {
+		for (ResourceType type : ResourceType.values()) {
+			String directory = type.getDirectory();
+
+			if (filename.startsWith(directory) && filename.length() > directory.length() && filename.charAt(directory.length()) == '/') {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * @return the names of the directories in the directory of {@code type}, without any validation
+	 */
+	Set<String> getNamespaces(ResourceType type) {
+		return namespaces.get(type);
+	}
+
+	boolean contains(String filename) {
+		return Arrays.binarySearch(files, filename) >= 0;
+	}
+
+	/**
+	 * Pass all the files in {@code directory} and its subdirectories to {@code consumer}, in sorted order.
+	 * If {@code directory} is a file, only it is passed to the consumer.
+	 */
+	void forEachFile(String directory, Consumer<String> consumer) {
+		if (contains(directory)) {
+			consumer.accept(directory);
+			return;
+		}
+
+		String prefix = directory.endsWith("/") ? directory : directory + "/";
+		int index = Arrays.binarySearch(files, prefix);
+		if (index < 0) index = -index - 1;
+
+		for (; index < files.length && files[index].startsWith(prefix); index++) {
+			consumer.accept(files[index]);
+		}
+	}
+}
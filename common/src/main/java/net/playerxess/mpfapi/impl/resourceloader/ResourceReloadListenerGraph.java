@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 2016, 2017, 2018, 2019 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.playerxess.mpfapi.impl.resourceloader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.minecraft.resource.ResourceManager;
+import net.minecraft.resource.ResourceReloader;
+import net.minecraft.util.Unit;
+import net.minecraft.util.profiler.DummyProfiler;
+import net.minecraft.util.profiler.Profiler;
+
+import net.playerxess.mpfapi.api.resourceloader.IdentifiableResourceReloadListener;
+
+/**
+ * Runs the custom reload listeners as a single reloader, scheduling their application stages
+ * according to their dependency graph instead of one after the other.
+ *
+ * <p>All listeners are prepared concurrently, as in vanilla, and no listener is applied before
+ * all listeners are prepared and all vanilla listeners are applied. Then the application stage of
+ * a listener only waits for the listeners it depends on, so that listeners that are independent from each other
+ * can overlap their asynchronous application work. Ready listeners are released in sorted order on the apply executor.
+ *
+ * <p>Enabled with {@value #PARALLEL_PROPERTY}. With {@value #TIMING_PROPERTY}, the listeners
+ * keep running one after the other and a table of the time spent in each listener is logged after every reload.
+ */
+final class ResourceReloadListenerGraph implements ResourceReloader {
+	static final String PARALLEL_PROPERTY = "fabric-api.resource-loader.parallelReload";
+	static final String TIMING_PROPERTY = "fabric-api.resource-loader.reloadTiming";
+	private static final boolean PARALLEL = Boolean.getBoolean(PARALLEL_PROPERTY);
+	private static final boolean TIMING = Boolean.getBoolean(TIMING_PROPERTY);
+	private static final Logger LOGGER = LoggerFactory.getLogger(ResourceReloadListenerGraph.class);
+
+	/**
+	 * Listeners in topological order.
+	 */
+	private final List<IdentifiableResourceReloadListener> listeners;
+	/**
+	 * Indices of the listeners each listener waits for, always lower than the index of the listener.
+	 */
+	private final int[][] dependencies;
+	private final int[][] dependents;
+
+	/**
+	 * @param listeners    listeners in topological order
+	 * @param dependencies for each listener, the indices of the listeners it depends on
+	 */
+	ResourceReloadListenerGraph(List<IdentifiableResourceReloadListener> listeners, int[][] dependencies) {
+		this.listeners = listeners;
+		this.dependencies = new int[listeners.size()][];
+
+		for (int i = 0; i < listeners.size(); i++) {
+			// Without parallel reloading, each listener waits for the previous one, which implies its actual dependencies.
+			this.dependencies[i] = PARALLEL ? dependencies[i] : (i == 0 ? new int[0] : new int[] { i - 1 });
+		}
+
+		int[] dependentCounts = new int[listeners.size()];
+
+		for (int[] listenerDependencies : this.dependencies) {
+			for (int dependency : listenerDependencies) {
+				dependentCounts[dependency]++;
+			}
+		}
+
+		this.dependents = new int[listeners.size()][];
+
+		for (int i = 0; i < listeners.size(); i++) {
+			this.dependents[i] = new int[dependentCounts[i]];
+			dependentCounts[i] = 0;
+		}
+
+		for (int i = 0; i < listeners.size(); i++) {
+			for (int dependency : this.dependencies[i]) {
+				this.dependents[dependency][dependentCounts[dependency]++] = i;
+			}
+		}
+	}
+
+	static boolean isEnabled() {
+		return PARALLEL || TIMING;
+	}
+
+	@Override
+	public CompletableFuture<Void> reload(Synchronizer synchronizer, ResourceManager manager, Profiler prepareProfiler, Profiler applyProfiler, Executor prepareExecutor, Executor applyExecutor) {
+		return new Reload(synchronizer, applyExecutor).start(manager, applyProfiler, prepareExecutor);
+	}
+
+	@Override
+	public String getName() {
+		return "Fabric API reload listeners";
+	}
+
+	/**
+	 * State of a single reload.
+	 */
+	private final class Reload {
+		private final Synchronizer synchronizer;
+		private final Executor applyExecutor;
+		private final CompletableFuture<Void> result = new CompletableFuture<>();
+		private final AtomicInteger unprepared = new AtomicInteger(listeners.size());
+		private final CompletableFuture<Unit> allPrepared = new CompletableFuture<>();
+		/**
+		 * Completed when a listener may start its application stage.
+		 */
+		private final List<CompletableFuture<Unit>> gates = new ArrayList<>(listeners.size());
+		private final int[] pendingDependencies = new int[listeners.size()];
+		private final int[] pendingListeners = { listeners.size() };
+		private final long[] preparedTimes = new long[listeners.size()];
+		private final long[] releaseTimes = new long[listeners.size()];
+		private final long[] doneTimes = new long[listeners.size()];
+		private long startTime;
+		/**
+		 * Set once all listeners are prepared, from then on listeners are released as soon as their dependencies are done.
+		 */
+		private boolean releasing;
+
+		private Reload(Synchronizer synchronizer, Executor applyExecutor) {
+			this.synchronizer = synchronizer;
+			this.applyExecutor = applyExecutor;
+
+			for (int i = 0; i < listeners.size(); i++) {
+				gates.add(new CompletableFuture<>());
+				pendingDependencies[i] = dependencies[i].length;
+			}
+		}
+
+		private CompletableFuture<Void> start(ResourceManager manager, Profiler applyProfiler, Executor prepareExecutor) {
+			startTime = System.nanoTime();
+			// Vanilla gives each reloader its own profiler, listeners running concurrently must not share one.
+			// All listeners are prepared concurrently, but without parallel reloading they are applied one after the other.
+			Profiler listenerApplyProfiler = PARALLEL ? DummyProfiler.INSTANCE : applyProfiler;
+
+			for (int i = 0; i < listeners.size(); i++) {
+				CompletableFuture<Void> future;
+
+				try {
+					future = listeners.get(i).reload(new ListenerSynchronizer(i), manager, DummyProfiler.INSTANCE, listenerApplyProfiler, prepareExecutor, applyExecutor);
+				} catch (Throwable t) {
+					future = CompletableFuture.failedFuture(t);
+				}
+
+				int index = i;
+				future.whenCompleteAsync((ignored, error) -> onDone(index, error), applyExecutor);
+			}
+
+			allPrepared.whenCompleteAsync((ignored, error) -> {
+				if (error != null) {
+					result.completeExceptionally(error);
+				} else {
+					startReleasing();
+				}
+			}, applyExecutor);
+
+			return result;
+		}
+
+		private void startReleasing() {
+			List<CompletableFuture<Unit>> released = new ArrayList<>();
+
+			synchronized (this) {
+				releasing = true;
+
+				for (int i = 0; i < listeners.size(); i++) {
+					if (pendingDependencies[i] == 0) released.add(release(i));
+				}
+			}
+
+			open(released);
+		}
+
+		private void onPrepared() {
+			if (unprepared.decrementAndGet() == 0) {
+				// Waits for the other reloaders to be prepared and for the vanilla listeners to be applied.
+				synchronizer.whenPrepared(Unit.INSTANCE).whenComplete((unit, error) -> {
+					if (error != null) {
+						allPrepared.completeExceptionally(error);
+					} else {
+						allPrepared.complete(unit);
+					}
+				});
+			}
+		}
+
+		/**
+		 * @return The gate of the listener, to be completed once the monitor is released.
+		 */
+		private CompletableFuture<Unit> release(int index) {
+			releaseTimes[index] = System.nanoTime();
+			return gates.get(index);
+		}
+
+		/**
+		 * Complete the gates of released listeners. This must not hold the monitor, as completing a gate runs
+		 * the dependent stages of the listener on the calling thread if they don't specify an executor.
+		 */
+		private void open(List<CompletableFuture<Unit>> released) {
+			for (CompletableFuture<Unit> gate : released) {
+				gate.complete(Unit.INSTANCE);
+			}
+		}
+
+		private void onDone(int index, Throwable error) {
+			if (error != null) {
+				doneTimes[index] = System.nanoTime();
+				// Fail fast like vanilla, the listeners waiting for this one are never released.
+				result.completeExceptionally(error);
+				return;
+			}
+
+			List<CompletableFuture<Unit>> released = new ArrayList<>();
+			boolean done;
+
+			synchronized (this) {
+				doneTimes[index] = System.nanoTime();
+
+				for (int dependent : dependents[index]) {
+					if (--pendingDependencies[dependent] == 0 && releasing) {
+						released.add(release(dependent));
+					}
+				}
+
+				done = --pendingListeners[0] == 0;
+			}
+
+			open(released);
+
+			if (done) {
+				if (TIMING) logTimings();
+				result.complete(null);
+			}
+		}
+
+		private void logTimings() {
+			Integer[] order = new Integer[listeners.size()];
+			Arrays.setAll(order, i -> i);
+			Arrays.sort(order, Comparator.comparingLong((Integer i) -> doneTimes[i] - startTime).reversed());
+
+			StringBuilder builder = new StringBuilder();
+			builder.append(String.format(Locale.ROOT, "Reloaded %d Fabric listeners in %.1f ms%s:%n",
+					listeners.size(), (System.nanoTime() - startTime) / 1e6, PARALLEL ? " (parallel)" : ""));
+			builder.append(String.format(Locale.ROOT, "%10s %10s %10s  %s%n", "prepare", "wait", "apply", "listener"));
+
+			for (int i : order) {
+				builder.append(String.format(Locale.ROOT, "%7.1f ms %7.1f ms %7.1f ms  %s%n",
+						(preparedTimes[i] - startTime) / 1e6,
+						(releaseTimes[i] - preparedTimes[i]) / 1e6,
+						(doneTimes[i] - releaseTimes[i]) / 1e6,
+						listeners.get(i).getFabricId()));
+			}
+
+			LOGGER.info(builder.toString());
+		}
+
+		private final class ListenerSynchronizer implements Synchronizer {
+			private final int index;
+			private boolean prepared;
+
+			private ListenerSynchronizer(int index) {
+				this.index = index;
+			}
+
+			@Override
+			public <T> CompletableFuture<T> whenPrepared(T preparedObject) {
+				if (prepared) throw new IllegalStateException("Listener " + listeners.get(index).getFabricId() + " was already prepared");
+
+				prepared = true;
+				preparedTimes[index] = System.nanoTime();
+				onPrepared();
+				return gates.get(index).thenApply(ignored -> preparedObject);
+			}
+		}
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2020 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.playerxess.mpfapi.fabricloaderresources.accesswidener;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+public class AccessWidenerReaderTest {
+	/**
+	 * The delimiters each version used to split lines with.
+	 */
+	private static final Pattern V1_DELIMITER = Pattern.compile("\\s+");
+	private static final Pattern V2_DELIMITER = Pattern.compile("[ \\t]+");
+	/**
+	 * Delimiters of either version and whitespace that is no delimiter in any version.
+	 */
+	private static final char[] ALPHABET = { 'a', 'B', '/', ';', '(', ')', '$', ' ', '\t', '\n', 0x0B, '\f', '\r', '\u00a0', '\u2003', '\u001c' };
+
+	@Test
+	public void tokenizeMatchesRegexSplit() {
+		Random random = new Random(42);
+		List<String> tokens = new ArrayList<>();
+
+		for (int i = 0; i < 100_000; i++) {
+			StringBuilder line = new StringBuilder();
+			// the reader rejects leading whitespace before tokenizing, where split would produce an empty first token
+			line.append(ALPHABET[random.nextInt(7)]);
+
+			for (int j = random.nextInt(20); j > 0; j--) {
+				line.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+			}
+
+			String str = line.toString();
+
+			AccessWidenerReader.tokenize(str, AccessWidenerReader.V1, tokens);
+			assertEquals(Arrays.asList(V1_DELIMITER.split(str)), tokens, "v1: " + escape(str));
+
+			AccessWidenerReader.tokenize(str, AccessWidenerReader.V2, tokens);
+			assertEquals(Arrays.asList(V2_DELIMITER.split(str)), tokens, "v2: " + escape(str));
+		}
+	}
+
+	@Test
+	public void tokenizeDelimiters() {
+		List<String> tokens = new ArrayList<>();
+
+		AccessWidenerReader.tokenize("accessible\u000bfield a\fb\r c  ", AccessWidenerReader.V1, tokens);
+		assertEquals(List.of("accessible", "field", "a", "b", "c"), tokens);
+
+		AccessWidenerReader.tokenize("accessible\u000bfield a\fb\r\tc  ", AccessWidenerReader.V2, tokens);
+		assertEquals(List.of("accessible\u000bfield", "a\fb\r", "c"), tokens);
+	}
+
+	private static String escape(String str) {
+		StringBuilder ret = new StringBuilder();
+
+		for (int i = 0; i < str.length(); i++) {
+			char c = str.charAt(i);
+
+			if (c < 0x20 || c > 0x7e) {
+				ret.append(String.format("\\u%04x", (int) c));
+			} else {
+				ret.append(c);
+			}
+		}
+
+		return ret.toString();
+	}
+}
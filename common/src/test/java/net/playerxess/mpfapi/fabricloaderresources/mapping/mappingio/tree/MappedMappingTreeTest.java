@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2021 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.tree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.tree.MappingTreeView.ClassMappingView;
+
+public class MappedMappingTreeTest {
+	private static final long[] SEEDS = { 1, 2, 3, 4, 5 };
+
+	@TempDir
+	Path dir;
+
+	@Test
+	public void roundTripPreservesContent() throws IOException {
+		for (long seed : SEEDS) {
+			MemoryMappingTree tree = TestMappings.create(seed);
+			MappedMappingTree mapped = writeAndOpen(tree, seed);
+			assertEquals(TestMappings.dump(tree), TestMappings.dump(mapped), "seed " + seed);
+
+			// visiting may merge members the generator created in a different order, so compare against a visited copy
+			MemoryMappingTree expected = new MemoryMappingTree();
+			tree.accept(expected);
+			MemoryMappingTree copy = new MemoryMappingTree();
+			mapped.accept(copy);
+			assertEquals(TestMappings.dump(expected), TestMappings.dump(copy), "seed " + seed);
+		}
+	}
+
+	@Test
+	public void classLookupsMatchMemoryTree() throws IOException {
+		for (long seed : SEEDS) {
+			MemoryMappingTree tree = TestMappings.create(seed);
+			tree.setIndexByDstNames(true);
+			MappedMappingTree mapped = writeAndOpen(tree, seed);
+
+			for (int c = -1; c <= TestMappings.CLASSES; c++) {
+				for (String name : new String[] { "c" + c, "A" + c, "B" + c }) {
+					for (int ns = -1; ns < 2; ns++) {
+						String expected = describe(tree.getClass(name, ns));
+						assertEquals(expected, describe(mapped.getClass(name, ns)), name + " in " + ns);
+						assertEquals(tree.mapClassName(name, ns, 1 - Math.max(ns, 0)), mapped.mapClassName(name, ns, 1 - Math.max(ns, 0)));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Source name lookups have to return the same member as {@link MemoryMappingTree}, in particular the first one in
+	 * input order for a null or partial descriptor matching several overloads.
+	 */
+	@Test
+	public void srcMemberLookupsMatchMemoryTree() throws IOException {
+		for (long seed : SEEDS) {
+			MemoryMappingTree tree = TestMappings.create(seed);
+			MappedMappingTree mapped = writeAndOpen(tree, seed);
+
+			for (ClassMappingView cls : tree.getClasses()) {
+				ClassMappingView mappedCls = mapped.getClass(cls.getSrcName());
+
+				for (String name : TestMappings.MEMBER_NAMES) {
+					for (String desc : TestMappings.QUERY_DESCS) {
+						String query = cls.getSrcName() + "." + name + desc;
+						assertEquals(TestMappings.describe(cls.getField(name, desc)), TestMappings.describe(mappedCls.getField(name, desc)), query);
+						assertEquals(TestMappings.describe(cls.getMethod(name, desc)), TestMappings.describe(mappedCls.getMethod(name, desc)), query);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void dstMemberLookupsMatchMemoryTree() throws IOException {
+		for (long seed : SEEDS) {
+			MemoryMappingTree tree = TestMappings.create(seed);
+			MappedMappingTree mapped = writeAndOpen(tree, seed);
+
+			for (ClassMappingView cls : tree.getClasses()) {
+				ClassMappingView mappedCls = mapped.getClass(cls.getSrcName());
+
+				for (int ns = 0; ns < 2; ns++) {
+					for (String name : TestMappings.DST_MEMBER_NAMES) {
+						for (String srcDesc : TestMappings.QUERY_DESCS) {
+							String desc = srcDesc != null ? tree.mapDesc(srcDesc, ns) : null;
+							String query = cls.getSrcName() + "." + name + desc + " in " + ns;
+							assertEquals(TestMappings.describe(cls.getField(name, desc, ns)), TestMappings.describe(mappedCls.getField(name, desc, ns)), query);
+							assertEquals(TestMappings.describe(cls.getMethod(name, desc, ns)), TestMappings.describe(mappedCls.getMethod(name, desc, ns)), query);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void rejectsInvalidData() {
+		assertThrows(IOException.class, () -> MappedMappingTree.wrap(ByteBuffer.allocate(64)));
+		assertThrows(IOException.class, () -> MappedMappingTree.wrap(ByteBuffer.allocate(2)));
+	}
+
+	private MappedMappingTree writeAndOpen(MappingTreeView tree, long seed) throws IOException {
+		Path file = dir.resolve("mappings-" + seed + ".bin");
+
+		try (OutputStream os = Files.newOutputStream(file)) {
+			MappedMappingTree.write(tree, os);
+		}
+
+		return MappedMappingTree.open(file);
+	}
+
+	private static String describe(ClassMappingView cls) {
+		return cls == null ? "null" : cls.getSrcName() + ";" + cls.getDstName(0) + ";" + cls.getDstName(1);
+	}
+}
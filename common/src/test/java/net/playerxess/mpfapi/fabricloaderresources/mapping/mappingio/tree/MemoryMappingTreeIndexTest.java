@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2021 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.tree;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.tree.MappingTree.ClassMapping;
+
+/**
+ * Compares member lookups through the member index of {@link MemoryMappingTree} with the regular lookups of an
+ * identical tree without index, before and after modifications that drop the index.
+ */
+public class MemoryMappingTreeIndexTest {
+	private static final long[] SEEDS = { 1, 2, 3, 4, 5, 6, 7, 8 };
+	private static final int QUERIES = 1000;
+
+	@Test
+	public void indexedLookupsMatchPlainLookups() throws IOException {
+		for (long seed : SEEDS) {
+			MemoryMappingTree plain = TestMappings.create(seed);
+			MemoryMappingTree indexed = TestMappings.create(seed);
+			indexed.setIndexMembers(true);
+			indexed.setIndexByDstNames(true);
+			Random random = new Random(seed);
+
+			compare(plain, indexed, random);
+
+			for (int i = 0; i < 20; i++) { // drops the index, it has to be rebuilt from the remaining members
+				String cls = "c" + random.nextInt(TestMappings.CLASSES);
+				String name = TestMappings.MEMBER_NAMES[random.nextInt(TestMappings.MEMBER_NAMES.length)];
+				String desc = TestMappings.QUERY_DESCS[random.nextInt(TestMappings.QUERY_DESCS.length)];
+				ClassMapping plainCls = plain.getClass(cls);
+				ClassMapping indexedCls = indexed.getClass(cls);
+
+				assertEquals(TestMappings.describe(plainCls.removeMethod(name, desc)), TestMappings.describe(indexedCls.removeMethod(name, desc)));
+				assertEquals(TestMappings.describe(plainCls.removeField(name, desc)), TestMappings.describe(indexedCls.removeField(name, desc)));
+				compare(plain, indexed, random);
+			}
+		}
+	}
+
+	private static void compare(MemoryMappingTree plain, MemoryMappingTree indexed, Random random) {
+		for (int i = 0; i < QUERIES; i++) {
+			String cls = "c" + random.nextInt(TestMappings.CLASSES);
+			int ns = random.nextInt(3) - 1;
+			String name = ns < 0
+					? TestMappings.MEMBER_NAMES[random.nextInt(TestMappings.MEMBER_NAMES.length)]
+					: TestMappings.DST_MEMBER_NAMES[random.nextInt(TestMappings.DST_MEMBER_NAMES.length)];
+			String desc = TestMappings.QUERY_DESCS[random.nextInt(TestMappings.QUERY_DESCS.length)];
+			if (desc != null && ns >= 0) desc = plain.mapDesc(desc, ns);
+
+			ClassMapping plainCls = plain.getClass(cls);
+			ClassMapping indexedCls = indexed.getClass(cls);
+			String query = cls + "." + name + desc + " in " + ns;
+
+			assertEquals(TestMappings.describe(plainCls.getField(name, desc, ns)), TestMappings.describe(indexedCls.getField(name, desc, ns)), query);
+			assertEquals(TestMappings.describe(plainCls.getMethod(name, desc, ns)), TestMappings.describe(indexedCls.getMethod(name, desc, ns)), query);
+		}
+	}
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2021 FabricMC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.tree;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.jetbrains.annotations.Nullable;
+
+import net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.MappedElementKind;
+import net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.tree.MappingTreeView.ClassMappingView;
+import net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.tree.MappingTreeView.FieldMappingView;
+import net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.tree.MappingTreeView.MemberMappingView;
+import net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.tree.MappingTreeView.MethodArgMappingView;
+import net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.tree.MappingTreeView.MethodMappingView;
+import net.playerxess.mpfapi.fabricloaderresources.mapping.mappingio.tree.MappingTreeView.MethodVarMappingView;
+
+/**
+ * Random mapping trees with the cases member lookups have to disambiguate: overloaded names, members without or with
+ * parameter-only descriptors, and missing or duplicate destination names.
+ */
+final class TestMappings {
+	static final int CLASSES = 40;
+	static final String[] MEMBER_NAMES = { "a", "b", "c", "d" };
+	static final String[] DST_MEMBER_NAMES = { "x", "y", "z" };
+	static final String[] FIELD_DESCS = { null, "I", "J", "Lc0;", "Lc1;" };
+	static final String[] METHOD_DESCS = { null, "()V", "(I)V", "(I)J", "(Lc0;)V", "(Lc1;)Lc2;", "(I)", "(Lc0;)" };
+	/**
+	 * Descriptors to query with, including partial and unmatched ones.
+	 */
+	static final String[] QUERY_DESCS = { null, "I", "J", "Z", "Lc0;", "()V", "(I)V", "(I)J", "(I)Z", "(Lc0;)V", "(Lc1;)Lc2;",
+			"()", "(I)", "(Lc0;)", "(Lc1;)", "(Z)" };
+
+	private TestMappings() { }
+
+	static MemoryMappingTree create(long seed) throws IOException {
+		Random random = new Random(seed);
+		MemoryMappingTree tree = new MemoryMappingTree();
+		tree.visitHeader();
+		tree.visitNamespaces("src", Arrays.asList("dstA", "dstB"));
+		tree.visitMetadata("seed", Long.toString(seed));
+		tree.visitContent();
+
+		for (int c = 0; c < CLASSES; c++) {
+			tree.visitClass("c" + c);
+			tree.visitDstName(MappedElementKind.CLASS, 0, "A" + c);
+			if (random.nextInt(4) != 0) tree.visitDstName(MappedElementKind.CLASS, 1, "B" + c);
+			tree.visitElementContent(MappedElementKind.CLASS);
+			if (random.nextInt(5) == 0) tree.visitComment(MappedElementKind.CLASS, "class " + c);
+
+			for (int i = random.nextInt(10); i > 0; i--) {
+				tree.visitField(pick(random, MEMBER_NAMES), pick(random, FIELD_DESCS));
+				visitDstNames(tree, random, MappedElementKind.FIELD);
+				tree.visitElementContent(MappedElementKind.FIELD);
+			}
+
+			for (int i = random.nextInt(14); i > 0; i--) {
+				tree.visitMethod(pick(random, MEMBER_NAMES), pick(random, METHOD_DESCS));
+				visitDstNames(tree, random, MappedElementKind.METHOD);
+				tree.visitElementContent(MappedElementKind.METHOD);
+				if (random.nextInt(5) == 0) tree.visitComment(MappedElementKind.METHOD, "method " + i);
+
+				if (random.nextBoolean()) {
+					tree.visitMethodArg(random.nextInt(3), random.nextInt(4) - 1, random.nextBoolean() ? "arg" + i : null);
+					tree.visitDstName(MappedElementKind.METHOD_ARG, 0, "p" + i);
+					tree.visitElementContent(MappedElementKind.METHOD_ARG);
+				}
+
+				if (random.nextBoolean()) {
+					tree.visitMethodVar(random.nextInt(3) - 1, random.nextInt(4), 1, 5, null);
+					tree.visitDstName(MappedElementKind.METHOD_VAR, 1, "v" + i);
+					tree.visitElementContent(MappedElementKind.METHOD_VAR);
+				}
+			}
+		}
+
+		tree.visitEnd();
+
+		return tree;
+	}
+
+	private static void visitDstNames(MemoryMappingTree tree, Random random, MappedElementKind kind) throws IOException {
+		for (int ns = 0; ns < 2; ns++) {
+			if (random.nextInt(4) != 0) tree.visitDstName(kind, ns, pick(random, DST_MEMBER_NAMES));
+		}
+	}
+
+	@Nullable
+	private static String pick(Random random, String[] values) {
+		return values[random.nextInt(values.length)];
+	}
+
+	/**
+	 * Describe a lookup result by its content, views of different trees don't compare equal.
+	 */
+	static String describe(@Nullable MemberMappingView member) {
+		if (member == null) return "null";
+
+		return member.getSrcName() + ";" + member.getSrcDesc() + ";" + member.getDstName(0) + ";" + member.getDstName(1);
+	}
+
+	/**
+	 * Dump the whole content of a tree in iteration order.
+	 */
+	static List<String> dump(MappingTreeView tree) {
+		List<String> ret = new ArrayList<>();
+		ret.add(tree.getSrcNamespace() + " " + tree.getDstNamespaces());
+
+		for (MappingTreeView.MetadataEntryView entry : tree.getMetadata()) {
+			ret.add("meta " + entry.getKey() + "=" + entry.getValue());
+		}
+
+		for (ClassMappingView cls : tree.getClasses()) {
+			ret.add("class " + cls.getSrcName() + " " + cls.getDstName(0) + " " + cls.getDstName(1) + " " + cls.getComment());
+
+			for (FieldMappingView field : cls.getFields()) {
+				ret.add("\tfield " + describe(field) + " " + field.getDstDesc(0) + " " + field.getComment());
+			}
+
+			for (MethodMappingView method : cls.getMethods()) {
+				ret.add("\tmethod " + describe(method) + " " + method.getDstDesc(1) + " " + method.getComment());
+
+				for (MethodArgMappingView arg : method.getArgs()) {
+					ret.add("\t\targ " + arg.getArgPosition() + " " + arg.getLvIndex() + " " + arg.getSrcName() + " " + arg.getDstName(0));
+				}
+
+				for (MethodVarMappingView var : method.getVars()) {
+					ret.add("\t\tvar " + var.getLvtRowIndex() + " " + var.getLvIndex() + " " + var.getStartOpIdx() + " " + var.getEndOpIdx()
+							+ " " + var.getSrcName() + " " + var.getDstName(1));
+				}
+			}
+		}
+
+		return Collections.unmodifiableList(ret);
+	}
+}